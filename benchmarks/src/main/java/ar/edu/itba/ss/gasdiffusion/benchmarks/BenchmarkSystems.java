@@ -0,0 +1,50 @@
+package ar.edu.itba.ss.gasdiffusion.benchmarks;
+
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+import ar.edu.itba.ss.gasdiffusion.models.SimulationContext;
+import ar.edu.itba.ss.gasdiffusion.services.PointFactory;
+import ar.edu.itba.ss.gasdiffusion.services.RandomInRange;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reproducible systems for the benchmarks: the same box used by the simulation scripts, with the particles
+ * randomly placed on its left chamber by the PointFactory using a fixed seed.
+ */
+public abstract class BenchmarkSystems {
+  public static final double L = 0.09;
+  public static final double W = 0.24;
+  public static final double OPENING = 0.01;
+  public static final double SPEED = 0.01;
+  public static final double MASS = 1;
+  public static final long SEED = 2016;
+
+  /**
+   * @param N the number of particles
+   * @param density the fraction of the left chamber's area that is covered by particles
+   * @return the radio that N particles need to cover that fraction of the left chamber
+   */
+  public static double radio(final int N, final double density) {
+    return Math.sqrt(density * (L * W / 2) / (N * Math.PI));
+  }
+
+  /**
+   * @param N the number of particles
+   * @param density the fraction of the left chamber's area that is covered by particles
+   * @return N non-overlapping particles on the left chamber, always the same ones for the same arguments
+   */
+  public static List<Point> leftChamber(final int N, final double density) {
+    final Point leftBottomPoint = Point.builder(0, 0).build();
+    final Point rightTopPoint = Point.builder(W / 2, L).build();
+
+    final List<Point> points = new ArrayList<>(new PointFactory(new SimulationContext(L, W, OPENING)).randomPoints(
+            new RandomInRange(SEED), leftBottomPoint, rightTopPoint, radio(N, density), N, false, Integer.MAX_VALUE,
+            SPEED, MASS));
+
+    // the factory returns a set, whose order depends on the ids of the points
+    points.sort(Comparator.comparingDouble(Point::x).thenComparingDouble(Point::y));
+    return points;
+  }
+}
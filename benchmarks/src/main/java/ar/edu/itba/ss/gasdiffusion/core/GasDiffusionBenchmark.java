@@ -0,0 +1,54 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.benchmarks.BenchmarkSystems;
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a simulation step - one call to GasDiffusion.run - for each engine.
+ * Each measurement iteration starts again from the same system, so all of them run the same events.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GasDiffusionBenchmark {
+  @Param({"100", "1000", "5000"})
+  private int N;
+
+  @Param({"0.05", "0.3"})
+  private double density;
+
+  // JMH can not generate code for nested enum parameters, so the engine is given by its name
+  @Param({"FULL_SCAN", "EVENT_QUEUE"})
+  private String engine;
+
+  private List<Point> initialPoints;
+  private GasDiffusion gasDiffusion;
+  private List<Point> points;
+
+  @Setup(Level.Trial)
+  public void setUpSystem() {
+    initialPoints = BenchmarkSystems.leftChamber(N, density);
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpSimulation() {
+    gasDiffusion = new GasDiffusion(BenchmarkSystems.L, BenchmarkSystems.W, BenchmarkSystems.OPENING,
+            GasDiffusion.Engine.valueOf(engine));
+    // the first run of the event queue engine builds its queue; that is not part of a simulation step
+    points = gasDiffusion.run(initialPoints).getParticles();
+  }
+
+  @Benchmark
+  public double run() {
+    final GasDiffusion.SystemData systemData = gasDiffusion.run(points);
+    points = systemData.getParticles();
+    return systemData.getCollisionTime();
+  }
+}
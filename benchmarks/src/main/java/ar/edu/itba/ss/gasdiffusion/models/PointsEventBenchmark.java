@@ -0,0 +1,58 @@
+package ar.edu.itba.ss.gasdiffusion.models;
+
+import ar.edu.itba.ss.gasdiffusion.benchmarks.BenchmarkSystems;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the execution of a particles' collision, over pairs of particles that are in contact.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PointsEventBenchmark {
+  private static final int PAIRS = 1000;
+
+  private ParticleStore store;
+  private PointsEvent[] events;
+
+  @Setup
+  public void setUp() {
+    final List<Point> system = BenchmarkSystems.leftChamber(PAIRS, 0.05);
+    final List<Point> particles = new ArrayList<>(2 * system.size());
+    events = new PointsEvent[system.size()];
+
+    // each particle collides with a copy of itself, which is in contact on its right and moves in the opposite way
+    for (int i = 0 ; i < system.size() ; i++) {
+      final Point point = system.get(i);
+      final Point partner = Point.builder(point.x() + 2 * point.radio(), point.y())
+              .radio(point.radio())
+              .mass(point.mass())
+              .vx(-point.vx())
+              .vy(-point.vy())
+              .build();
+      particles.add(point);
+      particles.add(partner);
+      events[i] = new PointsEvent().set(0, 2 * i, 2 * i + 1);
+    }
+    store = new ParticleStore(particles);
+  }
+
+  /**
+   * As time does not go on, executing the same collision again gives the particles back their previous velocities
+   */
+  @Benchmark
+  @OperationsPerInvocation(PAIRS)
+  public double execute() {
+    for (final PointsEvent event : events) {
+      event.execute(store);
+    }
+    return store.vx(0);
+  }
+}
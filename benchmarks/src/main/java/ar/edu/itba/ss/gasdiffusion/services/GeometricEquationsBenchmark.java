@@ -0,0 +1,61 @@
+package ar.edu.itba.ss.gasdiffusion.services;
+
+import ar.edu.itba.ss.gasdiffusion.benchmarks.BenchmarkSystems;
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+import ar.edu.itba.ss.gasdiffusion.models.Wall;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the geometry kernels over all the particles of a system. Each invocation computes N times.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeometricEquationsBenchmark {
+  @Param({"100", "1000"})
+  private int N;
+
+  @Param({"0.05", "0.3"})
+  private double density;
+
+  private Point[] points;
+
+  @Setup
+  public void setUp() {
+    final List<Point> system = BenchmarkSystems.leftChamber(N, density);
+    points = system.toArray(new Point[system.size()]);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1000)
+  public void collisionTime(final Blackhole blackhole) {
+    // consecutive particles are close to each other, as points are sorted by position
+    for (int i = 0 ; i < 1000 ; i++) {
+      blackhole.consume(GeometricEquations.collisionTime(points[i % N], points[(i + 1) % N]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1000)
+  public void timeToHitWall(final Blackhole blackhole) {
+    for (int i = 0 ; i < 1000 ; i++) {
+      blackhole.consume(GeometricEquations.timeToHitWall(points[i % N], Wall.HORIZONTAL, 0, BenchmarkSystems.L));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1000)
+  public void timeToHitMiddleWall(final Blackhole blackhole) {
+    for (int i = 0 ; i < 1000 ; i++) {
+      blackhole.consume(GeometricEquations.timeToHitMiddleWall(points[i % N],
+              BenchmarkSystems.W / 2, BenchmarkSystems.L, BenchmarkSystems.OPENING));
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p>
+ *  Writes the snapshots of a simulation to output.dat and i_t_fp_pre_temp.csv on a dedicated thread, that keeps
+ *  both files open during the whole simulation.
+ * <p>
+ *  The simulation thread takes an empty buffer with {@link #acquire()}, fills it with the snapshot and hands it
+ *  over with {@link #submit(Snapshot)}. Buffers are recycled once written, so there are only a few of them:
+ *  the simulation runs while the previous snapshot is being written, and only waits if the writer falls behind.
+ */
+/* package-private */ class AsyncSnapshotWriter implements Closeable {
+  /* package-private */ static final int DEFAULT_BUFFERS = 2;
+
+  /**
+   * A buffer for a single snapshot
+   */
+  /* package-private */ static class Snapshot {
+    private final StringBuilder particles = new StringBuilder();
+    private final StringBuilder data = new StringBuilder();
+
+    /**
+     * @return the buffer for the particles, as saved on output.dat
+     */
+    /* package-private */ StringBuilder particles() {
+      return particles;
+    }
+
+    /**
+     * @return the buffer for the system's data, as saved on i_t_fp_pre_temp.csv
+     */
+    /* package-private */ StringBuilder data() {
+      return data;
+    }
+  }
+
+  // handed over to the writer thread to stop it
+  private static final Snapshot END = new Snapshot();
+
+  private final Writer particlesWriter;
+  private final Writer dataWriter;
+  private final int buffers;
+  private final BlockingQueue<Snapshot> free;
+  private final BlockingQueue<Snapshot> full;
+  private final Thread thread;
+  private volatile IOException failure;
+  private char[] chars = new char[0]; // only used by the writer thread
+
+  /**
+   * Opens - appending to them - both files, and starts the writer thread
+   * @param pathToDatFile the file for the particles ; null if they are saved somewhere else
+   * @param pathToGraphicsFile the file for the system's data
+   * @param buffers the number of snapshot buffers
+   * @throws IOException if a file can not be opened
+   */
+  /* package-private */ AsyncSnapshotWriter(final Path pathToDatFile, final Path pathToGraphicsFile,
+                                            final int buffers) throws IOException {
+    this.dataWriter = Files.newBufferedWriter(pathToGraphicsFile,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    try {
+      this.particlesWriter = pathToDatFile == null ? null : Files.newBufferedWriter(pathToDatFile,
+              StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (final IOException e) {
+      dataWriter.close();
+      throw e;
+    }
+
+    this.buffers = buffers;
+    this.free = new ArrayBlockingQueue<>(buffers);
+    for (int i = 0 ; i < buffers ; i++) {
+      free.add(new Snapshot());
+    }
+    this.full = new ArrayBlockingQueue<>(buffers + 1); // room for END, even if all buffers are full
+
+    this.thread = new Thread(this::writeSnapshots, "snapshot-writer");
+    this.thread.start();
+  }
+
+  /**
+   * Waits until there is an empty buffer
+   * @return an empty buffer
+   * @throws IOException if a previous snapshot could not be written, or the wait is interrupted
+   */
+  /* package-private */ Snapshot acquire() throws IOException {
+    checkFailure();
+    try {
+      return free.take();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a snapshot buffer");
+    }
+  }
+
+  /**
+   * Hands over a filled buffer to be written
+   * @param snapshot a buffer taken with {@link #acquire()}
+   * @throws IOException if a previous snapshot could not be written, or the wait is interrupted
+   */
+  /* package-private */ void submit(final Snapshot snapshot) throws IOException {
+    checkFailure();
+    try {
+      full.put(snapshot);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while handing over a snapshot");
+    }
+  }
+
+  /**
+   * Waits until all submitted snapshots are written, and flushes both files
+   * @throws IOException if any snapshot could not be written, or the wait is interrupted
+   */
+  /* package-private */ void flush() throws IOException {
+    // once all buffers are back, the writer thread is idle until a new one is submitted
+    final List<Snapshot> snapshots = new ArrayList<>(buffers);
+    try {
+      for (int i = 0 ; i < buffers ; i++) {
+        snapshots.add(free.take());
+      }
+      checkFailure();
+      if (particlesWriter != null) {
+        particlesWriter.flush();
+      }
+      dataWriter.flush();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the snapshots to be written");
+    } finally {
+      free.addAll(snapshots);
+    }
+  }
+
+  /**
+   * Waits until all submitted snapshots are written, and closes both files
+   * @throws IOException if any snapshot could not be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      full.put(END);
+      thread.join();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the snapshots to be written");
+    }
+    checkFailure();
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Writes the content of the buffer without creating a String from it
+   */
+  private void write(final Writer writer, final StringBuilder buffer) throws IOException {
+    if (chars.length < buffer.length()) {
+      chars = new char[buffer.length()];
+    }
+    buffer.getChars(0, buffer.length(), chars, 0);
+    writer.write(chars, 0, buffer.length());
+  }
+
+  private void writeSnapshots() {
+    try {
+      Snapshot snapshot;
+      while ((snapshot = full.take()) != END) {
+        // after a failure, buffers are still recycled so that the simulation thread does not wait forever
+        if (failure == null) {
+          try {
+            final long start = SimulationMetrics.ENABLED ? System.nanoTime() : 0;
+            if (particlesWriter != null) {
+              write(particlesWriter, snapshot.particles);
+            }
+            write(dataWriter, snapshot.data);
+            if (SimulationMetrics.ENABLED) {
+              SimulationMetrics.INSTANCE.recordSnapshotWrite(System.nanoTime() - start);
+            }
+          } catch (final IOException e) {
+            failure = e;
+          }
+        }
+        snapshot.particles.setLength(0);
+        snapshot.data.setLength(0);
+        free.put(snapshot);
+      }
+    } catch (final InterruptedException e) {
+      failure = new InterruptedIOException("Snapshot writer interrupted");
+    } finally {
+      try {
+        if (particlesWriter != null) {
+          particlesWriter.close();
+        }
+        dataWriter.close();
+      } catch (final IOException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <p>
+ *  Running mean of a series of correlated values - as the ones measured on consecutive snapshots - together with the
+ *  standard error of that mean, estimated by batch means.
+ * <p>
+ *  Values are grouped on consecutive batches, whose means are nearly independent once batches are longer than the
+ *  correlation time of the series. As the length of the series is not known in advance, there are at most
+ *  {@link #MAX_BATCHES} batches: when they are all full, each pair of consecutive batches is merged into one of twice
+ *  their size. The lag-1 autocorrelation of the batch means tells whether batches are already long enough.
+ */
+/* package-private */ class BatchMeans {
+  /* package-private */ static final int MAX_BATCHES = 32;
+
+  private final double[] batches = new double[MAX_BATCHES]; // the mean of each full batch
+  private int fullBatches;
+  private long batchSize = 1;
+  private double batchSum; // of the values of the batch being filled
+  private long batchCount;
+  private double sum;
+  private long count;
+
+  /* package-private */ void add(final double value) {
+    sum += value;
+    count++;
+    batchSum += value;
+    batchCount++;
+    if (batchCount < batchSize) {
+      return;
+    }
+
+    batches[fullBatches++] = batchSum / batchSize;
+    batchSum = 0;
+    batchCount = 0;
+    if (fullBatches == MAX_BATCHES) {
+      for (int k = 0 ; k < MAX_BATCHES / 2 ; k++) {
+        batches[k] = (batches[2 * k] + batches[2 * k + 1]) / 2;
+      }
+      fullBatches = MAX_BATCHES / 2;
+      batchSize *= 2;
+    }
+  }
+
+  /**
+   * @return the number of added values
+   */
+  /* package-private */ long count() {
+    return count;
+  }
+
+  /**
+   * @return the mean of all the added values ; 0 if there is none
+   */
+  /* package-private */ double mean() {
+    return count == 0 ? 0 : sum / count;
+  }
+
+  /**
+   * @return the number of full batches
+   */
+  /* package-private */ int batches() {
+    return fullBatches;
+  }
+
+  /**
+   * @return the standard error of the mean, from the variance of the batch means ; infinite if there are less than
+   *          two full batches
+   */
+  /* package-private */ double standardError() {
+    if (fullBatches < 2) {
+      return Double.POSITIVE_INFINITY;
+    }
+    final double mean = batchesMean();
+    double squaredDeviations = 0;
+    for (int k = 0 ; k < fullBatches ; k++) {
+      squaredDeviations += (batches[k] - mean) * (batches[k] - mean);
+    }
+    return Math.sqrt(squaredDeviations / (fullBatches - 1) / fullBatches);
+  }
+
+  /**
+   * @return the standard error of the mean relative to the mean ; 0 if all values are 0
+   */
+  /* package-private */ double relativeError() {
+    final double standardError = standardError();
+    if (standardError == 0) {
+      return 0;
+    }
+    return standardError / Math.abs(mean());
+  }
+
+  /**
+   * @return the lag-1 autocorrelation of the batch means ; 0 if it can not be estimated
+   */
+  /* package-private */ double autocorrelation() {
+    if (fullBatches < 2) {
+      return 0;
+    }
+    final double mean = batchesMean();
+    double covariance = 0;
+    double variance = 0;
+    for (int k = 0 ; k < fullBatches ; k++) {
+      variance += (batches[k] - mean) * (batches[k] - mean);
+      if (k > 0) {
+        covariance += (batches[k] - mean) * (batches[k - 1] - mean);
+      }
+    }
+    return variance == 0 ? 0 : covariance / variance;
+  }
+
+  private double batchesMean() {
+    double mean = 0;
+    for (int k = 0 ; k < fullBatches ; k++) {
+      mean += batches[k];
+    }
+    return mean / fullBatches;
+  }
+
+  /* package-private */ void write(final DataOutput out) throws IOException {
+    out.writeInt(fullBatches);
+    for (int k = 0 ; k < fullBatches ; k++) {
+      out.writeDouble(batches[k]);
+    }
+    out.writeLong(batchSize);
+    out.writeDouble(batchSum);
+    out.writeLong(batchCount);
+    out.writeDouble(sum);
+    out.writeLong(count);
+  }
+
+  /* package-private */ static BatchMeans read(final DataInput in) throws IOException {
+    final BatchMeans batchMeans = new BatchMeans();
+    batchMeans.fullBatches = in.readInt();
+    if (batchMeans.fullBatches < 0 || batchMeans.fullBatches >= MAX_BATCHES) {
+      throw new IOException("Invalid number of batches: " + batchMeans.fullBatches);
+    }
+    for (int k = 0 ; k < batchMeans.fullBatches ; k++) {
+      batchMeans.batches[k] = in.readDouble();
+    }
+    batchMeans.batchSize = in.readLong();
+    batchMeans.batchSum = in.readDouble();
+    batchMeans.batchCount = in.readLong();
+    batchMeans.sum = in.readDouble();
+    batchMeans.count = in.readLong();
+    return batchMeans;
+  }
+}
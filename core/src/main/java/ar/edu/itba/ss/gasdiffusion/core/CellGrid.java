@@ -0,0 +1,241 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ *  Uniform grid of cells that covers the L x W box, used to predict particles' collisions only against
+ *  the particles that are on the neighbour cells.
+ * <p>
+ *  Cells are at least as big as the largest possible collision distance (two times the largest radio), so two
+ *  particles can only collide if they are on neighbour cells. The middle wall at W/2 is always a cell border,
+ *  and cells on opposite sides of it are only neighbours if both are next to the opening.
+ * <p>
+ *  Particles of each cell are kept as a doubly linked list over arrays indexed by particle, so that moving a
+ *  particle from one cell to another does not allocate any object.
+ */
+/* package-private */ class CellGrid {
+  /* package-private */ static final int NO_CELL = -1;
+  /* package-private */ static final int NO_PARTICLE = -1;
+
+  private final int columns;
+  private final int rows;
+  private final double cellWidth;
+  private final double cellHeight;
+  private final int[][] neighbours;
+
+  private final int[] first;
+  private final int[] next;
+  private final int[] previous;
+  private final int[] cellOf;
+
+  /**
+   * @param L the height of the box
+   * @param W the width of the box
+   * @param opening the size of the opening at the middle wall
+   * @param maxRadio the largest radio of all particles
+   * @param N the number of particles
+   */
+  /* package-private */ CellGrid(final double L, final double W, final double opening,
+                                 final double maxRadio, final int N) {
+    // cells should hold about one particle each, but never be smaller than a collision distance
+    final double minSide = Math.max(2 * maxRadio, Math.sqrt(L * W / Math.max(N, 1)));
+
+    final int columnsPerSide = Math.max(1, (int) ((W / 2) / minSide));
+    this.columns = 2 * columnsPerSide;
+    this.rows = Math.max(1, (int) (L / minSide));
+    this.cellWidth = (W / 2) / columnsPerSide;
+    this.cellHeight = L / rows;
+
+    // a particle can only collide with another at the opposite side if both are close to the opening
+    final double openingLowerLimit = (L - opening) / 2 - 2 * maxRadio;
+    final double openingUpperLimit = (L + opening) / 2 + 2 * maxRadio;
+
+    this.neighbours = new int[columns * rows][];
+    final int[] cellNeighbours = new int[9];
+    for (int row = 0 ; row < rows ; row++) {
+      for (int column = 0 ; column < columns ; column++) {
+        int count = 0;
+        for (int neighbourRow = row - 1 ; neighbourRow <= row + 1 ; neighbourRow++) {
+          for (int neighbourColumn = column - 1 ; neighbourColumn <= column + 1 ; neighbourColumn++) {
+            if (neighbourRow < 0 || neighbourRow >= rows || neighbourColumn < 0 || neighbourColumn >= columns) {
+              continue;
+            }
+            final boolean isOppositeSide = (column < columnsPerSide) != (neighbourColumn < columnsPerSide);
+            if (isOppositeSide
+                    && !(isNextToOpening(row, openingLowerLimit, openingUpperLimit)
+                    && isNextToOpening(neighbourRow, openingLowerLimit, openingUpperLimit))) {
+              continue;
+            }
+            cellNeighbours[count++] = neighbourRow * columns + neighbourColumn;
+          }
+        }
+        neighbours[row * columns + column] = Arrays.copyOf(cellNeighbours, count);
+      }
+    }
+
+    this.first = new int[columns * rows];
+    this.next = new int[N];
+    this.previous = new int[N];
+    this.cellOf = new int[N];
+    Arrays.fill(first, NO_PARTICLE);
+    Arrays.fill(cellOf, NO_CELL);
+  }
+
+  private boolean isNextToOpening(final int row, final double openingLowerLimit, final double openingUpperLimit) {
+    return (row + 1) * cellHeight >= openingLowerLimit && row * cellHeight <= openingUpperLimit;
+  }
+
+  /**
+   * @return the cell that contains the given position ; positions out of the box belong to the closest cell
+   */
+  /* package-private */ int cellAt(final double x, final double y) {
+    final int column = Math.min(columns - 1, Math.max(0, (int) (x / cellWidth)));
+    final int row = Math.min(rows - 1, Math.max(0, (int) (y / cellHeight)));
+    return row * columns + column;
+  }
+
+  /* package-private */ int cellOf(final int particle) {
+    return cellOf[particle];
+  }
+
+  /**
+   * As the middle wall is always a cell border, particles can only change their side when moving to another cell
+   * @return true if the given cell is on the left side of the box ; false if it is on the right one
+   */
+  /* package-private */ boolean isLeft(final int cell) {
+    return cell % columns < columns / 2;
+  }
+
+  /**
+   * @return the cells whose particles can collide with the particles of the given cell, including itself
+   */
+  /* package-private */ int[] neighbours(final int cell) {
+    return neighbours[cell];
+  }
+
+  /**
+   * @return the first particle of the given cell ; NO_PARTICLE if it is empty
+   */
+  /* package-private */ int first(final int cell) {
+    return first[cell];
+  }
+
+  /**
+   * @return the particle that follows the given one on its cell ; NO_PARTICLE if it is the last one
+   */
+  /* package-private */ int next(final int particle) {
+    return next[particle];
+  }
+
+  /* package-private */ void add(final int particle, final int cell) {
+    cellOf[particle] = cell;
+    previous[particle] = NO_PARTICLE;
+    next[particle] = first[cell];
+    if (first[cell] != NO_PARTICLE) {
+      previous[first[cell]] = particle;
+    }
+    first[cell] = particle;
+  }
+
+  /* package-private */ void move(final int particle, final int cell) {
+    final int oldCell = cellOf[particle];
+    if (previous[particle] != NO_PARTICLE) {
+      next[previous[particle]] = next[particle];
+    } else {
+      first[oldCell] = next[particle];
+    }
+    if (next[particle] != NO_PARTICLE) {
+      previous[next[particle]] = previous[particle];
+    }
+    add(particle, cell);
+  }
+
+  /**
+   * Writes the particles of each cell, in the order they are kept, so that they can be restored exactly with
+   * {@link #read(DataInput)} on a grid built with the same parameters
+   */
+  /* package-private */ void write(final DataOutput out) throws IOException {
+    out.writeInt(first.length);
+    out.writeInt(cellOf.length);
+    for (final int particle : first) {
+      out.writeInt(particle);
+    }
+    for (int particle = 0 ; particle < cellOf.length ; particle++) {
+      out.writeInt(next[particle]);
+      out.writeInt(previous[particle]);
+      out.writeInt(cellOf[particle]);
+    }
+  }
+
+  /**
+   * Replaces the particles of each cell with the ones written by {@link #write(DataOutput)}
+   * @throws IOException if they were written by a grid of a different size
+   */
+  /* package-private */ void read(final DataInput in) throws IOException {
+    if (in.readInt() != first.length || in.readInt() != cellOf.length) {
+      throw new IOException("The grid was written for a different system");
+    }
+    for (int cell = 0 ; cell < first.length ; cell++) {
+      first[cell] = in.readInt();
+    }
+    for (int particle = 0 ; particle < cellOf.length ; particle++) {
+      next[particle] = in.readInt();
+      previous[particle] = in.readInt();
+      cellOf[particle] = in.readInt();
+    }
+  }
+
+  /**
+   * @param x the particle's x position
+   * @param vx the particle's x velocity
+   * @param cell the cell where the particle is
+   * @return the time until the particle leaves its cell through its left or right border ;
+   *          Double.POSITIVE_INFINITY if it does not move horizontally or that border is the box's one
+   */
+  /* package-private */ double timeToLeaveColumn(final double x, final double vx, final int cell) {
+    final int column = cell % columns;
+    if (vx > 0 && column + 1 < columns) {
+      return ((column + 1) * cellWidth - x) / vx;
+    }
+    if (vx < 0 && column > 0) {
+      return (column * cellWidth - x) / vx;
+    }
+    return Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * @param y the particle's y position
+   * @param vy the particle's y velocity
+   * @param cell the cell where the particle is
+   * @return the time until the particle leaves its cell through its bottom or top border ;
+   *          Double.POSITIVE_INFINITY if it does not move vertically or that border is the box's one
+   */
+  /* package-private */ double timeToLeaveRow(final double y, final double vy, final int cell) {
+    final int row = cell / columns;
+    if (vy > 0 && row + 1 < rows) {
+      return ((row + 1) * cellHeight - y) / vy;
+    }
+    if (vy < 0 && row > 0) {
+      return (row * cellHeight - y) / vy;
+    }
+    return Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * @return the cell that a particle moving at vx reaches when leaving the given cell through a vertical border
+   */
+  /* package-private */ int nextColumnCell(final int cell, final double vx) {
+    return vx > 0 ? cell + 1 : cell - 1;
+  }
+
+  /**
+   * @return the cell that a particle moving at vy reaches when leaving the given cell through a horizontal border
+   */
+  /* package-private */ int nextRowCell(final int cell, final double vy) {
+    return vy > 0 ? cell + columns : cell - columns;
+  }
+}
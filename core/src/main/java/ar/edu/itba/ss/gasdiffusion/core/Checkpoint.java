@@ -0,0 +1,223 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * <p>
+ *  A point from which a stopped simulation can be resumed, producing exactly the same output that it would have
+ *  produced if it had not been stopped.
+ * <p>
+ *  Besides the state of the engine and the progress of the simulation, it keeps the parameters of the run, and the
+ *  lengths that its output files had when it was written, so that anything written after it can be discarded.
+ */
+/* package-private */ class Checkpoint {
+  private static final int MAGIC = 0x4744434B; // "GDCK"
+  private static final int VERSION = 8;
+
+  // parameters of the run
+  private final String format;
+  private final GasDiffusion.Engine engine;
+  private final double L;
+  private final double W;
+  private final double opening;
+  private final double dt2;
+  private final double mass;
+  private final double speed;
+  private final int interval;
+  private final double relativeError;
+  private final boolean events;
+
+  // state of the run ; only available on read checkpoints
+  private GasDiffusion gasDiffusion;
+  private Simulation.Progress progress;
+  private long[] outputLengths;
+
+  /**
+   * @param format the format in which snapshots are saved
+   * @param engine the engine of the simulation
+   * @param L the height of the box
+   * @param W the width of the box
+   * @param opening the size of the opening at the middle wall
+   * @param dt2 the time between snapshots
+   * @param mass the mass of each particle
+   * @param speed the initial speed of each particle
+   * @param interval the number of snapshots between checkpoints
+   * @param relativeError the relative error at which the simulation stops ; 0 if it runs for a fixed number of
+   *                      snapshots after the equilibrium
+   * @param events true if the events of the simulation are recorded on an event log
+   */
+  /* package-private */ Checkpoint(final String format, final GasDiffusion.Engine engine,
+                                   final double L, final double W, final double opening, final double dt2,
+                                   final double mass, final double speed, final int interval,
+                                   final double relativeError, final boolean events) {
+    this.format = format;
+    this.engine = engine;
+    this.L = L;
+    this.W = W;
+    this.opening = opening;
+    this.dt2 = dt2;
+    this.mass = mass;
+    this.speed = speed;
+    this.interval = interval;
+    this.relativeError = relativeError;
+    this.events = events;
+  }
+
+  /**
+   * Writes a checkpoint of a running simulation. It is first written to a temporary file that then replaces the
+   * given one, so that a simulation stopped while writing it can still be resumed from the previous checkpoint.
+   * @param path the file to write
+   * @param gasDiffusion the engine of the simulation
+   * @param progress the progress of the simulation
+   * @param outputLengths the lengths of the output files, once everything before the checkpoint has been written
+   * @throws IOException if the file can not be written
+   */
+  /* package-private */ void write(final Path path, final GasDiffusion gasDiffusion,
+                                  final Simulation.Progress progress, final long[] outputLengths)
+          throws IOException {
+    final Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+    try (final DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+
+      out.writeUTF(format);
+      out.writeUTF(engine.name());
+      out.writeDouble(L);
+      out.writeDouble(W);
+      out.writeDouble(opening);
+      out.writeDouble(dt2);
+      out.writeDouble(mass);
+      out.writeDouble(speed);
+      out.writeInt(interval);
+      out.writeDouble(relativeError);
+      out.writeBoolean(events);
+
+      out.writeInt(outputLengths.length);
+      for (final long length : outputLengths) {
+        out.writeLong(length);
+      }
+
+      gasDiffusion.writeState(out, progress.getPoints());
+      progress.write(out);
+    }
+    Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * @param path the file to read
+   * @param workers the number of threads among which the full-scan engine splits its prediction
+   * @return the checkpoint, with the engine of the simulation restored
+   * @throws IOException if the file can not be read, or it is not a checkpoint
+   */
+  /* package-private */ static Checkpoint read(final Path path, final int workers) throws IOException {
+    try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("'" + path + "' is not a checkpoint file");
+      }
+      final int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("'" + path + "' has an unsupported version: " + version);
+      }
+
+      final Checkpoint checkpoint = new Checkpoint(in.readUTF(), GasDiffusion.Engine.valueOf(in.readUTF()),
+              in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(),
+              in.readInt(), in.readDouble(), in.readBoolean());
+
+      checkpoint.outputLengths = new long[in.readInt()];
+      for (int k = 0 ; k < checkpoint.outputLengths.length ; k++) {
+        checkpoint.outputLengths[k] = in.readLong();
+      }
+
+      checkpoint.gasDiffusion = new GasDiffusion(checkpoint.L, checkpoint.W, checkpoint.opening, checkpoint.engine,
+              workers);
+      checkpoint.progress = Simulation.Progress.read(in, checkpoint.gasDiffusion.readState(in));
+      return checkpoint;
+    } catch (final IllegalArgumentException e) { // unknown engine
+      throw new IOException("'" + path + "' is not a valid checkpoint file", e);
+    }
+  }
+
+  /* package-private */ String getFormat() {
+    return format;
+  }
+
+  /* package-private */ GasDiffusion.Engine getEngine() {
+    return engine;
+  }
+
+  /* package-private */ double getL() {
+    return L;
+  }
+
+  /* package-private */ double getW() {
+    return W;
+  }
+
+  /* package-private */ double getOpening() {
+    return opening;
+  }
+
+  /* package-private */ double getDt2() {
+    return dt2;
+  }
+
+  /* package-private */ double getMass() {
+    return mass;
+  }
+
+  /* package-private */ double getSpeed() {
+    return speed;
+  }
+
+  /**
+   * @return the number of snapshots between checkpoints
+   */
+  /* package-private */ int getInterval() {
+    return interval;
+  }
+
+  /**
+   * @return the relative error at which the simulation stops ; 0 if it runs for a fixed number of snapshots after
+   *          the equilibrium
+   */
+  /* package-private */ double getRelativeError() {
+    return relativeError;
+  }
+
+  /**
+   * @return true if the events of the simulation are recorded on an event log
+   */
+  /* package-private */ boolean hasEvents() {
+    return events;
+  }
+
+  /**
+   * @return the engine of the simulation, ready to continue from the checkpoint
+   */
+  /* package-private */ GasDiffusion getGasDiffusion() {
+    return gasDiffusion;
+  }
+
+  /**
+   * @return the progress of the simulation, ready to be given to {@link Simulation#run(Simulation.Progress,
+   *          Simulation.SnapshotListener, int, Simulation.CheckpointListener)}
+   */
+  /* package-private */ Simulation.Progress getProgress() {
+    return progress;
+  }
+
+  /**
+   * @return the lengths of the output files when the checkpoint was written
+   */
+  /* package-private */ long[] getOutputLengths() {
+    return outputLengths;
+  }
+}
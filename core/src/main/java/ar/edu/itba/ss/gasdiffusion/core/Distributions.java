@@ -0,0 +1,310 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ *  Histograms of the pair distances - from which the radial distribution function g(r) is estimated - and of the
+ *  speeds and velocity components of the particles, accumulated over many snapshots, so that they can be compared
+ *  with the ones of a gas at equilibrium without saving every particle of every snapshot.
+ * <p>
+ *  Pairs are only looked for on the neighbour cells of a grid whose cells are at least as wide as the largest
+ *  distance of the histogram, so each snapshot takes O(N) time for a gas of uniform density.
+ * <p>
+ *  Distances are compared with the ones of uniformly distributed points on the same box, and not on an infinite
+ *  plane, so that g(r) is 1 for an ideal gas at any distance, despite the walls.
+ */
+/* package-private */ class Distributions {
+  /* package-private */ static final int RADIAL_BINS = 50;
+  /* package-private */ static final int VELOCITY_BINS = 40;
+  // the largest distance, as a fraction of the shortest side of the box
+  private static final double MAX_DISTANCE_FRACTION = 1 / 4.0;
+  // the largest speed, as a multiple of the root mean square speed of the initial particles
+  private static final double MAX_SPEED_FACTOR = 4;
+
+  private final double L;
+  private final double W;
+  private final double maxDistance;
+  private final double maxSpeed;
+  private final long[] distances = new long[RADIAL_BINS];
+  private final long[] speeds = new long[VELOCITY_BINS];
+  private final long[] vxs = new long[VELOCITY_BINS];
+  private final long[] vys = new long[VELOCITY_BINS];
+  private long samples;
+  private double pairs; // the number of pairs of particles, summed over all the samples
+  private long velocities; // the number of particles, summed over all the samples
+  private double squaredSpeeds;
+
+  // neighbour grid, built again on each sample
+  private final int columns;
+  private final int rows;
+  private final int[] firstOfCell;
+  private int[] nextOfCell = new int[0];
+  private double[] x = new double[0];
+  private double[] y = new double[0];
+
+  /**
+   * @param L the height of the box
+   * @param W the width of the box
+   * @param initialPoints the particles at time 0, whose root mean square speed sets the range of the velocity
+   *                      histograms
+   */
+  /* package-private */ Distributions(final double L, final double W, final List<Point> initialPoints) {
+    this(L, W, MAX_DISTANCE_FRACTION * Math.min(L, W), MAX_SPEED_FACTOR * rootMeanSquareSpeed(initialPoints));
+  }
+
+  private Distributions(final double L, final double W, final double maxDistance, final double maxSpeed) {
+    this.L = L;
+    this.W = W;
+    this.maxDistance = maxDistance;
+    this.maxSpeed = maxSpeed > 0 ? maxSpeed : 1;
+    this.columns = Math.max(1, (int) (W / maxDistance));
+    this.rows = Math.max(1, (int) (L / maxDistance));
+    this.firstOfCell = new int[columns * rows];
+  }
+
+  private static double rootMeanSquareSpeed(final List<Point> points) {
+    double squaredSpeeds = 0;
+    for (final Point point : points) {
+      squaredSpeeds += point.vx() * point.vx() + point.vy() * point.vy();
+    }
+    return points.isEmpty() ? 0 : Math.sqrt(squaredSpeeds / points.size());
+  }
+
+  /**
+   * Adds the distances and velocities of the given particles to the histograms
+   */
+  /* package-private */ void add(final List<Point> particles) {
+    final int N = particles.size();
+    if (x.length != N) {
+      x = new double[N];
+      y = new double[N];
+      nextOfCell = new int[N];
+    }
+
+    Arrays.fill(firstOfCell, -1);
+    for (int p = 0 ; p < N ; p++) {
+      final Point point = particles.get(p);
+      x[p] = point.x();
+      y[p] = point.y();
+      addVelocity(point.vx(), point.vy());
+
+      final int cell = cellOf(x[p], y[p]);
+      nextOfCell[p] = firstOfCell[cell];
+      firstOfCell[cell] = p;
+    }
+
+    // each pair of cells is visited once: the same cell, and the next ones to the right and above it
+    for (int row = 0 ; row < rows ; row++) {
+      for (int column = 0 ; column < columns ; column++) {
+        final int cell = column + row * columns;
+        for (int p = firstOfCell[cell] ; p != -1 ; p = nextOfCell[p]) {
+          for (int q = nextOfCell[p] ; q != -1 ; q = nextOfCell[q]) {
+            addDistance(p, q);
+          }
+          addDistances(p, column + 1, row);
+          addDistances(p, column - 1, row + 1);
+          addDistances(p, column, row + 1);
+          addDistances(p, column + 1, row + 1);
+        }
+      }
+    }
+
+    samples++;
+    pairs += N * (N - 1.0) / 2;
+    velocities += N;
+  }
+
+  private int cellOf(final double x, final double y) {
+    final int column = Math.min(columns - 1, Math.max(0, (int) (x / W * columns)));
+    final int row = Math.min(rows - 1, Math.max(0, (int) (y / L * rows)));
+    return column + row * columns;
+  }
+
+  private void addDistances(final int p, final int column, final int row) {
+    if (column < 0 || column >= columns || row >= rows) {
+      return;
+    }
+    for (int q = firstOfCell[column + row * columns] ; q != -1 ; q = nextOfCell[q]) {
+      addDistance(p, q);
+    }
+  }
+
+  private void addDistance(final int p, final int q) {
+    final double dx = x[q] - x[p];
+    final double dy = y[q] - y[p];
+    final double distance = Math.sqrt(dx * dx + dy * dy);
+    if (distance < maxDistance) {
+      distances[(int) (distance / maxDistance * RADIAL_BINS)]++;
+    }
+  }
+
+  private void addVelocity(final double vx, final double vy) {
+    final double squaredSpeed = vx * vx + vy * vy;
+    squaredSpeeds += squaredSpeed;
+    add(speeds, Math.sqrt(squaredSpeed) / maxSpeed * VELOCITY_BINS);
+    add(vxs, (vx + maxSpeed) / (2 * maxSpeed) * VELOCITY_BINS);
+    add(vys, (vy + maxSpeed) / (2 * maxSpeed) * VELOCITY_BINS);
+  }
+
+  /**
+   * Counts a value on the given histogram, unless it is out of its range
+   * @param bin the position of the value on the histogram, in bins
+   */
+  private static void add(final long[] histogram, final double bin) {
+    if (bin >= 0 && bin < histogram.length) {
+      histogram[(int) bin]++;
+    }
+  }
+
+  /**
+   * @return the number of snapshots added
+   */
+  /* package-private */ long getSamples() {
+    return samples;
+  }
+
+  /**
+   * @return the width of each bin of {@link #radialDistribution()}
+   */
+  /* package-private */ double getDistanceBinWidth() {
+    return maxDistance / RADIAL_BINS;
+  }
+
+  /**
+   * @return the width of each bin of {@link #speedDensity()} ; the bins of the velocity components are twice as wide,
+   *         as they go from -max. speed to max. speed
+   */
+  /* package-private */ double getSpeedBinWidth() {
+    return maxSpeed / VELOCITY_BINS;
+  }
+
+  /**
+   * @return the largest speed - and absolute value of a velocity component - of the velocity histograms
+   */
+  /* package-private */ double getMaxSpeed() {
+    return maxSpeed;
+  }
+
+  /**
+   * @return g(r) for each distance bin: the number of pairs at those distances, relative to the number of pairs of
+   *         uniformly distributed points on the same box ; 0 if nothing was added
+   */
+  /* package-private */ double[] radialDistribution() {
+    final double[] g = new double[RADIAL_BINS];
+    if (pairs == 0) {
+      return g;
+    }
+    final double binWidth = getDistanceBinWidth();
+    for (int k = 0 ; k < RADIAL_BINS ; k++) {
+      final double uniformPairs = pairs * (uniformDistanceProbability((k + 1) * binWidth)
+              - uniformDistanceProbability(k * binWidth));
+      g[k] = distances[k] / uniformPairs;
+    }
+    return g;
+  }
+
+  /**
+   * The distribution function of the distance between two uniformly distributed points on a rectangle of sides
+   * W and L, valid for distances up to the shortest of them
+   */
+  private double uniformDistanceProbability(final double r) {
+    final double r2 = r * r;
+    return (Math.PI * W * L * r2 - 4 / 3.0 * r2 * r * (W + L) + r2 * r2 / 2) / (W * W * L * L);
+  }
+
+  /**
+   * @return the probability density of the speed at each bin ; 0 if nothing was added
+   */
+  /* package-private */ double[] speedDensity() {
+    return density(speeds, getSpeedBinWidth());
+  }
+
+  /**
+   * @return the probability density of the x component of the velocity at each bin ; 0 if nothing was added
+   */
+  /* package-private */ double[] vxDensity() {
+    return density(vxs, 2 * getSpeedBinWidth());
+  }
+
+  /**
+   * @return the probability density of the y component of the velocity at each bin ; 0 if nothing was added
+   */
+  /* package-private */ double[] vyDensity() {
+    return density(vys, 2 * getSpeedBinWidth());
+  }
+
+  private double[] density(final long[] histogram, final double binWidth) {
+    final double[] density = new double[histogram.length];
+    for (int k = 0 ; k < histogram.length && velocities > 0 ; k++) {
+      density[k] = histogram[k] / (velocities * binWidth);
+    }
+    return density;
+  }
+
+  /**
+   * @return the mean of the squared speed of all the added velocities ; 0 if nothing was added
+   */
+  /* package-private */ double meanSquaredSpeed() {
+    return velocities == 0 ? 0 : squaredSpeeds / velocities;
+  }
+
+  /**
+   * @return the density of the Maxwell-Boltzmann distribution of the speed on two dimensions - with the mean squared
+   *         speed of the added velocities - at the given speed
+   */
+  /* package-private */ double maxwellBoltzmannSpeed(final double speed) {
+    final double variance = meanSquaredSpeed() / 2; // of each component
+    return variance == 0 ? 0 : speed / variance * Math.exp(-speed * speed / (2 * variance));
+  }
+
+  /**
+   * @return the density of the Maxwell-Boltzmann distribution of a velocity component - with the mean squared speed
+   *         of the added velocities - at the given value
+   */
+  /* package-private */ double maxwellBoltzmannComponent(final double v) {
+    final double variance = meanSquaredSpeed() / 2;
+    return variance == 0 ? 0 : Math.exp(-v * v / (2 * variance)) / Math.sqrt(2 * Math.PI * variance);
+  }
+
+  /* package-private */ void write(final DataOutput out) throws IOException {
+    out.writeDouble(L);
+    out.writeDouble(W);
+    out.writeDouble(maxDistance);
+    out.writeDouble(maxSpeed);
+    for (final long[] histogram : new long[][] {distances, speeds, vxs, vys}) {
+      for (final long count : histogram) {
+        out.writeLong(count);
+      }
+    }
+    out.writeLong(samples);
+    out.writeDouble(pairs);
+    out.writeLong(velocities);
+    out.writeDouble(squaredSpeeds);
+  }
+
+  /**
+   * @return the histograms written by {@link #write(DataOutput)}
+   */
+  /* package-private */ static Distributions read(final DataInput in) throws IOException {
+    final Distributions distributions = new Distributions(in.readDouble(), in.readDouble(), in.readDouble(),
+            in.readDouble());
+    for (final long[] histogram : new long[][] {distributions.distances, distributions.speeds, distributions.vxs,
+            distributions.vys}) {
+      for (int k = 0 ; k < histogram.length ; k++) {
+        histogram[k] = in.readLong();
+      }
+    }
+    distributions.samples = in.readLong();
+    distributions.pairs = in.readDouble();
+    distributions.velocities = in.readLong();
+    distributions.squaredSpeeds = in.readDouble();
+    return distributions;
+  }
+}
@@ -0,0 +1,231 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+import ar.edu.itba.ss.gasdiffusion.services.PointFactory;
+import ar.edu.itba.ss.gasdiffusion.services.RandomInRange;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many independent realizations of the same system concurrently, each one from its own random initial state.
+ * Particles are generated in memory and no snapshot is persisted, so that only the equilibrium conditions
+ * of each realization are kept.
+ * <p>
+ * Each realization takes its particles from its own substream of the ensemble's seed, so the same seed always gives
+ * the same realizations, no matter how many of them run at the same time.
+ */
+/* package-private */ class Ensemble {
+  private final int N;
+  private final double mass;
+  private final double speed;
+  private final double radio;
+  private final double L;
+  private final double W;
+  private final double opening;
+  private final double dt2;
+  private final GasDiffusion.Engine engine;
+  private final long seed;
+
+  /**
+   * @param N the number of particles
+   * @param mass the mass of each particle
+   * @param speed the initial speed of each particle
+   * @param radio the radio of each particle
+   * @param L the height of the box
+   * @param W the width of the box
+   * @param opening the size of the opening at the middle wall
+   * @param dt2 the time between snapshots
+   * @param engine the engine used by each realization
+   * @param seed the seed from which the substream of each realization is taken
+   */
+  /* package-private */ Ensemble(final int N, final double mass, final double speed, final double radio,
+                                 final double L, final double W, final double opening, final double dt2,
+                                 final GasDiffusion.Engine engine, final long seed) {
+    this.N = N;
+    this.mass = mass;
+    this.speed = speed;
+    this.radio = radio;
+    this.L = L;
+    this.W = W;
+    this.opening = opening;
+    this.dt2 = dt2;
+    this.engine = engine;
+    this.seed = seed;
+  }
+
+  /* package-private */ int getN() {
+    return N;
+  }
+
+  /* package-private */ double getMass() {
+    return mass;
+  }
+
+  /* package-private */ double getSpeed() {
+    return speed;
+  }
+
+  /* package-private */ double getRadio() {
+    return radio;
+  }
+
+  /* package-private */ double getL() {
+    return L;
+  }
+
+  /* package-private */ double getW() {
+    return W;
+  }
+
+  /* package-private */ double getOpening() {
+    return opening;
+  }
+
+  /* package-private */ double getDt2() {
+    return dt2;
+  }
+
+  /* package-private */ long getSeed() {
+    return seed;
+  }
+
+  /**
+   * @param realizations the number of realizations
+   * @return the substream of each realization, in the order they are scheduled ; always the same ones for the
+   *          ensemble's seed
+   */
+  /* package-private */ List<RandomInRange> streams(final int realizations) {
+    final RandomInRange random = new RandomInRange(seed);
+    final List<RandomInRange> streams = new ArrayList<>(realizations);
+    for (int k = 0 ; k < realizations ; k++) {
+      streams.add(random.split());
+    }
+    return streams;
+  }
+
+  /**
+   * @param realizations the number of realizations to run
+   * @param threads the number of realizations that run at the same time
+   * @return the equilibrium conditions of each realization, in the order they were scheduled
+   * @throws IllegalStateException if a realization can not be run: either its particles could not be generated,
+   *                               or they never collide
+   * @throws InterruptedException if the current thread is interrupted while waiting for the realizations
+   */
+  /* package-private */ List<Realization> run(final int realizations, final int threads)
+          throws InterruptedException {
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<Realization>> futures = new ArrayList<>(realizations);
+      for (final RandomInRange random : streams(realizations)) {
+        futures.add(executor.submit(() -> runRealization(random)));
+      }
+
+      final List<Realization> results = new ArrayList<>(realizations);
+      for (final Future<Realization> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs a single realization on the calling thread
+   * @param random the substream from which its particles are taken
+   * @return its equilibrium conditions
+   * @throws IllegalStateException if either its particles could not be generated, or they never collide
+   */
+  /* package-private */ Realization runRealization(final RandomInRange random) {
+    final Point leftBottomPoint = Point.builder(0, 0).vx(0).vy(0).build();
+    final Point rightTopPoint = Point.builder(W / 2, L).vx(0).vy(0).build();
+
+    // each realization has its own context, so realizations running at the same time do not share any state
+    final GasDiffusion gasDiffusion = new GasDiffusion(L, W, opening, engine);
+    final Set<Point> pointsSet = new PointFactory(gasDiffusion.getContext()).randomPoints(random, leftBottomPoint,
+            rightTopPoint, radio, N, false, Integer.MAX_VALUE, speed, mass);
+    if (pointsSet.size() < N) {
+      throw new IllegalStateException("Could not generate all the particles: N is too big for the given L and W");
+    }
+    // the order of the set depends on the ids of the particles, so it is fixed by their positions instead
+    final List<Point> points = new ArrayList<>(pointsSet);
+    points.sort(Comparator.comparingDouble(Point::x).thenComparingDouble(Point::y));
+
+    // fraction of each snapshot, starting with the initial state - all particles are on the left side
+    final List<Double> fractions = new ArrayList<>();
+    fractions.add(1.0);
+
+    final Simulation.Result result;
+    try {
+      result = new Simulation(gasDiffusion, dt2).run(points,
+              (systemData, iteration, systemTime) -> fractions.add(systemData.getLeftSideFraction()));
+    } finally {
+      gasDiffusion.close();
+    }
+
+    return new Realization(result.getEqTime(), result.getEqIteration(), result.getMeanPressure(),
+            result.getSystemData().getMeanKineticEnergy(),
+            fractions.stream().mapToDouble(Double::doubleValue).toArray());
+  }
+
+  /**
+   * The equilibrium conditions of a single realization
+   */
+  /* package-private */ static class Realization {
+    private final double timeToEquilibrium;
+    private final int iterationsToEquilibrium;
+    private final double pressure;
+    private final double temperature;
+    private final double[] fractions;
+
+    private Realization(final double timeToEquilibrium, final int iterationsToEquilibrium,
+                        final double pressure, final double temperature, final double[] fractions) {
+      this.timeToEquilibrium = timeToEquilibrium;
+      this.iterationsToEquilibrium = iterationsToEquilibrium;
+      this.pressure = pressure;
+      this.temperature = temperature;
+      this.fractions = fractions;
+    }
+
+    /* package-private */ double getTimeToEquilibrium() {
+      return timeToEquilibrium;
+    }
+
+    /* package-private */ int getIterationsToEquilibrium() {
+      return iterationsToEquilibrium;
+    }
+
+    /**
+     * @return the mean pressure since the equilibrium was reached
+     */
+    /* package-private */ double getPressure() {
+      return pressure;
+    }
+
+    /**
+     * @return the mean kinetic energy of the particles at the end of the realization
+     */
+    /* package-private */ double getTemperature() {
+      return temperature;
+    }
+
+    /**
+     * @return the fraction of particles on the left side at each snapshot, from the initial state on
+     */
+    /* package-private */ double[] getFractions() {
+      return fractions;
+    }
+  }
+}
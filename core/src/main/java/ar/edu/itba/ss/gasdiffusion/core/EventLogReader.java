@@ -0,0 +1,188 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Event;
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+import ar.edu.itba.ss.gasdiffusion.models.Wall;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static ar.edu.itba.ss.gasdiffusion.core.EventLogWriter.*;
+
+/**
+ * Reads a file written by {@link EventLogWriter}, one record after the other. The values of the current record are
+ * read in place, so that no object is created for each of them.
+ */
+/* package-private */ class EventLogReader implements Closeable {
+  private static final int RECORDS_PER_BUFFER = 1024;
+
+  private final FileChannel channel;
+  private final int N;
+  private final double L;
+  private final double W;
+  private final double opening;
+  private final List<Point> initialPoints;
+  private final ByteBuffer records = ByteBuffer.allocateDirect(RECORDS_PER_BUFFER * RECORD_SIZE).order(BYTE_ORDER);
+  private int record = -RECORD_SIZE; // the position of the current record on the buffer
+
+  /**
+   * @param path the file to read
+   * @throws IOException if the file can not be read, or it is not an event log
+   */
+  /* package-private */ EventLogReader(final Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      final ByteBuffer header = readFully(path, HEADER_SIZE);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("'" + path + "' is not an event log");
+      }
+      final int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("'" + path + "' has an unsupported version: " + version);
+      }
+      this.N = header.getInt();
+      this.L = header.getDouble();
+      this.W = header.getDouble();
+      this.opening = header.getDouble();
+
+      final ByteBuffer particles = readFully(path, N * PARTICLE_SIZE);
+      final List<Point> points = new ArrayList<>(N);
+      for (int p = 0 ; p < N ; p++) {
+        final long id = particles.getLong();
+        final double x = particles.getDouble();
+        final double y = particles.getDouble();
+        points.add(Point.builder(x, y)
+                .id(id)
+                .vx(particles.getDouble())
+                .vy(particles.getDouble())
+                .mass(particles.getDouble())
+                .radio(particles.getDouble())
+                .build());
+      }
+      this.initialPoints = Collections.unmodifiableList(points);
+    } catch (final IOException e) {
+      channel.close();
+      throw e;
+    }
+    records.limit(0);
+  }
+
+  private ByteBuffer readFully(final Path path, final int size) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(size).order(BYTE_ORDER);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new IOException("'" + path + "' is too short to be an event log");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * @return the number of particles
+   */
+  /* package-private */ int getN() {
+    return N;
+  }
+
+  /* package-private */ double getL() {
+    return L;
+  }
+
+  /* package-private */ double getW() {
+    return W;
+  }
+
+  /* package-private */ double getOpening() {
+    return opening;
+  }
+
+  /**
+   * @return the particles at time 0, in the order in which the records refer to them
+   */
+  /* package-private */ List<Point> getInitialPoints() {
+    return initialPoints;
+  }
+
+  /**
+   * Moves to the next record
+   * @return true if there is one ; false at the end of the file. A record that was being written when the
+   *         simulation stopped is ignored
+   * @throws IOException if the file can not be read
+   */
+  /* package-private */ boolean next() throws IOException {
+    record += RECORD_SIZE;
+    if (record + RECORD_SIZE <= records.limit()) {
+      return true;
+    }
+
+    // the incomplete record at the end of the buffer - if any - is kept, and the buffer is filled again
+    records.position(record);
+    records.compact();
+    while (records.hasRemaining() && channel.read(records) >= 0) {
+      // keep reading until the buffer is full, or the file ends
+    }
+    records.flip();
+    record = 0;
+    return records.limit() >= RECORD_SIZE;
+  }
+
+  /**
+   * @return the time of the current event, since the start of the simulation
+   */
+  /* package-private */ double time() {
+    return records.getDouble(record);
+  }
+
+  /**
+   * @return the particle that took part on the current event
+   */
+  /* package-private */ int i() {
+    return records.getInt(record + Double.BYTES);
+  }
+
+  /**
+   * @return the other particle that took part on the current event ; {@link Event#NO_PARTICLE} if it was a wall
+   *         collision
+   */
+  /* package-private */ int j() {
+    final int j = records.getInt(record + Double.BYTES + Integer.BYTES);
+    return j < 0 ? Event.NO_PARTICLE : j;
+  }
+
+  /**
+   * @return the wall that was hit on the current event ; null if it was a collision between particles
+   */
+  /* package-private */ Wall wall() {
+    final int j = records.getInt(record + Double.BYTES + Integer.BYTES);
+    return j < 0 ? Wall.values()[-1 - j] : null;
+  }
+
+  /* package-private */ double vxI() {
+    return records.getDouble(record + Double.BYTES + 2 * Integer.BYTES);
+  }
+
+  /* package-private */ double vyI() {
+    return records.getDouble(record + 2 * Double.BYTES + 2 * Integer.BYTES);
+  }
+
+  /* package-private */ double vxJ() {
+    return records.getDouble(record + 3 * Double.BYTES + 2 * Integer.BYTES);
+  }
+
+  /* package-private */ double vyJ() {
+    return records.getDouble(record + 4 * Double.BYTES + 2 * Integer.BYTES);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
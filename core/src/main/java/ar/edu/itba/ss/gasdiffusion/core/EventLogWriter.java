@@ -0,0 +1,159 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Event;
+import ar.edu.itba.ss.gasdiffusion.models.ParticleStore;
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+import ar.edu.itba.ss.gasdiffusion.models.Wall;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * <p>
+ *  Records every event that changes the velocity of a particle on an append-only binary log, from which the whole
+ *  simulation can be replayed - at any time between snapshots - without predicting any collision again.
+ *  All values are little-endian.
+ * <p>
+ *  The file starts with a header:
+ *  <pre>
+ *    int    magic number ({@link #MAGIC})
+ *    int    format version ({@link #VERSION})
+ *    int    N, the number of particles
+ *    double L, the height of the box
+ *    double W, the width of the box
+ *    double opening, the size of the opening at the middle wall
+ *  </pre>
+ *  followed by the state of the particles at time 0, in the order in which the events refer to them:
+ *  <pre>
+ *    N times: long id, double x, double y, double vx, double vy, double mass, double radio
+ *  </pre>
+ *  and then by records of {@link #RECORD_SIZE} bytes each, one per event, in the order in which they were run:
+ *  <pre>
+ *    double time, since the start of the simulation
+ *    int    i, the index of the particle that took part on the event
+ *    int    j, the index of the other particle ; or -1 - the ordinal of the {@link Wall} that was hit
+ *    double vx, vy of particle i after the event
+ *    double vx, vy of particle j after the event ; 0 for a wall collision
+ *  </pre>
+ *  Records are buffered, so only the ones before the last {@link #flush()} are sure to be on the file.
+ *
+ * @see EventLogReader
+ */
+/* package-private */ class EventLogWriter implements GasDiffusion.EventListener, Closeable {
+  /* package-private */ static final int MAGIC = 0x4744454C; // "GDEL"
+  /* package-private */ static final int VERSION = 1;
+  /* package-private */ static final int HEADER_SIZE = 3 * Integer.BYTES + 3 * Double.BYTES;
+  /* package-private */ static final int PARTICLE_SIZE = Long.BYTES + 6 * Double.BYTES;
+  /* package-private */ static final int RECORD_SIZE = 5 * Double.BYTES + 2 * Integer.BYTES;
+  /* package-private */ static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+  private static final int RECORDS_PER_BUFFER = 1024;
+
+  private final FileChannel channel;
+  // the same buffer is used for every batch of records
+  private final ByteBuffer records = ByteBuffer.allocateDirect(RECORDS_PER_BUFFER * RECORD_SIZE).order(BYTE_ORDER);
+  private double time;
+
+  /**
+   * Creates - or truncates - the given file, and writes its header and the initial state of the particles
+   * @param path the file to write
+   * @param points the particles at time 0, in the order of the engine's store
+   * @param L the height of the box
+   * @param W the width of the box
+   * @param opening the size of the opening at the middle wall
+   * @throws IOException if the file can not be written
+   */
+  /* package-private */ EventLogWriter(final Path path, final List<Point> points,
+                                       final double L, final double W, final double opening) throws IOException {
+    this.channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    this.time = 0;
+
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + points.size() * PARTICLE_SIZE).order(BYTE_ORDER);
+    header.putInt(MAGIC).putInt(VERSION).putInt(points.size()).putDouble(L).putDouble(W).putDouble(opening);
+    for (final Point point : points) {
+      header.putLong(point.id())
+              .putDouble(point.x()).putDouble(point.y())
+              .putDouble(point.vx()).putDouble(point.vy())
+              .putDouble(point.mass()).putDouble(point.radio());
+    }
+    header.flip();
+    writeFully(header);
+  }
+
+  /**
+   * Opens an existing file to append new records to it
+   * @param path the file to write ; it must have been created by this class for the same simulation
+   * @param time the time of the simulation from which records are appended
+   * @throws IOException if the file can not be written, or it is too short to be an event log
+   */
+  /* package-private */ EventLogWriter(final Path path, final double time) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    if (channel.size() < HEADER_SIZE) {
+      channel.close();
+      throw new IOException("'" + path + "' is too short to be an event log");
+    }
+    this.time = time;
+  }
+
+  /**
+   * Moves the time of the next records ; it is summed the same way the simulation sums it
+   */
+  @Override
+  public void onStep(final double tc) {
+    time += tc;
+  }
+
+  /**
+   * Appends a record of the given event
+   * @throws UncheckedIOException if the file can not be written
+   */
+  @Override
+  public void onEvent(final ParticleStore store, final int i, final int j, final Wall wall) {
+    final boolean isWall = j == Event.NO_PARTICLE;
+    records.putDouble(time)
+            .putInt(i)
+            .putInt(isWall ? -1 - wall.ordinal() : j)
+            .putDouble(store.vx(i)).putDouble(store.vy(i))
+            .putDouble(isWall ? 0 : store.vx(j)).putDouble(isWall ? 0 : store.vy(j));
+
+    if (!records.hasRemaining()) {
+      try {
+        flush();
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Writes the buffered records on the file
+   * @throws IOException if the file can not be written
+   */
+  /* package-private */ void flush() throws IOException {
+    records.flip();
+    writeFully(records);
+    records.clear();
+  }
+
+  private void writeFully(final ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+}
@@ -5,16 +5,154 @@ import ar.edu.itba.ss.gasdiffusion.services.GeometricEquations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.Set;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
 
-class GasDiffusion {
+class GasDiffusion implements AutoCloseable {
   private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
+  private final SimulationContext context;
   private final SystemData systemData;
+  private final Engine engine;
+  private final ForkJoinPool pool; // null when the full-scan prediction runs sequentially
+  private EventListener eventListener = NO_LISTENER;
+  private double eventsTime; // the time of the store at which the events of the current call are run
+  private final IntPredicate isInNextEvents = this::isInNextEvents;
+
+  // the particles of both engines, updated in place
+  private ParticleStore store;
+
+  // full scan engine's state
+  private PointsEvent[] pointsEvents; // one record of each type per particle, set again on each prediction
+  private WallEvent[] wallEvents;
+  private Event[] minEvents; // the closest event of each particle ; one of its records
+  private List<Event> nextEvents; // the events with the min. collision time
+  private boolean[] isLeft; // the side of each particle after the last event
+
+  // event queue engine's state
+  private PriorityQueue<ScheduledEvent> queue;
+  private Deque<ScheduledEvent> eventPool;
+  private CellGrid grid;
+  private double lastCollisionTime;
+  private ScheduledEvent queueEvent; // the one that is run on the current call
+  private int collisionsSinceSynchronization;
+  private int leftSideParticles;
+
+  /* package-private */ interface EventListener {
+    /**
+     * Called once on each call to {@link #run(List)}, before its events are run
+     * @param tc the time elapsed since the previous call
+     */
+    void onStep(double tc);
+
+    /**
+     * Called right after each event that changes the velocity of a particle
+     * @param store the particles, with their velocities after the event
+     * @param i the particle that took part on the event
+     * @param j the other particle that took part on the event ; {@link Event#NO_PARTICLE} if it was a wall collision
+     * @param wall the wall that was hit ; null if it was a collision between particles
+     */
+    void onEvent(ParticleStore store, int i, int j, Wall wall);
+  }
+
+  /* package-private */ interface Sampler {
+    /**
+     * Called on each call to {@link #run(List, Sampler)} once the particles have moved to the time of its events,
+     * but before these are run, so that the system can be sampled - with {@link #sample(double)} - at any time
+     * since the previous call
+     * @param tc the time elapsed since the previous call
+     */
+    void beforeEvents(double tc);
+  }
+
+  private static final Sampler NO_SAMPLER = tc -> {};
+
+  private static final EventListener NO_LISTENER = new EventListener() {
+    @Override
+    public void onStep(final double tc) {
+    }
+
+    @Override
+    public void onEvent(final ParticleStore store, final int i, final int j, final Wall wall) {
+    }
+  };
+
+  /* package-private */ enum Engine {
+    /**
+     * Predicts all the possible collisions (every pair and every wall) again after each event.
+     * The prediction can be split among several workers
+     */
+    FULL_SCAN,
+    /**
+     * Keeps a priority queue of future events and, after each event,
+     * re-predicts only the collisions of the particles that took part on it.
+     * Collisions are only predicted against the particles of the neighbour cells of a grid
+     */
+    EVENT_QUEUE
+  }
 
   GasDiffusion(final double L, final double W, final double opening) {
-    systemData = new SystemData(L, W, opening);
+    this(L, W, opening, Engine.FULL_SCAN);
+  }
+
+  GasDiffusion(final double L, final double W, final double opening, final Engine engine) {
+    this(L, W, opening, engine, 1);
+  }
+
+  /**
+   * @param workers the number of threads among which the full-scan prediction is split ;
+   *                1 to run it on the calling thread. It has no effect on the event queue engine
+   */
+  GasDiffusion(final double L, final double W, final double opening, final Engine engine, final int workers) {
+    this(new SimulationContext(L, W, opening), engine, workers);
+  }
+
+  /**
+   * @param context the box of the simulation, and the source of the ids of its particles ; it must not be shared
+   *                with another simulation
+   * @param workers the number of threads among which the full-scan prediction is split ;
+   *                1 to run it on the calling thread. It has no effect on the event queue engine
+   */
+  GasDiffusion(final SimulationContext context, final Engine engine, final int workers) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Workers should be >= 1");
+    }
+    this.context = context;
+    this.systemData = new SystemData(context);
+    this.engine = engine;
+    this.pool = workers > 1 && engine == Engine.FULL_SCAN ? new ForkJoinPool(workers) : null;
+  }
+
+  /**
+   * Stops the threads among which the full-scan prediction is split, if any ; the simulation can not be run anymore
+   */
+  @Override
+  public void close() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * @return the box of this simulation, from which its particles should get their ids
+   */
+  /* package-private */ SimulationContext getContext() {
+    return context;
+  }
+
+  /**
+   * @param eventListener the listener to be notified of each event that is run from now on ; null for none
+   */
+  /* package-private */ void setEventListener(final EventListener eventListener) {
+    this.eventListener = eventListener == null ? NO_LISTENER : eventListener;
   }
 
   /**
@@ -28,7 +166,100 @@ class GasDiffusion {
    * @return the SystemData structure
    */
   SystemData run(final List<Point> points) {
-    final List<Event> minEvent;
+    return run(points, NO_SAMPLER);
+  }
+
+  /**
+   * Runs the next event, as {@link #run(List)} does, letting the given sampler sample the system right before it
+   * @param points the points over to which run the current iteration
+   * @param sampler the sampler to be called before the events are run
+   * @return the SystemData structure
+   */
+  SystemData run(final List<Point> points, final Sampler sampler) {
+    if (SimulationMetrics.ENABLED) {
+      final long start = System.nanoTime();
+      final SystemData systemData = runEngine(points, sampler);
+      SimulationMetrics.INSTANCE.recordStep(System.nanoTime() - start);
+      return systemData;
+    }
+    return runEngine(points, sampler);
+  }
+
+  private SystemData runEngine(final List<Point> points, final Sampler sampler) {
+    if (engine == Engine.EVENT_QUEUE) {
+      return runEventQueue(points, sampler);
+    }
+    return runFullScan(points, sampler);
+  }
+
+  /**
+   * <p>
+   *  Moves the system back to the given time before the events of the current call - along the straight lines that
+   *  the particles follow until then - so that it is sampled at that exact time, and not at the time of an event.
+   * <p>
+   *  It may only be called from {@link Sampler#beforeEvents(double)}, and the returned particles must be read before
+   *  it returns, as the system is moved to the time of the events afterwards.
+   * @param timeBeforeEvents how long before the events the system is sampled ; at most the time elapsed since the
+   *                         previous call
+   * @return the SystemData structure, with the particles - and the fraction of them on the left side - at that time.
+   *         Particles are marked as colliding if they take part on an event at that time: either on the events
+   *         of the current call - when it is their time - or on previous ones at the same time
+   */
+  SystemData sample(final double timeBeforeEvents) {
+    store.moveTo(eventsTime - timeBeforeEvents);
+
+    int leftSideParticles = 0;
+    for (int p = 0 ; p < store.size() ; p++) {
+      if (store.x(p) <= context.getW()/2) {
+        leftSideParticles++;
+      }
+    }
+    // the particles of the events of this call are already in contact at their time, though they are not run yet
+    systemData.particles = timeBeforeEvents == 0 ? store.points(isInNextEvents) : store.points();
+    systemData.leftSideFraction = (double) leftSideParticles / store.size();
+    return systemData;
+  }
+
+  /**
+   * @return true if the given particle takes part on any of the events of the current call
+   */
+  private boolean isInNextEvents(final int p) {
+    if (engine == Engine.EVENT_QUEUE) {
+      return queueEvent.i == p || queueEvent.j == p;
+    }
+    for (final Event event : nextEvents) {
+      if (event.getI() == p || event.getJ() == p) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Lets the sampler sample the system before the events at the current time of the store are run
+   */
+  private void sampleBeforeEvents(final Sampler sampler, final double tc) {
+    eventsTime = store.time();
+    sampler.beforeEvents(tc);
+    store.moveTo(eventsTime);
+  }
+
+  /**
+   * <p>
+   *  Predicts the closest event of each particle again, and runs the ones with the min. collision time.
+   * <p>
+   *  Particles are kept on a ParticleStore that is updated in place, and the returned particles are a read-only
+   *  view of it. Events are predicted on reusable records - one of each type per particle - so that no object is
+   *  created on each call. The store is synchronized after each call, so that all the particles' positions are
+   *  updated the same way the ones of immutable points would be.
+   * <p>
+   *  The store is built on the first call, and again if the given points are not the ones returned
+   *  by the previous call.
+   * @param points the points over to which run the current iteration
+   * @param sampler the sampler to be called before the events are run
+   * @return the SystemData structure
+   */
+  private SystemData runFullScan(final List<Point> points, final Sampler sampler) {
   /*
    * During run method, it saves the number of particles at the right side of the box.
    * For doing that, it starts run method with value 0.0, and it is increased each time a particle is found to be
@@ -43,127 +274,668 @@ class GasDiffusion {
       return systemData;
     }
 
-    systemData.resetParticles(points.size());
+    if (store == null || points != systemData.particles) {
+      initFullScan(points);
+    }
 
-    minEvent = predictCollisions(points);
+    predictCollisions();
 
-    if (minEvent.isEmpty()) {
+    if (nextEvents.isEmpty()) {
       LOGGER.debug("There does not exist a collision. Skipping particle update...");
+      systemData.resetParticles(0);
       return systemData;
     }
 
     // There existed at least a collision and that collision has the min. tc
-    // Update the position of all particles (Including the ones that collided)
-    final double tc = minEvent.get(0).getTime();
-    for(final Point point : points) {
-      systemData.particles.add(point.updatePoint(tc));
+    // Move all particles (Including the ones that collided)
+    final double tc = nextEvents.get(0).getTime();
+    store.advance(tc);
+    eventListener.onStep(tc);
+    sampleBeforeEvents(sampler, tc);
+    int leftSideParticles = 0;
+    for (int p = 0 ; p < store.size() ; p++) {
       // If particle is on the left side => add it to the current leftSideFraction counter
-      if (point.x() <= systemData.W/2) { // calculate leftSideFraction after update
-        systemData.leftSideFraction++;
+      final boolean isLeft = store.x(p) <= context.getW()/2;
+      if (isLeft) { // calculate leftSideFraction after update
+        leftSideParticles++;
+      }
+      if (isLeft != this.isLeft[p]) { // the particle has crossed the opening
+        systemData.moveKineticEnergy(store.kineticEnergy(p), isLeft);
+        this.isLeft[p] = isLeft;
       }
     }
 
-    Set<Point> collisionParticles;
-    for(Event event : minEvent){
-      collisionParticles = event.execute();
-
-      // Remove the particles that take part in an event, and add them again with updated velocity and position
-      systemData.particles.removeAll(collisionParticles);
-      systemData.particles.addAll(collisionParticles);
+    for (final Event event : nextEvents) {
+      event.execute(store);
+      systemData.addKineticEnergy(event.getKineticEnergyChange(event.getI()), isLeft[event.getI()]);
+      if (event.getJ() != Event.NO_PARTICLE) {
+        systemData.addKineticEnergy(event.getKineticEnergyChange(event.getJ()), isLeft[event.getJ()]);
+      }
 
       // Get the event's resulting currentPressure
       systemData.currentPressure += event.getPressure();
+      eventListener.onEvent(store, event.getI(), event.getJ(),
+              event instanceof WallEvent ? ((WallEvent) event).getWall() : null);
+
+      if (SimulationMetrics.ENABLED) {
+        countEvent(event);
+      }
     }
+    store.synchronize();
 
-    final long N = points.size();
-    systemData.leftSideFraction /= N; // (1) division by zero avoided as noticed at that reference
+    systemData.particles = store.points();
+    // (1) division by zero avoided as noticed at that reference
+    systemData.leftSideFraction = (double) leftSideParticles / store.size();
     systemData.collisionTime = tc;
 
     return systemData;
   }
 
+  private void initFullScan(final List<Point> points) {
+    store = new ParticleStore(points);
+    initFullScanEvents();
+    sumKineticEnergy(points);
+  }
+
+  private void initFullScanEvents() {
+    final int N = store.size();
+    pointsEvents = new PointsEvent[N];
+    wallEvents = new WallEvent[N];
+    minEvents = new Event[N];
+    nextEvents = new ArrayList<>();
+    isLeft = new boolean[N];
+    for (int p = 0 ; p < N ; p++) {
+      pointsEvents[p] = new PointsEvent();
+      wallEvents[p] = new WallEvent();
+      isLeft[p] = store.x(p) <= context.getW()/2;
+    }
+  }
+
   /**
-   * Predict the next events (collisions)
-   * @param points the collection of points to be checked against the given point
+   * <p>
+   *  Runs the next valid collision of the queue. Only the particles that take part on it change their velocities,
+   *  so only their collisions are predicted again. Events that involve particles that have collided since the
+   *  event was predicted are stale, and so they are discarded when they reach the head of the queue.
+   * <p>
+   *  Collisions are only predicted against the particles on the neighbour cells of the grid, so the cell crossings
+   *  that happen before the collision are also run here.
+   * <p>
+   *  Particles are kept on a ParticleStore that is updated in place, and the returned particles are a read-only
+   *  view of it. Only the particles that take part on the collision get their positions updated; the others are
+   *  calculated when needed, and all of them are synchronized once every N collisions.
+   * <p>
+   *  The particles on the left side are counted as they cross the middle of the box - through the cell crossings -
+   *  so the fraction of them is not calculated again from all the particles after each collision.
+   * <p>
+   *  The queue is built on the first call, and again if the given points are not the ones returned
+   *  by the previous call.
+   * @param points the points over to which run the current iteration
+   * @param sampler the sampler to be called before the event is run
+   * @return the SystemData structure
    */
-  private List<Event> predictCollisions(final List<Point> points) {
-    List<Event> eventList = new ArrayList<>();
-    Event minEvent, hWallEvent, vWallEvent, middleWallEvent;
-    double tc;
+  private SystemData runEventQueue(final List<Point> points, final Sampler sampler) {
+    systemData.leftSideFraction = 0;
+    systemData.collisionTime = 0;
 
-    for(int i = 0; i < points.size(); i++) {
-      minEvent = null;
-      final Point point = points.get(i);
+    if (points == null || points.size() == 0) { // nothing to process; avoid future division by zero (1)
+      systemData.resetParticles(0);
+      return systemData;
+    }
 
-      // Calculate the closest collision between the current particle and all the others
-      for(int j = i + 1; j < points.size(); j++) {
-        final Point pointToCompare = points.get(j);
+    if (queue == null || points != systemData.particles) {
+      initEventQueue(points);
+    }
 
-        tc = GeometricEquations.collisionTime(point, pointToCompare);
-        if(minEvent == null || tc < minEvent.getTime()) {
-          minEvent = new PointsEvent(tc, point, pointToCompare);
-        }
+    ScheduledEvent nextEvent;
+    while ((nextEvent = pollValidEvent()) != null && nextEvent.type == ScheduledEvent.Type.CELL_CROSSING) {
+      store.advance(nextEvent.time - store.time());
+      moveToCell(nextEvent.i, nextEvent.cell);
+      predictCollision(nextEvent.i);
+      eventPool.push(nextEvent);
+      if (SimulationMetrics.ENABLED) {
+        SimulationMetrics.INSTANCE.countCellCrossing();
+      }
+    }
+
+    if (nextEvent == null) {
+      LOGGER.debug("There does not exist a collision. Skipping particle update...");
+      systemData.resetParticles(0);
+      return systemData;
+    }
+
+    // Move the system to the time of the event
+    final double tc = nextEvent.time - lastCollisionTime;
+    store.advance(nextEvent.time - store.time());
+    lastCollisionTime = nextEvent.time;
+    eventListener.onStep(tc);
+    queueEvent = nextEvent;
+    sampleBeforeEvents(sampler, tc);
+
+    if (nextEvent.type == ScheduledEvent.Type.WALL) {
+      store.bounce(nextEvent.i, nextEvent.wall);
+      systemData.currentPressure += WallEvent.pressure(store.mass(nextEvent.i), store.speed(nextEvent.i),
+              context.wallLength(nextEvent.wall));
+      eventListener.onEvent(store, nextEvent.i, Event.NO_PARTICLE, nextEvent.wall);
+      predictCollision(nextEvent.i);
+    } else {
+      final double kineticEnergyI = store.kineticEnergy(nextEvent.i);
+      final double kineticEnergyJ = store.kineticEnergy(nextEvent.j);
+      store.collide(nextEvent.i, nextEvent.j);
+      systemData.addKineticEnergy(store.kineticEnergy(nextEvent.i) - kineticEnergyI,
+              grid.isLeft(grid.cellOf(nextEvent.i)));
+      systemData.addKineticEnergy(store.kineticEnergy(nextEvent.j) - kineticEnergyJ,
+              grid.isLeft(grid.cellOf(nextEvent.j)));
+      eventListener.onEvent(store, nextEvent.i, nextEvent.j, null);
+      predictCollision(nextEvent.i);
+      predictCollision(nextEvent.j);
+    }
+    eventPool.push(nextEvent);
+
+    if (SimulationMetrics.ENABLED) {
+      countEvent(nextEvent.type == ScheduledEvent.Type.WALL ? nextEvent.wall : null);
+      SimulationMetrics.INSTANCE.recordQueueSize(queue.size());
+    }
+
+    if (++collisionsSinceSynchronization >= store.size()) {
+      synchronize();
+    }
+
+    systemData.particles = store.points();
+    // (1) division by zero avoided as noticed at that reference
+    systemData.leftSideFraction = (double) leftSideParticles / store.size();
+    systemData.collisionTime = tc;
+
+    return systemData;
+  }
+
+  private void initEventQueue(final List<Point> points) {
+    store = new ParticleStore(points);
+    queue = new PriorityQueue<>(2 * store.size());
+    eventPool = new ArrayDeque<>(2 * store.size());
+    lastCollisionTime = 0;
+    collisionsSinceSynchronization = 0;
+
+    double maxRadio = 0;
+    for (int p = 0 ; p < store.size() ; p++) {
+      maxRadio = Math.max(maxRadio, store.radio(p));
+    }
+    grid = new CellGrid(context.getL(), context.getW(), context.getOpening(), maxRadio, store.size());
+    for (int p = 0 ; p < store.size() ; p++) {
+      grid.add(p, grid.cellAt(store.x(p), store.y(p)));
+    }
+    countLeftSideParticles();
+    systemData.leftSideKineticEnergy = 0;
+    systemData.rightSideKineticEnergy = 0;
+    for (int p = 0 ; p < store.size() ; p++) {
+      systemData.addKineticEnergy(store.kineticEnergy(p), grid.isLeft(grid.cellOf(p)));
+    }
+
+    for (int p = 0 ; p < store.size() ; p++) {
+      predictCollision(p);
+    }
+  }
+
+  /**
+   * <p>
+   *  Writes the state of the engine, so that it can continue from it - with {@link #readState(DataInput)} - exactly
+   *  as if it had not been stopped.
+   * <p>
+   *  The full-scan engine only needs its particles' store, but the event queue engine also needs its queue and grid,
+   *  as they determine the order in which simultaneous events are run.
+   * @param points the points returned by the last call to {@link #run(List)}
+   */
+  /* package-private */ void writeState(final DataOutput out, final List<Point> points) throws IOException {
+    out.writeDouble(systemData.currentPressure);
+    out.writeDouble(systemData.totalPressure);
+    out.writeDouble(systemData.leftSideKineticEnergy);
+    out.writeDouble(systemData.rightSideKineticEnergy);
+
+    final boolean hasStore = store != null && points == systemData.particles;
+    out.writeBoolean(hasStore);
+    if (!hasStore) {
+      out.writeInt(points.size());
+      for (final Point point : points) {
+        out.writeLong(point.id());
+        out.writeDouble(point.x());
+        out.writeDouble(point.y());
+        out.writeDouble(point.vx());
+        out.writeDouble(point.vy());
+        out.writeDouble(point.mass());
+        out.writeDouble(point.radio());
+        out.writeBoolean(point.isColliding());
       }
+      return;
+    }
 
-      // +++x improve: create event inside the if condition so as not to overhead with object creation
+    store.write(out);
+    if (engine != Engine.EVENT_QUEUE) {
+      return;
+    }
+    grid.write(out);
+    // events are written in the order of the queue's heap, so that adding them back builds the same heap
+    out.writeInt(queue.size());
+    for (final ScheduledEvent event : queue) {
+      out.writeDouble(event.time);
+      out.writeInt(event.type.ordinal());
+      out.writeInt(event.i);
+      out.writeInt(event.j);
+      out.writeInt(event.wall == null ? -1 : event.wall.ordinal());
+      out.writeInt(event.cell);
+      out.writeInt(event.collisionsI);
+      out.writeInt(event.collisionsJ);
+    }
+    out.writeDouble(lastCollisionTime);
+    out.writeInt(collisionsSinceSynchronization);
+  }
 
-      // Calculate the collision between the given point and one of the horizontal walls
-      tc = GeometricEquations.timeToHitWall(point, Wall.HORIZONTAL, 0, systemData.L);
-      hWallEvent = new WallEvent(tc, point, Wall.HORIZONTAL);
+  /**
+   * Restores the state written by {@link #writeState(DataOutput, List)} on an engine of the same type
+   * @return the points to be given to the next call to {@link #run(List)}
+   * @throws IOException if the state can not be read, or it was written by an engine of another type
+   */
+  /* package-private */ List<Point> readState(final DataInput in) throws IOException {
+    systemData.currentPressure = in.readDouble();
+    systemData.totalPressure = in.readDouble();
+    final double leftSideKineticEnergy = in.readDouble();
+    final double rightSideKineticEnergy = in.readDouble();
 
-      if(minEvent == null || hWallEvent.getTime() < minEvent.getTime()){
-        minEvent = hWallEvent;
+    if (!in.readBoolean()) {
+      final int N = in.readInt();
+      final List<Point> points = new ArrayList<>(N);
+      for (int k = 0 ; k < N ; k++) {
+        final long id = in.readLong();
+        final double x = in.readDouble();
+        final double y = in.readDouble();
+        points.add(Point.builder(x, y)
+                .id(id)
+                .vx(in.readDouble())
+                .vy(in.readDouble())
+                .mass(in.readDouble())
+                .radio(in.readDouble())
+                .isColliding(in.readBoolean())
+                .build());
       }
+      // the kinetic energy is known for these points, so it is not summed again on the next call
+      systemData.particles = points;
+      systemData.leftSideKineticEnergy = leftSideKineticEnergy;
+      systemData.rightSideKineticEnergy = rightSideKineticEnergy;
+      return points;
+    }
+
+    store = ParticleStore.read(in);
+    systemData.leftSideKineticEnergy = leftSideKineticEnergy;
+    systemData.rightSideKineticEnergy = rightSideKineticEnergy;
+    if (engine != Engine.EVENT_QUEUE) {
+      initFullScanEvents();
+      systemData.particles = store.points();
+      return systemData.particles;
+    }
+
+    double maxRadio = 0;
+    for (int p = 0 ; p < store.size() ; p++) {
+      maxRadio = Math.max(maxRadio, store.radio(p));
+    }
+    grid = new CellGrid(context.getL(), context.getW(), context.getOpening(), maxRadio, store.size());
+    grid.read(in);
+    countLeftSideParticles();
 
-      // Calculate the collision between the given point and one of the vertical walls
-      tc = GeometricEquations.timeToHitWall(point, Wall.VERTICAL, 0, systemData.W);
-      vWallEvent = new WallEvent(tc, point, Wall.VERTICAL);
+    final int events = in.readInt();
+    queue = new PriorityQueue<>(Math.max(2 * store.size(), events));
+    eventPool = new ArrayDeque<>(2 * store.size());
+    for (int k = 0 ; k < events ; k++) {
+      final double time = in.readDouble();
+      final ScheduledEvent.Type type = ScheduledEvent.Type.values()[in.readInt()];
+      final int i = in.readInt();
+      final int j = in.readInt();
+      final int wall = in.readInt();
+      final int cell = in.readInt();
+      final int collisionsI = in.readInt();
+      final int collisionsJ = in.readInt();
+      queue.add(new ScheduledEvent().set(time, type, i, j, wall < 0 ? null : Wall.values()[wall], cell,
+              collisionsI, collisionsJ));
+    }
+    lastCollisionTime = in.readDouble();
+    collisionsSinceSynchronization = in.readInt();
+
+    systemData.particles = store.points();
+    return systemData.particles;
+  }
+
+  /**
+   * Moves a particle to another cell, keeping the count of particles - and their kinetic energy - on each side
+   * up to date: as the middle wall is a cell border, a particle that changes its side always moves to another cell
+   */
+  private void moveToCell(final int p, final int cell) {
+    final boolean wasLeft = grid.isLeft(grid.cellOf(p));
+    grid.move(p, cell);
+    if (wasLeft != grid.isLeft(cell)) {
+      leftSideParticles += wasLeft ? -1 : 1;
+      systemData.moveKineticEnergy(store.kineticEnergy(p), !wasLeft);
+    }
+  }
+
+  /**
+   * Sums again the kinetic energy of each side, from all the given points
+   */
+  private void sumKineticEnergy(final List<Point> points) {
+    systemData.leftSideKineticEnergy = 0;
+    systemData.rightSideKineticEnergy = 0;
+    for (final Point point : points) {
+      systemData.addKineticEnergy(point.kineticEnergy(), point.x() <= context.getW()/2);
+    }
+  }
+
+  private static void countEvent(final Event event) {
+    countEvent(event instanceof WallEvent ? ((WallEvent) event).getWall() : null);
+  }
+
+  /**
+   * @param wall the wall of a wall collision ; null for a collision between particles
+   */
+  private static void countEvent(final Wall wall) {
+    if (wall == null) {
+      SimulationMetrics.INSTANCE.countParticleCollision();
+    } else if (wall == Wall.MIDDLE_VERTICAL) {
+      SimulationMetrics.INSTANCE.countMiddleWallCollision();
+    } else {
+      SimulationMetrics.INSTANCE.countWallCollision();
+    }
+  }
 
-      if(vWallEvent.getTime() < minEvent.getTime()) {
-        minEvent = vWallEvent;
+  private void countLeftSideParticles() {
+    leftSideParticles = 0;
+    for (int p = 0 ; p < store.size() ; p++) {
+      if (grid.isLeft(grid.cellOf(p))) {
+        leftSideParticles++;
       }
+    }
+  }
+
+  /**
+   * Updates the positions of all particles and moves the origin of times to the current time, shifting the time of
+   * all the queued events, so that rounding errors are kept bounded along long simulations.
+   */
+  private void synchronize() {
+    final double offset = store.synchronize();
+    for (final ScheduledEvent event : queue) {
+      event.time -= offset; // a uniform shift keeps the order of the queue
+    }
+    lastCollisionTime -= offset;
+    collisionsSinceSynchronization = 0;
+  }
 
-      // Calculate the collision between the given point and the middle wall
-      tc = GeometricEquations.timeToHitMiddleWall(
-              point, systemData.W/2, systemData.L, systemData.opening);
-      middleWallEvent = new WallEvent(tc, point, Wall.MIDDLE_VERTICAL);
+  /**
+   * Removes the stale events from the head of the queue, and returns the first valid one.
+   * <p>
+   * Each particle only schedules its closest event, so when that event becomes stale because the other particle
+   * has collided, the particle whose trajectory is still the same gets its collision predicted again.
+   * @return the next valid event ; null if there is none
+   */
+  private ScheduledEvent pollValidEvent() {
+    ScheduledEvent event;
+    while ((event = queue.poll()) != null) {
+      final boolean isValidI = event.collisionsI == store.collisions(event.i);
+      final boolean isValidJ = event.type != ScheduledEvent.Type.PARTICLES
+              || event.collisionsJ == store.collisions(event.j);
+
+      if (isValidI && isValidJ) {
+        return event;
+      }
 
-      if(middleWallEvent.getTime() < minEvent.getTime()) {
-        minEvent = middleWallEvent;
+      if (isValidI) {
+        predictCollision(event.i);
       }
+      eventPool.push(event);
+      if (SimulationMetrics.ENABLED) {
+        SimulationMetrics.INSTANCE.countStaleEvent();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Predicts the closest event of the given particle - against the particles of its neighbour cells, all the walls
+   * and the borders of its cell - and adds it to the queue
+   * @param p the index of the particle
+   */
+  private void predictCollision(final int p) {
+    if (SimulationMetrics.ENABLED) {
+      final long start = System.nanoTime();
+      predictParticleCollision(p);
+      SimulationMetrics.INSTANCE.recordPrediction(System.nanoTime() - start);
+      return;
+    }
+    predictParticleCollision(p);
+  }
+
+  private void predictParticleCollision(final int p) {
+    final double x = store.x(p);
+    final double y = store.y(p);
+    final double vx = store.vx(p);
+    final double vy = store.vy(p);
+    final double radio = store.radio(p);
+    final int cell = grid.cellOf(p);
+    double minTime = Double.POSITIVE_INFINITY, tc;
+    ScheduledEvent.Type type = null;
+    int partner = ScheduledEvent.NO_PARTICLE;
+    int nextCell = CellGrid.NO_CELL;
+    Wall wall = null;
 
-      // In case the collision happens at the same time than the current events on the list, the event is added.
-      // In case this events happens before, the list is replaced for a new one with lower collision time.
-      // +++x improve: make the comparision only once and save the result
-      if(eventList.isEmpty() ||  minEvent.compareTo(eventList.get(0)) == 0){
-        eventList.add(minEvent);
-      } else if(minEvent.compareTo(eventList.get(0)) < 0){
-        eventList = new ArrayList<>();
-        eventList.add(minEvent);
+    for (final int neighbourCell : grid.neighbours(cell)) {
+      for (int k = grid.first(neighbourCell) ; k != CellGrid.NO_PARTICLE ; k = grid.next(k)) {
+        if (k == p) {
+          continue;
+        }
+        tc = GeometricEquations.collisionTime(x, y, vx, vy, radio,
+                store.x(k), store.y(k), store.vx(k), store.vy(k), store.radio(k));
+        if (tc < minTime) {
+          minTime = tc;
+          type = ScheduledEvent.Type.PARTICLES;
+          partner = k;
+        }
       }
+    }
+
+    tc = GeometricEquations.timeToHitWall(y, vy, radio, 0, context.getL());
+    if (tc < minTime) {
+      minTime = tc;
+      type = ScheduledEvent.Type.WALL;
+      wall = Wall.HORIZONTAL;
+    }
+
+    tc = GeometricEquations.timeToHitWall(x, vx, radio, 0, context.getW());
+    if (tc < minTime) {
+      minTime = tc;
+      type = ScheduledEvent.Type.WALL;
+      wall = Wall.VERTICAL;
+    }
+
+    tc = GeometricEquations.timeToHitMiddleWall(x, y, vx, vy, radio,
+            context.getW()/2, context.getL(), context.getOpening());
+    if (tc < minTime) {
+      minTime = tc;
+      type = ScheduledEvent.Type.WALL;
+      wall = Wall.MIDDLE_VERTICAL;
+    }
 
+    tc = grid.timeToLeaveColumn(x, vx, cell);
+    if (tc < minTime) {
+      minTime = tc;
+      type = ScheduledEvent.Type.CELL_CROSSING;
+      nextCell = grid.nextColumnCell(cell, vx);
     }
 
-    return eventList;
+    tc = grid.timeToLeaveRow(y, vy, cell);
+    if (tc < minTime) {
+      minTime = tc;
+      type = ScheduledEvent.Type.CELL_CROSSING;
+      nextCell = grid.nextRowCell(cell, vy);
+    }
+
+    if (type == null) {
+      return; // the particle won't collide unless another particle crashes it
+    }
+    if (type != ScheduledEvent.Type.PARTICLES) {
+      partner = ScheduledEvent.NO_PARTICLE;
+    }
+    if (type != ScheduledEvent.Type.WALL) {
+      wall = null;
+    }
+    if (type != ScheduledEvent.Type.CELL_CROSSING) {
+      nextCell = CellGrid.NO_CELL;
+    }
+
+    final ScheduledEvent event = eventPool.isEmpty() ? new ScheduledEvent() : eventPool.pop();
+    // a negative time means that the particles are slightly overlapped due to rounding errors => collide right now
+    queue.add(event.set(store.time() + Math.max(minTime, 0), type, p, partner, wall, nextCell,
+            store.collisions(p), partner == ScheduledEvent.NO_PARTICLE ? 0 : store.collisions(partner)));
+  }
+
+  /**
+   * Predict the next events (collisions), and keeps the ones with the min. collision time on nextEvents
+   */
+  private void predictCollisions() {
+    if (SimulationMetrics.ENABLED) {
+      final long start = System.nanoTime();
+      predictAllCollisions();
+      SimulationMetrics.INSTANCE.recordPrediction(System.nanoTime() - start);
+      return;
+    }
+    predictAllCollisions();
+  }
+
+  private void predictAllCollisions() {
+    if (pool != null) {
+      pool.invoke(new PredictionTask(0, store.size()));
+    } else {
+      predictMinEvents(0, store.size());
+    }
+
+    // In case the collision happens at the same time than the current events on the list, the event is added.
+    // In case this events happens before, the list is cleared and the event is added.
+    nextEvents.clear();
+    for (final Event minEvent : minEvents) {
+      final int comparison = nextEvents.isEmpty() ? 0 : minEvent.compareTo(nextEvents.get(0));
+      if (comparison < 0) {
+        nextEvents.clear();
+      }
+      if (comparison <= 0) {
+        nextEvents.add(minEvent);
+      }
+    }
+  }
+
+  /**
+   * Predict the closest event of each point on the given range, against all the following points and all the walls
+   * @param from the index of the first point of the range (inclusive)
+   * @param to the index of the last point of the range (exclusive)
+   */
+  private void predictMinEvents(final int from, final int to) {
+    for (int p = from ; p < to ; p++) {
+      minEvents[p] = predictMinEvent(p);
+    }
+  }
+
+  /**
+   * Predict the closest event of the p-th point, against all the following points and all the walls
+   * @return one of the event records of the point, set to its closest event
+   */
+  private Event predictMinEvent(final int p) {
+    final double x = store.x(p);
+    final double y = store.y(p);
+    final double vx = store.vx(p);
+    final double vy = store.vy(p);
+    final double radio = store.radio(p);
+    double minTime = Double.POSITIVE_INFINITY, tc;
+    int partner = Event.NO_PARTICLE;
+    Wall wall = null;
+
+    // Calculate the closest collision between the current particle and all the others
+    for (int k = p + 1 ; k < store.size() ; k++) {
+      tc = GeometricEquations.collisionTime(x, y, vx, vy, radio,
+              store.x(k), store.y(k), store.vx(k), store.vy(k), store.radio(k));
+      if (partner == Event.NO_PARTICLE || tc < minTime) {
+        minTime = tc;
+        partner = k;
+      }
+    }
+
+    // Calculate the collision between the given point and one of the horizontal walls
+    tc = GeometricEquations.timeToHitWall(y, vy, radio, 0, context.getL());
+    if (partner == Event.NO_PARTICLE || tc < minTime) {
+      minTime = tc;
+      wall = Wall.HORIZONTAL;
+    }
+
+    // Calculate the collision between the given point and one of the vertical walls
+    tc = GeometricEquations.timeToHitWall(x, vx, radio, 0, context.getW());
+    if (tc < minTime) {
+      minTime = tc;
+      wall = Wall.VERTICAL;
+    }
+
+    // Calculate the collision between the given point and the middle wall
+    tc = GeometricEquations.timeToHitMiddleWall(x, y, vx, vy, radio,
+            context.getW()/2, context.getL(), context.getOpening());
+    if (tc < minTime) {
+      minTime = tc;
+      wall = Wall.MIDDLE_VERTICAL;
+    }
+
+    if (wall == null) {
+      return pointsEvents[p].set(minTime, p, partner);
+    }
+    return wallEvents[p].set(minTime, p, wall, context.wallLength(wall));
+  }
+
+  /**
+   * <p>
+   *  Predicts the next events of a range of points, splitting it in halves until it is small enough.
+   * <p>
+   *  Each point has its own event records, so the workers do not share any of them, and the events with the min.
+   *  collision time are then taken from all the points in order. This way, the result is exactly the same
+   *  - including the order of the events - as the one of the sequential prediction.
+   */
+  private class PredictionTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private static final int THRESHOLD = 32;
+
+    private final int from;
+    private final int to;
+
+    private PredictionTask(final int from, final int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= THRESHOLD) {
+        predictMinEvents(from, to);
+        return;
+      }
+
+      final int middle = (from + to) >>> 1;
+      invokeAll(new PredictionTask(from, middle), new PredictionTask(middle, to));
+    }
   }
 
   /* package-private */ static class SystemData {
     // static system data
-    private final double L;
-    private final double W;
-    private final double opening;
+    private final SimulationContext context;
 
     // dynamic system data
     private double leftSideFraction;
     private double collisionTime;
     private double currentPressure;
     private double totalPressure;
+    // running sums, updated by each event instead of summed again from all the particles
+    private double leftSideKineticEnergy;
+    private double rightSideKineticEnergy;
     private List<Point> particles;
 
-    private SystemData(final double L, final double W, final double opening) {
-      this.L = L;
-      this.W = W;
-      this.opening = opening;
+    private SystemData(final SimulationContext context) {
+      this.context = context;
       this.leftSideFraction = 1.0d;
       this.collisionTime = 0;
       this.currentPressure = 0;
@@ -190,8 +962,24 @@ class GasDiffusion {
       this.totalPressure = 0;
     }
 
+    private void addKineticEnergy(final double kineticEnergy, final boolean isLeft) {
+      if (isLeft) {
+        leftSideKineticEnergy += kineticEnergy;
+      } else {
+        rightSideKineticEnergy += kineticEnergy;
+      }
+    }
+
+    /**
+     * Moves the kinetic energy of a particle that has crossed the opening to the side it has crossed to
+     */
+    private void moveKineticEnergy(final double kineticEnergy, final boolean toLeft) {
+      addKineticEnergy(-kineticEnergy, !toLeft);
+      addKineticEnergy(kineticEnergy, toLeft);
+    }
+
     /* package-private */ double getW() {
-      return W;
+      return context.getW();
     }
 
     /**
@@ -214,6 +1002,34 @@ class GasDiffusion {
       return totalPressure;
     }
 
+    /**
+     * @return the total kinetic energy of the particles
+     */
+    /* package-private */ double getKineticEnergy() {
+      return leftSideKineticEnergy + rightSideKineticEnergy;
+    }
+
+    /**
+     * @return the kinetic energy of the particles on the left side of the box
+     */
+    /* package-private */ double getLeftSideKineticEnergy() {
+      return leftSideKineticEnergy;
+    }
+
+    /**
+     * @return the kinetic energy of the particles on the right side of the box
+     */
+    /* package-private */ double getRightSideKineticEnergy() {
+      return rightSideKineticEnergy;
+    }
+
+    /**
+     * @return the mean kinetic energy of the particles ; 0 if there are none
+     */
+    /* package-private */ double getMeanKineticEnergy() {
+      return particles.isEmpty() ? 0 : getKineticEnergy() / particles.size();
+    }
+
     /* package-private */ List<Point> getParticles() {
       return particles;
     }
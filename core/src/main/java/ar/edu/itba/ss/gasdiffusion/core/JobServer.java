@@ -0,0 +1,315 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *  Runs the commands of {@link Main} - as jobs sent by clients through a loopback socket - on a long-lived JVM, so
+ *  that each of them does not pay the start up of a new JVM, nor the warm up of the JIT compiler.
+ * <p>
+ *  Jobs read and write any file that the user who started the server can, so only that user should be able to send
+ *  them. The server writes a random token on a file that only that user can read, and runs the jobs of the clients
+ *  that send it back ; anyone else who can connect to the loopback port gets its job rejected.
+ * <p>
+ *  A client sends the token on the first line, its working directory - as an absolute path - on the second one, then
+ *  each argument of the command on its own line, and then an empty line. What the job prints is sent back as it is
+ *  printed, followed by the folder of its output files - if it succeeded - and by its exit code, as a process would
+ *  have returned it:
+ * <pre>
+ *  [DONE]
+ *  [OUTPUT] /path/to/working/directory/output
+ *  [EXIT] 0
+ * </pre>
+ * <p>
+ *  Each job runs with the working directory of its client: the paths it reads and writes are resolved against that
+ *  directory, and what it prints is only sent to its client. Jobs that run at the same time on the same working
+ *  directory overwrite each other's files, as two processes would.
+ */
+/* package-private */ class JobServer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(JobServer.class);
+
+  /* package-private */ static final int DEFAULT_PORT = 7810;
+  /* package-private */ static final String OUTPUT_PREFIX = "[OUTPUT] ";
+  /* package-private */ static final String EXIT_PREFIX = "[EXIT] ";
+  private static final int TOKEN_BYTES = 32;
+
+  private static final Path PROCESS_DIRECTORY = Paths.get("");
+  // the job run by the current thread - or by the thread that started it ; null if it is not run by a server
+  private static final InheritableThreadLocal<Job> CURRENT_JOB = new InheritableThreadLocal<>();
+
+  private final ServerSocket serverSocket;
+  private final ExecutorService workers;
+  private final Path tokenFile;
+  private final String token;
+  private final PrintStream replacedOut; // the standard output before this server routed it ; null if it did not
+
+  /**
+   * <p>
+   *  Whatever is printed on the standard output by a job is only sent to its client, from now on and until the
+   *  server is closed.
+   * @param port the loopback port on which jobs are accepted ; 0 for any free one
+   * @param threads the number of jobs that run at the same time ; the others wait for one of them to finish
+   * @param tokenFile the file on which the token that clients must send is written ; it is deleted when the server
+   *                  is closed
+   * @throws IOException if the port can not be listened to, or the token file can not be written
+   */
+  /* package-private */ JobServer(final int port, final int threads, final Path tokenFile) throws IOException {
+    this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+    try {
+      this.token = newToken();
+      writeToken(tokenFile, token);
+    } catch (final IOException e) {
+      serverSocket.close();
+      throw e;
+    }
+    this.tokenFile = tokenFile;
+    final AtomicInteger jobThreads = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(threads,
+            runnable -> new Thread(runnable, "job-" + jobThreads.incrementAndGet()));
+    this.replacedOut = routeStandardOutput();
+  }
+
+  /**
+   * @return the file on which a server listening on the given port writes its token, if none is given
+   */
+  /* package-private */ static Path defaultTokenFile(final int port) {
+    return Paths.get(System.getProperty("user.home"), ".gas-diffusion-" + port + ".token");
+  }
+
+  private static String newToken() {
+    final byte[] bytes = new byte[TOKEN_BYTES];
+    new SecureRandom().nextBytes(bytes);
+    final StringBuilder sb = new StringBuilder();
+    for (final byte b : bytes) {
+      sb.append(String.format("%02x", b));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes the token on a new file that only the current user can read and write - where the file system supports
+   * it - replacing the one of a previous server, if any
+   */
+  private static void writeToken(final Path tokenFile, final String token) throws IOException {
+    Files.deleteIfExists(tokenFile);
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    } else {
+      Files.createFile(tokenFile);
+    }
+    Files.write(tokenFile, token.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /* package-private */ int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * @return the token that clients must send with each job
+   */
+  /* package-private */ String getToken() {
+    return token;
+  }
+
+  /**
+   * Accepts jobs - and runs them on the worker threads - until the server is closed
+   */
+  /* package-private */ void serve() {
+    while (!serverSocket.isClosed()) {
+      final Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (final IOException e) {
+        if (!serverSocket.isClosed()) {
+          LOGGER.warn("A job could not be accepted. Caused by: ", e);
+        }
+        continue;
+      }
+      workers.execute(() -> runJob(socket));
+    }
+  }
+
+  /**
+   * Stops accepting jobs - the ones that are running are left to finish -, deletes the token file, and gives the
+   * standard output back to the process
+   */
+  /* package-private */ void close() throws IOException {
+    serverSocket.close();
+    workers.shutdown();
+    restoreStandardOutput(replacedOut);
+    Files.deleteIfExists(tokenFile);
+  }
+
+  /**
+   * @return true if the current thread runs a job - or was started by one
+   */
+  /* package-private */ static boolean isRunningJob() {
+    return CURRENT_JOB.get() != null;
+  }
+
+  /**
+   * @return the working directory of the current job ; the one of the process if no job is run
+   */
+  /* package-private */ static Path workingDirectory() {
+    final Job job = CURRENT_JOB.get();
+    return job == null ? PROCESS_DIRECTORY : job.workingDirectory;
+  }
+
+  /**
+   * @return the standard output that was replaced ; null if it was already routed by another server
+   */
+  private static synchronized PrintStream routeStandardOutput() {
+    if (System.out instanceof JobPrintStream) {
+      return null;
+    }
+    final PrintStream processOut = System.out;
+    System.setOut(new JobPrintStream(processOut));
+    return processOut;
+  }
+
+  private static synchronized void restoreStandardOutput(final PrintStream processOut) {
+    if (processOut != null && System.out instanceof JobPrintStream) {
+      System.setOut(processOut);
+    }
+  }
+
+  private void runJob(final Socket socket) {
+    try (final Socket client = socket;
+         final BufferedReader in = new BufferedReader(
+                 new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+         final PrintStream out = new PrintStream(client.getOutputStream(), true, StandardCharsets.UTF_8.name())) {
+      final String clientToken = in.readLine();
+      if (clientToken == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+              clientToken.getBytes(StandardCharsets.UTF_8))) {
+        LOGGER.warn("A job was rejected, as its client did not send the token of the server");
+        out.println("[FAIL] - The job was rejected, as the token of the server was not sent. Aborting...");
+        out.println(EXIT_PREFIX + (Main.EXIT_CODE.BAD_ARGUMENT.getCode() & 0xFF));
+        return;
+      }
+
+      final String directory = in.readLine();
+      final List<String> args = new ArrayList<>();
+      String line;
+      while ((line = in.readLine()) != null && !line.isEmpty()) {
+        args.add(line);
+      }
+      if (directory == null || line == null) {
+        LOGGER.warn("A client closed its connection before sending the whole job");
+        return;
+      }
+      final Path workingDirectory = Paths.get(directory);
+      if (!workingDirectory.isAbsolute()) {
+        LOGGER.warn("A job was rejected, as its working directory '{}' is not absolute", directory);
+        out.println("[FAIL] - The working directory '" + directory + "' is not an absolute path. Aborting...");
+        out.println(EXIT_PREFIX + (Main.EXIT_CODE.BAD_ARGUMENT.getCode() & 0xFF));
+        return;
+      }
+
+      out.println(EXIT_PREFIX + run(workingDirectory, args.toArray(new String[args.size()]), out));
+    } catch (final IOException e) {
+      LOGGER.warn("A job could not be received, or its output could not be sent. Caused by: ", e);
+    }
+  }
+
+  /**
+   * @return the exit code of the job, as a process would have returned it
+   */
+  private static int run(final Path workingDirectory, final String[] args, final PrintStream out) {
+    CURRENT_JOB.set(new Job(workingDirectory, out));
+    try {
+      LOGGER.info("Running the job {} on '{}'", Arrays.toString(args), workingDirectory);
+      Main.run(args);
+      out.println("[DONE]");
+      out.println(OUTPUT_PREFIX + workingDirectory.resolve(Main.DESTINATION_FOLDER));
+      return 0;
+    } catch (final JobExit e) {
+      return e.code & 0xFF;
+    } catch (final RuntimeException e) {
+      LOGGER.warn("The job {} failed. Caused by: ", Arrays.toString(args), e);
+      out.println("[FAIL] - An unexpected error occurred: " + e + ".\n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      return Main.EXIT_CODE.UNEXPECTED_ERROR.getCode() & 0xFF;
+    } finally {
+      CURRENT_JOB.remove();
+    }
+  }
+
+  /**
+   * Thrown instead of exiting the process when a job fails, so that the server keeps running
+   */
+  /* package-private */ static class JobExit extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int code;
+
+    /* package-private */ JobExit(final int code) {
+      super("Job exited with code " + code, null, false, false);
+      this.code = code;
+    }
+  }
+
+  private static class Job {
+    private final Path workingDirectory;
+    private final PrintStream out;
+
+    private Job(final Path workingDirectory, final PrintStream out) {
+      this.workingDirectory = workingDirectory;
+      this.out = out;
+    }
+  }
+
+  /**
+   * The standard output of the server: what is printed by a job goes to its client, and anything else to the
+   * original standard output
+   */
+  private static class JobPrintStream extends PrintStream {
+    private JobPrintStream(final PrintStream processOut) {
+      super(new OutputStream() {
+        @Override
+        public void write(final int b) {
+          target().write(b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+          target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+          target().flush();
+        }
+
+        private PrintStream target() {
+          final Job job = CURRENT_JOB.get();
+          return job == null ? processOut : job.out;
+        }
+      }, true);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ *  A histogram of durations, in nanoseconds, that may be recorded from many threads at the same time.
+ * <p>
+ *  Durations are counted on buckets of powers of two - the k-th bucket holds the ones from 2^(k-1) to 2^k - 1 - so
+ *  recording one is a single increment, and percentiles are known up to a factor of two.
+ */
+/* package-private */ class LatencyHistogram {
+  private static final int BUCKETS = Long.SIZE;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder total = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /* package-private */ LatencyHistogram() {
+    for (int k = 0 ; k < BUCKETS ; k++) {
+      buckets[k] = new LongAdder();
+    }
+  }
+
+  /**
+   * @param nanos the duration to record ; negative durations are recorded as 0
+   */
+  /* package-private */ void record(final long nanos) {
+    final long duration = Math.max(nanos, 0);
+    buckets[BUCKETS - Long.numberOfLeadingZeros(duration)].increment();
+    count.increment();
+    total.add(duration);
+    max.accumulate(duration);
+  }
+
+  /**
+   * @return the number of recorded durations
+   */
+  /* package-private */ long count() {
+    return count.sum();
+  }
+
+  /**
+   * @return the sum of all the recorded durations
+   */
+  /* package-private */ long totalNanos() {
+    return total.sum();
+  }
+
+  /**
+   * @return the mean of the recorded durations ; 0 if there is none
+   */
+  /* package-private */ double meanNanos() {
+    final long count = count();
+    return count == 0 ? 0 : (double) totalNanos() / count;
+  }
+
+  /**
+   * @return the longest recorded duration ; 0 if there is none
+   */
+  /* package-private */ long maxNanos() {
+    return max.get();
+  }
+
+  /**
+   * @param quantile the quantile, between 0 and 1
+   * @return an upper bound of the given quantile of the recorded durations - the largest duration of its bucket ;
+   *          0 if there is none
+   */
+  /* package-private */ long percentileNanos(final double quantile) {
+    final long[] counts = new long[BUCKETS];
+    long count = 0;
+    for (int k = 0 ; k < BUCKETS ; k++) {
+      counts[k] = buckets[k].sum();
+      count += counts[k];
+    }
+
+    final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+    long accumulated = 0;
+    for (int k = 0 ; k < BUCKETS ; k++) {
+      accumulated += counts[k];
+      if (accumulated >= rank) {
+        return Math.min((1L << k) - 1, maxNanos());
+      }
+    }
+    return 0;
+  }
+
+  /* package-private */ void reset() {
+    for (final LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    count.reset();
+    total.reset();
+    max.reset();
+  }
+}
@@ -1,8 +1,9 @@
 package ar.edu.itba.ss.gasdiffusion.core;
 
 import ar.edu.itba.ss.gasdiffusion.models.Point;
-import ar.edu.itba.ss.gasdiffusion.models.Wall;
+import ar.edu.itba.ss.gasdiffusion.models.SimulationContext;
 import ar.edu.itba.ss.gasdiffusion.services.PointFactory;
+import ar.edu.itba.ss.gasdiffusion.services.RandomInRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,9 +11,14 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.stream.Stream;
 
@@ -22,32 +28,111 @@ import static ar.edu.itba.ss.gasdiffusion.core.Main.EXIT_CODE.*;
 public class Main {
   private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
 
-  private static final String DESTINATION_FOLDER = "output";
+  /* package-private */ static final String DESTINATION_FOLDER = "output";
   private static final String STATIC_FILE = "static.dat";
   private static final String DYNAMIC_FILE = "dynamic.dat";
   private static final String OUTPUT_FILE = "output.dat";
+  private static final String BINARY_OUTPUT_FILE = "output.bin";
   private static final String DATA_FOR_GRAPHICS_FILE = "i_t_fp_pre_temp.csv";
   private static final String OVITO_FILE = "graphics.xyz";
   private static final String TIME_TO_EQUILIBRIUM_FILE = "time_to_eq.csv";
-  private static final long MAX_TIME_AFTER_EQUILIBRIUM = 100;
-  private static final int SYSTEM_PARTICLES_INDEX = 0;
-  private static final int KINETIC_ENERGY_INDEX = 1;
+  private static final String CHECKPOINT_FILE = "checkpoint.bin";
+  private static final String EVENTS_FILE = "events.bin";
+  private static final String RADIAL_DISTRIBUTION_FILE = "g_r.csv";
+  private static final String SPEEDS_FILE = "speeds.csv";
+  private static final String VELOCITIES_FILE = "velocities.csv";
+  private static final String ENSEMBLE_FILE = "ensemble.csv";
+  private static final String RESULTS_FOLDER = "results";
+  private static final String N_OP_RESULTS = "i_t_fp_pre_temp_";
+  private static final String PRE_T_RESULTS = "pre_t_results_";
+  private static final String TABLE_LINE_SEPARATOR = "\r\n";
   private static final String HELP_TEXT =
           "Gas Diffusion 2D Simulation Implementation.\n" +
                   "Arguments: \n" +
-                  "* gen staticdat <N> <m> <v> <r> <L> <W>  : \n" +
+                  "* gen staticdat <N> <m> <v> <r> <L> <W> [--seed <seed>] : \n" +
                   "\t generates an output/static.dat file of N particles of radio r\n" +
                   "\t that will be contained on a rectangle of height L and width W. All particles will move at a speed of v\n" +
-                  "* gen dynamicdat <path/to/static.dat> : \n" +
+                  "\t The seed from which the particles are generated is recorded on it (default: a random one)\n" +
+                  "* gen dynamicdat <path/to/static.dat> [--mode <random|lattice>] : \n" +
                   "\t generates an output/dynamic.dat file of N particles, \n" +
                   "\t each of the specified radio, that have x & y coordinates\n" +
                   "\t between 0 (inclusive) and W/2 (exclusive) for the x coordinate and between 0 (inclusive) and L for the y coordinate.\n" +
                   "\t Particles will also have an orientation between 0 and 2*PI\n" +
-                  "* gas <path/to/static.dat> <path/to/dynamic.dat> <dt2> <opening>\n" +
+                  "\t The same static.dat - and so the same seed - always gives the same particles\n" +
+                  "\t Options:\n" +
+                  "\t   --mode <random|lattice> : 'random' places each particle at random, where it does not overlap the\n" +
+                  "\t                             previous ones (default);\n" +
+                  "\t                             'lattice' places them around the sites of the widest hexagonal lattice\n" +
+                  "\t                             with room for all of them, so that dense systems can be generated\n" +
+                  "* gas <path/to/static.dat> <path/to/dynamic.dat> <dt2> <opening> [options]\n" +
                   "\t runs the gas-diffusion simulation and saves a snapshot of the system every dt2 time in <output.dat>.\n" +
+                  "\t Snapshots are taken at the exact multiples of dt2, with the particles moved since their last event.\n" +
+                  "\t Options:\n" +
+                  "\t   --engine <scan|queue> : 'scan' predicts every collision again after each event (default);\n" +
+                  "\t                           'queue' keeps a queue of future events and only re-predicts the\n" +
+                  "\t                           particles that took part on each event\n" +
+                  "\t   --workers <n> : number of threads among which the 'scan' engine splits its prediction (default: 1)\n" +
+                  "\t   --format <text|binary|xyz> : 'text' saves the snapshots in output/output.dat (default);\n" +
+                  "\t                                'binary' saves them in output/output.bin, a compact binary format\n" +
+                  "\t                                that 'gen ovito' also accepts;\n" +
+                  "\t                                'xyz' saves them directly in output/graphics.xyz, the same file\n" +
+                  "\t                                'gen ovito' generates, without any intermediate file\n" +
+                  "\t   --checkpoint <n> : saves output/checkpoint.bin every n snapshots, from which a stopped\n" +
+                  "\t                      simulation can be resumed (default: no checkpoints)\n" +
+                  "\t   --error <e> : runs after the equilibrium until the relative standard error of the mean\n" +
+                  "\t                 pressure and fraction - estimated by batch means - is at most e, instead of\n" +
+                  "\t                 for 100 snapshots (default: 0, that is, 100 snapshots). It stops anyway after\n" +
+                  "\t                 10000 snapshots. Both errors are saved in output/time_to_eq.csv, where the\n" +
+                  "\t                 pressure is then the mean of the ones of those snapshots\n" +
+                  "\t   --events <true|false> : records every event on output/events.bin, from which 'replay' rebuilds\n" +
+                  "\t                           the snapshots at any other dt2 (default: false)\n" +
+                  "\t   --histograms <true|false> : measures the radial distribution function g(r) and the distributions\n" +
+                  "\t                               of the speed and of each velocity component over the snapshots after\n" +
+                  "\t                               the equilibrium, and saves them in output/g_r.csv,\n" +
+                  "\t                               output/speeds.csv and output/velocities.csv (default: false)\n" +
+                  "* gas --resume <path/to/checkpoint.bin> [--workers <n>]\n" +
+                  "\t resumes a stopped gas-diffusion simulation from its last checkpoint, with the same options, and\n" +
+                  "\t completes its output files exactly as if it had not been stopped.\n" +
+                  "* replay <path/to/events.bin> <dt2> [--format <text|binary|xyz>]\n" +
+                  "\t rebuilds the snapshots of a simulation recorded with '--events true', taken at every multiple of\n" +
+                  "\t dt2, without predicting any collision again. They are saved on the same files as for 'gas'.\n" +
+                  "* ensemble <N> <m> <v> <r> <L> <W> <dt2> <opening> <K> [options]\n" +
+                  "\t runs K independent realizations of the gas-diffusion simulation, each one from new random particles,\n" +
+                  "\t and saves the mean and standard deviation of their time to equilibrium, pressure and temperature\n" +
+                  "\t in output/ensemble.csv. No other file is read nor written.\n" +
+                  "\t Options:\n" +
+                  "\t   --engine <scan|queue> : as for 'gas' (default: scan)\n" +
+                  "\t   --threads <n> : number of realizations that run at the same time (default: number of processors)\n" +
+                  "\t   --seed <seed> : seed from which each realization takes its own random stream, so that\n" +
+                  "\t                   the same seed gives the same results (default: a random one, saved in the csv)\n" +
+                  "* sweep <m> <dt2> <K> [options]\n" +
+                  "\t runs K realizations of every combination of the given values of N, opening, v, r, L and W, and saves\n" +
+                  "\t the same output/results/i_t_fp_pre_temp_* and output/results/pre_t_results_* tables as analyser.sh.\n" +
+                  "\t Values are given either as a list (e.g. '50,75,100') or as an inclusive range (e.g. '50:100:25').\n" +
+                  "\t Options:\n" +
+                  "\t   --N <values> : (default: 50,75,100)\n" +
+                  "\t   --opening <values> : (default: 0.006,0.008,0.01)\n" +
+                  "\t   --v <values> : (default: 0.01,0.025,0.05,0.075,0.1)\n" +
+                  "\t   --r <values> : (default: 0.0015)\n" +
+                  "\t   --L <values> : (default: 0.09)\n" +
+                  "\t   --W <values> : (default: 0.24)\n" +
+                  "\t   --engine <scan|queue> : as for 'gas' (default: scan)\n" +
+                  "\t   --threads <n> : number of realizations that run at the same time (default: number of processors)\n" +
+                  "\t   --seed <seed> : as for 'ensemble' (default: a random one, saved in the log)\n" +
                   "* gen ovito <path/to/static.dat> <path/to/output.dat> <opening> : \n"+
                   "\t generates an output/graphics.xyz file (for Ovito) with the result of the gas diffusion\n " +
-                  "\t automaton(<output.dat>) generated with the other two files.\n";
+                  "\t automaton(<output.dat>) generated with the other two files.\n" +
+                  "* serve [--port <port>] [--threads <n>]\n" +
+                  "\t keeps a warm JVM that runs any of the other commands as jobs, sent by bin/gas-diffusion-client.sh\n" +
+                  "\t through the loopback port (default: 7810). Each job reads and writes its files on the working\n" +
+                  "\t directory of its client, to which its output, its output folder and its exit code are sent back.\n" +
+                  "\t Up to <n> jobs run at the same time (default: number of processors).\n" +
+                  "\t Jobs read and write any file that the user who started the server can, so it only runs the ones\n" +
+                  "\t of the clients that send the token written on ~/.gas-diffusion-<port>.token, that only that user\n" +
+                  "\t can read, and whose working directory is an absolute path.\n" +
+                  "Metrics of the simulation engine and of the snapshots are enabled by starting the JVM with\n" +
+                  "-Dgasdiffusion.metrics=<seconds>: they are exposed as the MBean\n" +
+                  "'ar.edu.itba.ss.gasdiffusion:type=SimulationMetrics', and summarized on the log every <seconds>.\n";
 
   // Exit Codes
   enum EXIT_CODE {
@@ -70,11 +155,29 @@ public class Main {
     }
   }
 
+  /**
+   * Exits the process - or, if a job of a {@link JobServer} is being run, only that job - with the given code
+   */
   private static void exit(final EXIT_CODE exitCode) {
+    if (JobServer.isRunningJob()) {
+      throw new JobServer.JobExit(exitCode.getCode());
+    }
     System.exit(exitCode.getCode());
   }
 
   public static void main(final String[] args) {
+    SimulationMetrics.INSTANCE.start(); // only if enabled
+
+    run(args);
+
+    SimulationMetrics.INSTANCE.stop();
+    System.out.println("[DONE]");
+  }
+
+  /**
+   * Runs the command given by the arguments, either on its own process or as a job of a {@link JobServer}
+   */
+  /* package-private */ static void run(final String[] args) {
     if (args.length == 0) {
       System.out.println("[FAIL] - No arguments passed. Try 'help' for more information.");
       exit(NO_ARGS);
@@ -90,26 +193,111 @@ public class Main {
       case "gas":
         gasDiffusion(args);
         break;
+      case "replay":
+        replay(args);
+        break;
+      case "ensemble":
+        ensemble(args);
+        break;
+      case "sweep":
+        sweep(args);
+        break;
+      case "serve":
+        serve(args);
+        break;
       default:
         System.out.println("[FAIL] - Invalid argument. Try 'help' for more information.");
         exit(BAD_ARGUMENT);
         break;
     }
+  }
 
-    System.out.println("[DONE]");
+  private static void serve(final String[] args) {
+    if (JobServer.isRunningJob()) {
+      System.out.println("[FAIL] - A server can not be started by one of its jobs.");
+      exit(BAD_ARGUMENT);
+    }
+
+    final Map<String, String> options = parseOptions(args, 1);
+    final int port = parsePositiveInt(options.getOrDefault("port", String.valueOf(JobServer.DEFAULT_PORT)), "port");
+    final int threads = parsePositiveInt(
+            options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())), "threads");
+
+    final JobServer server;
+    try {
+      server = new JobServer(port, threads, JobServer.defaultTokenFile(port));
+    } catch (final IOException e) {
+      LOGGER.warn("[FAIL] - Could not listen on port {}, or write its token. Caused by: ", port, e);
+      System.out.println("[FAIL] - Could not listen on port " + port + ", or write its token: " + e.getMessage()
+              + ".\n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
+      return;
+    }
+
+    // the token file is deleted when the server is stopped
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        server.close();
+      } catch (final IOException e) {
+        LOGGER.warn("The server could not be closed. Caused by: ", e);
+      }
+    }));
+
+    System.out.println("[READY] - Serving jobs on 127.0.0.1:" + server.getPort() + " with " + threads + " thread(s)");
+    server.serve();
+  }
+
+  /**
+   * @return the given path, resolved against the working directory of the job that is being run by a
+   *         {@link JobServer}, or as it is if none is being run
+   */
+  private static Path path(final String first, final String... more) {
+    return JobServer.workingDirectory().resolve(Paths.get(first, more));
   }
 
   private static void gasDiffusion(final String[] args) {
-    if (args.length != 5) {
+    if (args.length > 1 && args[1].equals("--resume")) {
+      resumeGasDiffusion(args);
+      return;
+    }
+
+    if (args.length < 5) {
       System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
       exit(BAD_N_ARGUMENTS);
     }
 
+    final Map<String, String> options = parseOptions(args, 5);
+
+    final GasDiffusion.Engine engine = parseEngine(options);
+    final int workers = parsePositiveInt(options.getOrDefault("workers", "1"), "workers");
+    final String format = options.getOrDefault("format", "text");
+    if (!format.equals("text") && !format.equals("binary") && !format.equals("xyz")) {
+      System.out.println("[FAIL] - <format> must be 'text', 'binary' or 'xyz'. Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+    }
+    final int checkpointInterval = options.containsKey("checkpoint")
+            ? parsePositiveInt(options.get("checkpoint"), "checkpoint") : 0;
+    final double relativeError = options.containsKey("error") ? parseDouble(options.get("error"), "error") : 0;
+    if (relativeError < 0) {
+      System.out.println("[FAIL] - <error> must not be negative. Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+    }
+    final String events = options.getOrDefault("events", "false");
+    if (!events.equals("true") && !events.equals("false")) {
+      System.out.println("[FAIL] - <events> must be 'true' or 'false'. Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+    }
+    final String histograms = options.getOrDefault("histograms", "false");
+    if (!histograms.equals("true") && !histograms.equals("false")) {
+      System.out.println("[FAIL] - <histograms> must be 'true' or 'false'. Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+    }
+
     // create points' set with static and dynamic files
     final StaticData staticData = loadStaticFile(args[1]);
 
-    List<Point> points = new ArrayList<>(loadDynamicFile(args[2], staticData));
-
     double dt2 = 0;
     try {
       dt2 = Double.parseDouble(args[3]);
@@ -139,166 +327,690 @@ public class Main {
     }
 
     // Create file for first iteration
-    final File dataFolder = new File(DESTINATION_FOLDER);
+    final File dataFolder = path(DESTINATION_FOLDER).toFile();
     dataFolder.mkdirs(); // tries to make directories for the .dat files
 
     /* delete previous dynamic.dat file, if any */
-    final Path pathToDatFile = Paths.get(DESTINATION_FOLDER, OUTPUT_FILE);
-    final Path pathToGraphicsFile = Paths.get(DESTINATION_FOLDER, DATA_FOR_GRAPHICS_FILE);
+    final Path pathToDatFile = path(DESTINATION_FOLDER, OUTPUT_FILE);
+    final Path pathToBinaryFile = path(DESTINATION_FOLDER, BINARY_OUTPUT_FILE);
+    final Path pathToGraphicsFile = path(DESTINATION_FOLDER, DATA_FOR_GRAPHICS_FILE);
+    final Path pathToOvitoFile = path(DESTINATION_FOLDER, OVITO_FILE);
+    final Path pathToCheckpointFile = path(DESTINATION_FOLDER, CHECKPOINT_FILE);
+    final Path pathToEventsFile = path(DESTINATION_FOLDER, EVENTS_FILE);
 
     if(!deleteIfExists(pathToDatFile)) {
       return;
     }
+    if(!deleteIfExists(pathToBinaryFile)) {
+      return;
+    }
     if(!deleteIfExists(pathToGraphicsFile)) {
       return;
     }
+    if(!deleteIfExists(pathToOvitoFile)) {
+      return;
+    }
+    if(!deleteIfExists(pathToCheckpointFile)) {
+      return;
+    }
+    if(!deleteIfExists(pathToEventsFile)) {
+      return;
+    }
+    for (final String distributionFile : new String[] {RADIAL_DISTRIBUTION_FILE, SPEEDS_FILE, VELOCITIES_FILE}) {
+      if(!deleteIfExists(path(DESTINATION_FOLDER, distributionFile))) {
+        return;
+      }
+    }
 
-    double fraction = 1.0, currentTime = 0, systemTime = 0, tc;
-    int i = 0;
-    generateOutputDatFile(staticData.W, points, fraction, i, i * dt2);
-    i++;
+    // the particles get their ids from the context of this simulation
+    final SimulationContext context = new SimulationContext(staticData.L, staticData.W, opening);
+    final List<Point> points = new ArrayList<>(loadDynamicFile(args[2], staticData, context));
 
-    Wall.HORIZONTAL.setLength(staticData.W);
-    Wall.VERTICAL.setLength(staticData.L);
-    Wall.MIDDLE_VERTICAL.setLength((staticData.L - opening)/2.0);
+    final GasDiffusion gasDiffusion = new GasDiffusion(context, engine, workers);
+    final Checkpoint checkpoint = new Checkpoint(format, engine, staticData.L, staticData.W, opening, dt2,
+            staticData.mass, staticData.speed, checkpointInterval, relativeError, Boolean.parseBoolean(events));
 
-    final GasDiffusion gasDiffusion = new GasDiffusion(staticData.L, staticData.W, opening);
+    final Distributions distributions = Boolean.parseBoolean(histograms)
+            ? new Distributions(staticData.L, staticData.W, points) : null;
+    final Simulation.Result result;
+    try {
+      result = runGasDiffusion(checkpoint, gasDiffusion, new Simulation.Progress(points, distributions), true);
+    } finally {
+      gasDiffusion.close();
+    }
 
-    GasDiffusion.SystemData systemData;
-    do {
-      systemData = gasDiffusion.run(points);
+    // write equilibrium conditions
+    generateOutputDatFile(result, staticData);
+    generateDistributionFiles(result);
+  }
 
-      points = systemData.getParticles();
-      if (points.isEmpty()) { // there was no collision indeed => end with a log message
-        LOGGER.info("There is no collision at any time with the given parameters.\n" +
-                "Please check that the system is properly set up.");
-        System.out.println("There is no collision at any time with the given parameters.\n" +
-                "Please check that the system is properly set up.");
-        exit(BAD_ARGUMENT);
-      }
+  private static void resumeGasDiffusion(final String[] args) {
+    if (args.length < 3) {
+      System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+      exit(BAD_N_ARGUMENTS);
+    }
 
-      tc = systemData.getCollisionTime(); // Time left to reach dt2
-      systemTime += tc;
-      currentTime += tc;
-      if (currentTime >= dt2) { // don't save system's status if it's not the time
-        while (currentTime >= dt2) { // adjust time counter to be the gap between the exact dt2 time and the real one
-          currentTime -= dt2;
-        }
-        generateOutputDatFile(systemData, i, systemTime); // save to file the current configuration
-        i++;
-        systemData.resetCurrentPressure(); // reset pressure for the new iteration
-      }
-    } while (systemData.getLeftSideFraction() > 0.5);
-
-    final int eqIteration = i;
-    final double eqSystemTime = systemTime;
-    systemData.resetTotalPressure();
-
-    long timeAfterEquilibrium = 0;
-    do {
-      systemData = gasDiffusion.run(points);
-
-      points = systemData.getParticles();
-      if (points.isEmpty()) { // there was no collision indeed => end with a log message
-        LOGGER.info("There is no collision at any time with the given parameters.\n" +
-                "Please check that the system is properly set up.");
-        System.out.println("There is no collision at any time with the given parameters.\n" +
-                "Please check that the system is properly set up.");
-        exit(BAD_ARGUMENT);
-      }
+    final Map<String, String> options = parseOptions(args, 3);
+    final int workers = parsePositiveInt(options.getOrDefault("workers", "1"), "workers");
 
-      tc = systemData.getCollisionTime(); // Time left to reach dt2
-      systemTime += tc;
-      currentTime += tc;
-      if (currentTime >= dt2) { // don't save system's status if it's not the time
-        while (currentTime >= dt2) { // adjust time counter to be the gap between the exact dt2 time and the real one
-          currentTime -= dt2;
+    final Path pathToCheckpointFile = path(args[2]);
+    if (!Files.isRegularFile(pathToCheckpointFile)) {
+      System.out.println("[FAIL] - File '" + pathToCheckpointFile + "' is not a normal file. Aborting...");
+      exit(NOT_A_FILE);
+    }
+
+    Checkpoint checkpoint = null;
+    try {
+      checkpoint = Checkpoint.read(pathToCheckpointFile, workers);
+    } catch (IOException e) {
+      LOGGER.warn("Could not read the checkpoint '{}'. Caused by: ", pathToCheckpointFile, e);
+      System.out.println("[FAIL] - Could not read the checkpoint '" + pathToCheckpointFile + "'. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(BAD_FILE_FORMAT);
+      return;
+    }
+
+    // discard anything written after the checkpoint
+    final Path[] outputPaths = outputPaths(checkpoint.getFormat(), checkpoint.hasEvents());
+    final long[] outputLengths = checkpoint.getOutputLengths();
+    for (int k = 0 ; k < outputPaths.length ; k++) {
+      try (final FileChannel channel = FileChannel.open(outputPaths[k], StandardOpenOption.WRITE)) {
+        if (channel.size() < outputLengths[k]) {
+          throw new IOException("'" + outputPaths[k] + "' is shorter than when the checkpoint was written");
         }
-        generateOutputDatFile(systemData, i, systemTime); // save to file the current configuration
-        i++;
-        systemData.resetCurrentPressure(); // reset pressure for the new iteration
-        timeAfterEquilibrium ++;
+        channel.truncate(outputLengths[k]);
+      } catch (IOException e) {
+        LOGGER.warn("The output file '{}' does not match the checkpoint. Caused by: ", outputPaths[k], e);
+        System.out.println("[FAIL] - The output file '" + outputPaths[k] + "' does not match the checkpoint. \n" +
+                "Check the logs for more info.\n" +
+                "Aborting...");
+        exit(BAD_FILE_FORMAT);
       }
-    } while (timeAfterEquilibrium < MAX_TIME_AFTER_EQUILIBRIUM);
+    }
+
+    LOGGER.info("Resuming the simulation from the snapshot {}", checkpoint.getProgress().getLastIteration());
+
+    final StaticData staticData = new StaticData();
+    staticData.N = checkpoint.getProgress().getPoints().size();
+    staticData.mass = checkpoint.getMass();
+    staticData.speed = checkpoint.getSpeed();
+    staticData.L = checkpoint.getL();
+    staticData.W = checkpoint.getW();
+
+    final Simulation.Result result;
+    try {
+      result = runGasDiffusion(checkpoint, checkpoint.getGasDiffusion(), checkpoint.getProgress(), false);
+    } finally {
+      checkpoint.getGasDiffusion().close();
+    }
 
     // write equilibrium conditions
-    generateOutputDatFile(eqIteration, eqSystemTime, systemTime-eqSystemTime, staticData, systemData);
+    generateOutputDatFile(result, staticData);
+    generateDistributionFiles(result);
   }
 
   /**
-   * Format:  ID X Y Vx Vy R G B
-   * @param systemData Structure containing all the dynamic information of the system on the
-   *                   current iteration
-   * @param iteration the iteration number
-   * @param realTime real time of the simulation (iteration number * dt2)
+   * @param format the format in which snapshots are saved
+   * @param events true if the events are recorded on an event log
+   * @return the file where the particles of each snapshot are saved, the one where the rest of its data is, and
+   *         the event log if there is one
    */
-  private static void generateOutputDatFile(final GasDiffusion.SystemData systemData,
-                                            final int iteration,
-                                            final double realTime) {
-    /* delete previous dynamic.dat file, if any */
-    final Path pathToDatFile = Paths.get(DESTINATION_FOLDER, OUTPUT_FILE);
-    final Path pathToGraphicsFile = Paths.get(DESTINATION_FOLDER, DATA_FOR_GRAPHICS_FILE);
+  private static Path[] outputPaths(final String format, final boolean events) {
+    final String particlesFile;
+    switch (format) {
+      case "binary":
+        particlesFile = BINARY_OUTPUT_FILE;
+        break;
+      case "xyz":
+        particlesFile = OVITO_FILE;
+        break;
+      default:
+        particlesFile = OUTPUT_FILE;
+    }
+    if (events) {
+      return new Path[] {
+              path(DESTINATION_FOLDER, particlesFile),
+              path(DESTINATION_FOLDER, DATA_FOR_GRAPHICS_FILE),
+              path(DESTINATION_FOLDER, EVENTS_FILE)
+      };
+    }
+    return new Path[] {
+            path(DESTINATION_FOLDER, particlesFile),
+            path(DESTINATION_FOLDER, DATA_FOR_GRAPHICS_FILE)
+    };
+  }
 
-    /* write the new output.dat file */
-    final String[] data = pointsToString(systemData.getW(), systemData.getParticles(), iteration);
+  /**
+   * Runs the simulation, saving its snapshots - and its checkpoints, if any - on the output files
+   * @param checkpoint the parameters of the run
+   * @param gasDiffusion the engine of the simulation
+   * @param progress the progress from which to run
+   * @param isNew true if the simulation starts at time 0, so its initial state is saved too ;
+   *              false if it is resumed, so its output files are appended to
+   * @return the equilibrium conditions of the system
+   */
+  private static Simulation.Result runGasDiffusion(final Checkpoint checkpoint, final GasDiffusion gasDiffusion,
+                                                   final Simulation.Progress progress, final boolean isNew) {
+    final double L = checkpoint.getL();
+    final double W = checkpoint.getW();
+    final double opening = checkpoint.getOpening();
+    final List<Point> points = progress.getPoints();
+    final Path[] outputPaths = outputPaths(checkpoint.getFormat(), checkpoint.hasEvents());
+    final Path pathToCheckpointFile = path(DESTINATION_FOLDER, CHECKPOINT_FILE);
+
+    // output files are kept open during the whole simulation, and written on their own thread ;
+    // the binary writer is null if snapshots are saved as text
+    final boolean binary = checkpoint.getFormat().equals("binary");
+    final boolean xyz = checkpoint.getFormat().equals("xyz");
+    // built once, as it is the same for every graphics.xyz frame
+    final String borderParticles = xyz ? borderParticles(points.size(), L, W, opening) : null;
+    try (final AsyncSnapshotWriter outputWriter = new AsyncSnapshotWriter(binary ? null : outputPaths[0],
+            outputPaths[1], AsyncSnapshotWriter.DEFAULT_BUFFERS);
+         final SnapshotFileWriter binaryWriter = !binary ? null : isNew
+                 ? new SnapshotFileWriter(outputPaths[0], points.size(), L, W, opening)
+                 : new SnapshotFileWriter(outputPaths[0], points.size());
+         // null if the events are not recorded
+         final EventLogWriter eventLog = !checkpoint.hasEvents() ? null : isNew
+                 ? new EventLogWriter(outputPaths[2], points, L, W, opening)
+                 : new EventLogWriter(outputPaths[2], progress.getSystemTime())) {
+      gasDiffusion.setEventListener(eventLog);
+      if (isNew) {
+        final double fraction = 1.0;
+        final int i = 0;
+        generateOutputDatFile(outputWriter, binaryWriter, borderParticles, W, points, fraction, i,
+                i * checkpoint.getDt2());
+      }
 
-    final StringBuilder sb = new StringBuilder();
-    sb      .append(iteration).append(',')
-            .append(realTime).append(',')
-            .append(systemData.getLeftSideFraction()).append(',')
-            .append(systemData.getCurrentPressure()).append(',')
-            .append(data[KINETIC_ENERGY_INDEX]).append('\n');
+      return new Simulation(gasDiffusion, checkpoint.getDt2(), checkpoint.getRelativeError()).run(progress,
+              (systemData, iteration, systemTime) -> generateOutputDatFile(outputWriter, binaryWriter,
+                      borderParticles, systemData, iteration, systemTime),
+              checkpoint.getInterval(),
+              checkpointProgress -> writeCheckpoint(checkpoint, pathToCheckpointFile, gasDiffusion,
+                      checkpointProgress, outputWriter, eventLog, outputPaths));
+    } catch (final IllegalStateException e) { // there was no collision indeed => end with a log message
+      LOGGER.info("There is no collision at any time with the given parameters.\n" +
+              "Please check that the system is properly set up.");
+      System.out.println("There is no collision at any time with the given parameters.\n" +
+              "Please check that the system is properly set up.");
+      exit(BAD_ARGUMENT);
+      return null;
+    } catch (final IOException | UncheckedIOException e) { // the event log is written while the engine runs
+      LOGGER.warn("An unexpected IO Exception occurred while writing the output files. Caused by: ", e);
+      System.out.println("[FAIL] - An unexpected error occurred while writing the output files. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
+      return null;
+    }
+  }
 
-    writeToOutputFiles(data, pathToDatFile, pathToGraphicsFile, sb);
+  /**
+   * Writes a checkpoint, once every snapshot - and every event - before it has been written, so that the lengths of
+   * the output files are the ones they should have when the simulation is resumed from it
+   * @param eventLog the writer of the event log ; null if the events are not recorded
+   */
+  private static void writeCheckpoint(final Checkpoint checkpoint, final Path pathToCheckpointFile,
+                                      final GasDiffusion gasDiffusion, final Simulation.Progress progress,
+                                      final AsyncSnapshotWriter outputWriter, final EventLogWriter eventLog,
+                                      final Path[] outputPaths) {
+    try {
+      outputWriter.flush();
+      if (eventLog != null) {
+        eventLog.flush();
+      }
+      final long[] outputLengths = new long[outputPaths.length];
+      for (int k = 0 ; k < outputPaths.length ; k++) {
+        outputLengths[k] = Files.size(outputPaths[k]);
+      }
+      checkpoint.write(pathToCheckpointFile, gasDiffusion, progress, outputLengths);
+    } catch (IOException e) {
+      LOGGER.warn("An unexpected IO Exception occurred while writing the file {}. Caused by: ",
+              pathToCheckpointFile, e);
+      System.out.println("[FAIL] - An unexpected error occurred while writing the file '" + pathToCheckpointFile
+              + "'. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
+    }
   }
 
-  private static void writeToOutputFiles(final String[] data, final Path pathToDatFile, final Path pathToGraphicsFile, final StringBuilder sb) {
-    BufferedWriter writer = null;
-    BufferedWriter va_writer = null;
+  private static void replay(final String[] args) {
+    if (args.length < 3) {
+      System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+      exit(BAD_N_ARGUMENTS);
+    }
+
+    final Path pathToEventsFile = path(args[1]);
+    if (!Files.isRegularFile(pathToEventsFile)) {
+      System.out.println("[FAIL] - File '" + pathToEventsFile + "' is not a normal file. Aborting...");
+      exit(NOT_A_FILE);
+    }
+    final double dt2 = parseDouble(args[2], "dt2");
+    if (dt2 <= 0) {
+      System.out.println("[FAIL] - <dt2> must be positive. Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+    }
+    final Map<String, String> options = parseOptions(args, 3);
+    final String format = options.getOrDefault("format", "text");
+    if (!format.equals("text") && !format.equals("binary") && !format.equals("xyz")) {
+      System.out.println("[FAIL] - <format> must be 'text', 'binary' or 'xyz'. Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+    }
+
+    final File dataFolder = path(DESTINATION_FOLDER).toFile();
+    dataFolder.mkdirs(); // tries to make directories for the output files
+
+    final Path[] outputPaths = outputPaths(format, false);
+    for (final Path outputPath : outputPaths) {
+      if (!deleteIfExists(outputPath)) {
+        return;
+      }
+    }
+
+    final EventLogReader reader;
+    try {
+      reader = new EventLogReader(pathToEventsFile);
+    } catch (IOException e) {
+      LOGGER.warn("Could not read the event log '{}'. Caused by: ", pathToEventsFile, e);
+      System.out.println("[FAIL] - Could not read the event log '" + pathToEventsFile + "'. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(BAD_FILE_FORMAT);
+      return;
+    }
+
+    final double W = reader.getW();
+    final String borderParticles = format.equals("xyz")
+            ? borderParticles(reader.getN(), reader.getL(), W, reader.getOpening()) : null;
+    try (final EventLogReader eventLog = reader;
+         final AsyncSnapshotWriter outputWriter = new AsyncSnapshotWriter(
+                 format.equals("binary") ? null : outputPaths[0], outputPaths[1], AsyncSnapshotWriter.DEFAULT_BUFFERS);
+         final SnapshotFileWriter binaryWriter = !format.equals("binary") ? null
+                 : new SnapshotFileWriter(outputPaths[0], reader.getN(), reader.getL(), W, reader.getOpening())) {
+      final int samples = new Replay(eventLog, dt2).run(
+              (store, iteration, time, fraction, pressure, meanKineticEnergy) -> {
+                try {
+                  final AsyncSnapshotWriter.Snapshot snapshot = outputWriter.acquire();
+                  appendSnapshot(snapshot, binaryWriter, borderParticles, W, store.points(), iteration, time);
+                  if (iteration == 0) {
+                    snapshot.data()
+                            .append("Iteration,").append("Time (s),").append("Fraction,").append("Pressure,")
+                            .append("Temperature").append(System.lineSeparator());
+                  }
+                  snapshot.data()
+                          .append(iteration).append(',').append(time).append(',').append(fraction).append(',')
+                          .append(pressure).append(',').append(meanKineticEnergy).append('\n');
+                  outputWriter.submit(snapshot);
+                } catch (IOException e) {
+                  failToWriteSnapshot(iteration, e);
+                }
+              });
+      LOGGER.info("Replayed {} snapshots from '{}'", samples, pathToEventsFile);
+    } catch (final IOException e) {
+      LOGGER.warn("An unexpected IO Exception occurred while replaying '{}'. Caused by: ", pathToEventsFile, e);
+      System.out.println("[FAIL] - An unexpected error occurred while replaying '" + pathToEventsFile + "'. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
+    }
+  }
+
+  private static void ensemble(final String[] args) {
+    if (args.length < 10) {
+      System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+      exit(BAD_N_ARGUMENTS);
+    }
+
+    final int N = parsePositiveInt(args[1], "N");
+    final double mass = parseDouble(args[2], "m");
+    final double speed = parseDouble(args[3], "v");
+    final double r = parseDouble(args[4], "r");
+    final double L = parseDouble(args[5], "L");
+    final double W = parseDouble(args[6], "W");
+    final double dt2 = parseDouble(args[7], "dt2");
+    final double opening = parseDouble(args[8], "opening");
+    final int K = parsePositiveInt(args[9], "K");
+
+    final Map<String, String> options = parseOptions(args, 10);
+    final GasDiffusion.Engine engine = parseEngine(options);
+    final int threads = parsePositiveInt(options.getOrDefault("threads",
+            String.valueOf(Runtime.getRuntime().availableProcessors())), "threads");
+    final long seed = parseSeed(options);
+
+    if(mass <= 0
+            || L <= 0
+            || opening <= 0 || opening > L
+            || W <= 0
+            || r < 0
+            || dt2 < 0) {
+      System.out.println("[FAIL] - The following must not happen: mass <= 0 or L <= 0 or opening <= 0 or opening > L " +
+              "or W <= 0 or r < 0 or dt2 < 0.");
+      exit(BAD_ARGUMENT);
+    }
+
+    final List<Ensemble.Realization> realizations;
     try {
-      writer = new BufferedWriter(new FileWriter(pathToDatFile.toFile(), true));
-      writer.write(data[SYSTEM_PARTICLES_INDEX]);
+      LOGGER.info("Running {} realizations with seed {}", K, seed);
+      realizations = new Ensemble(N, mass, speed, r, L, W, opening, dt2, engine, seed).run(K, threads);
+    } catch (final IllegalStateException e) {
+      LOGGER.warn("[FAIL] - A realization could not be run. Caused by: ", e);
+      System.out.println("[FAIL] - A realization could not be run: " + e.getMessage() + ".\n" +
+              "Please check that the system is properly set up.");
+      exit(BAD_ARGUMENT);
+      return;
+    } catch (final InterruptedException e) {
+      LOGGER.warn("[FAIL] - Interrupted while waiting for the realizations. Caused by: ", e);
+      System.out.println("[FAIL] - Interrupted while waiting for the realizations. Aborting...");
+      exit(UNEXPECTED_ERROR);
+      return;
+    }
 
-      va_writer = new BufferedWriter(new FileWriter(pathToGraphicsFile.toFile(), true));
-      va_writer.write(sb.toString()); // write data for graphics
+    final double[] timesToEquilibrium = new double[K];
+    final double[] iterationsToEquilibrium = new double[K];
+    final double[] pressures = new double[K];
+    final double[] temperatures = new double[K];
+    for (int k = 0 ; k < K ; k++) {
+      final Ensemble.Realization realization = realizations.get(k);
+      timesToEquilibrium[k] = realization.getTimeToEquilibrium();
+      iterationsToEquilibrium[k] = realization.getIterationsToEquilibrium();
+      pressures[k] = realization.getPressure();
+      temperatures[k] = realization.getTemperature();
+    }
 
+    final String lineSeparator = System.lineSeparator();
+    final StringBuilder sb = new StringBuilder();
+    sb      .append("N,").append(N).append(lineSeparator)
+            .append("mass,").append(mass).append(lineSeparator)
+            .append("speed,").append(speed).append(lineSeparator)
+            .append("r,").append(r).append(lineSeparator)
+            .append("L,").append(L).append(lineSeparator)
+            .append("W,").append(W).append(lineSeparator)
+            .append("opening,").append(opening).append(lineSeparator)
+            .append("dt2,").append(dt2).append(lineSeparator)
+            .append("realizations,").append(K).append(lineSeparator)
+            .append("seed,").append(seed).append(lineSeparator)
+            .append("Variable,E(Variable),SD(Variable)").append(lineSeparator);
+    appendStatistics(sb, "Real Time (in seconds)", new Statistics(timesToEquilibrium));
+    appendStatistics(sb, "iteration", new Statistics(iterationsToEquilibrium));
+    appendStatistics(sb, "Pressure", new Statistics(pressures));
+    appendStatistics(sb, "Temperature", new Statistics(temperatures));
+
+    final File dataFolder = path(DESTINATION_FOLDER).toFile();
+    dataFolder.mkdirs(); // tries to make directories for the .csv file
+
+    final Path pathToCsvFile = path(DESTINATION_FOLDER, ENSEMBLE_FILE);
+    try (final BufferedWriter writer = Files.newBufferedWriter(pathToCsvFile)) {
+      writer.write(sb.toString());
     } catch (IOException e) {
-      LOGGER.warn("An unexpected IO Exception occurred while writing the file {}. Caused by: ", pathToDatFile, e);
-      System.out.println("[FAIL] - An unexpected error occurred while writing the file '" + pathToDatFile + "'. \n" +
+      LOGGER.warn("An unexpected IO Exception occurred while writing the file {}. Caused by: ", pathToCsvFile, e);
+      System.out.println("[FAIL] - An unexpected error occurred while writing the file '" + pathToCsvFile + "'. \n" +
               "Check the logs for more info.\n" +
               "Aborting...");
       exit(UNEXPECTED_ERROR);
-    } finally {
-      try {
-        // close the writer regardless of what happens...
-        if (writer != null) {
-          writer.close();
-        }
-        if (va_writer != null) {
-          va_writer.close();
-        }
-      } catch (Exception ignored) {
+    }
+  }
+
+  private static void appendStatistics(final StringBuilder sb, final String variable, final Statistics statistics) {
+    sb.append(variable).append(',').append(statistics.getMean()).append(',').append(statistics.getSD())
+            .append(System.lineSeparator());
+  }
 
+  private static void sweep(final String[] args) {
+    if (args.length < 4) {
+      System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+      exit(BAD_N_ARGUMENTS);
+    }
+
+    final double mass = parseDouble(args[1], "m");
+    final double dt2 = parseDouble(args[2], "dt2");
+    final int K = parsePositiveInt(args[3], "K");
+
+    final Map<String, String> options = parseOptions(args, 4);
+    final GasDiffusion.Engine engine = parseEngine(options);
+    final int threads = parsePositiveInt(options.getOrDefault("threads",
+            String.valueOf(Runtime.getRuntime().availableProcessors())), "threads");
+    final long seed = parseSeed(options);
+
+    final double[] nValues = parseValues(options.getOrDefault("N", "50,75,100"), "N");
+    final double[] openings = parseValues(options.getOrDefault("opening", "0.006,0.008,0.01"), "opening");
+    final double[] speeds = parseValues(options.getOrDefault("v", "0.01,0.025,0.05,0.075,0.1"), "v");
+    final double[] radios = parseValues(options.getOrDefault("r", "0.0015"), "r");
+    final double[] Ls = parseValues(options.getOrDefault("L", "0.09"), "L");
+    final double[] Ws = parseValues(options.getOrDefault("W", "0.24"), "W");
+
+    final int[] N = new int[nValues.length];
+    for (int i = 0 ; i < N.length ; i++) {
+      N[i] = (int) nValues[i];
+      if (N[i] != nValues[i] || N[i] < 1) {
+        System.out.println("[FAIL] - <N> values must be positive integers. Try 'help' for more information.");
+        exit(BAD_ARGUMENT);
       }
     }
+
+    final double minL = Arrays.stream(Ls).min().getAsDouble();
+    if(mass <= 0
+            || minL <= 0
+            || Arrays.stream(openings).anyMatch(opening -> opening <= 0 || opening > minL)
+            || Arrays.stream(Ws).anyMatch(W -> W <= 0)
+            || Arrays.stream(radios).anyMatch(r -> r < 0)
+            || dt2 < 0) {
+      System.out.println("[FAIL] - The following must not happen: mass <= 0 or L <= 0 or opening <= 0 or opening > L " +
+              "or W <= 0 or r < 0 or dt2 < 0.");
+      exit(BAD_ARGUMENT);
+    }
+
+    LOGGER.info("Running the sweep with seed {}", seed);
+    final Sweep sweep = new Sweep(N, mass, speeds, radios, Ls, Ws, openings, dt2, engine, seed);
+    final List<List<Ensemble.Realization>> results;
+    try {
+      results = sweep.run(K, threads);
+    } catch (final IllegalStateException e) {
+      LOGGER.warn("[FAIL] - A realization could not be run. Caused by: ", e);
+      System.out.println("[FAIL] - A realization could not be run: " + e.getMessage() + ".\n" +
+              "Please check that the system is properly set up.");
+      exit(BAD_ARGUMENT);
+      return;
+    } catch (final InterruptedException e) {
+      LOGGER.warn("[FAIL] - Interrupted while waiting for the realizations. Caused by: ", e);
+      System.out.println("[FAIL] - Interrupted while waiting for the realizations. Aborting...");
+      exit(UNEXPECTED_ERROR);
+      return;
+    }
+
+    final File resultsFolder = path(DESTINATION_FOLDER, RESULTS_FOLDER).toFile();
+    resultsFolder.mkdirs(); // tries to make directories for the .csv files
+
+    // systems that only differ on their speed share the same pressure vs. temperature table
+    final Map<String, StringBuilder> preTResults = new LinkedHashMap<>();
+
+    final List<Ensemble> systems = sweep.getSystems();
+    for (int s = 0 ; s < systems.size() ; s++) {
+      final Ensemble system = systems.get(s);
+      final List<Ensemble.Realization> realizations = results.get(s);
+
+      // radio, L and W are only part of the name of the tables if they were swept, as analyser.sh does not sweep them
+      final String suffix = "N" + system.getN() + "_OP" + format(system.getOpening())
+              + (radios.length > 1 ? "_R" + format(system.getRadio()) : "")
+              + (Ls.length > 1 ? "_L" + format(system.getL()) : "")
+              + (Ws.length > 1 ? "_W" + format(system.getW()) : "");
+
+      final double[] iterations = new double[K];
+      final double[] pressures = new double[K];
+      final double[] temperatures = new double[K];
+      int maxSnapshots = 0;
+      for (int k = 0 ; k < K ; k++) {
+        iterations[k] = realizations.get(k).getIterationsToEquilibrium();
+        pressures[k] = realizations.get(k).getPressure();
+        temperatures[k] = realizations.get(k).getTemperature();
+        maxSnapshots = Math.max(maxSnapshots, realizations.get(k).getFractions().length);
+      }
+      final Statistics iterationsStatistics = new Statistics(iterations);
+      final Statistics pressureStatistics = new Statistics(pressures);
+      final double temperature = new Statistics(temperatures).getMean();
+
+      final StringBuilder sb = new StringBuilder();
+      appendConstants(sb, system, format(system.getSpeed()));
+      sb.append("E(iterations), SD(iterations), MIN(iterations)").append(TABLE_LINE_SEPARATOR)
+              .append(String.format(Locale.US, "%.6f,%.6f,%d", iterationsStatistics.getMean(),
+                      iterationsStatistics.getSD(), (int) iterationsStatistics.getMin())).append('\n');
+      sb.append("E(Pressure), SD(Pressure), Temperature").append(TABLE_LINE_SEPARATOR)
+              .append(String.format(Locale.US, "%.6f,%.6f,", pressureStatistics.getMean(),
+                      pressureStatistics.getSD())).append(temperature).append('\n');
+      sb.append("iteration, time(s), E(fp) = |fp| = mean(fp), SD(fp) = sqrt(|fp^2|-|fp|^2)")
+              .append(TABLE_LINE_SEPARATOR);
+      // each snapshot is averaged over the realizations that lasted until it
+      for (int l = 0 ; l < maxSnapshots ; l++) {
+        final int snapshot = l;
+        final Statistics fractionStatistics = new Statistics(realizations.stream()
+                .filter(realization -> realization.getFractions().length > snapshot)
+                .mapToDouble(realization -> realization.getFractions()[snapshot])
+                .toArray());
+        sb.append(l).append(',')
+                .append(String.format(Locale.US, "%.6f,%.6f,%.6f", l * dt2, fractionStatistics.getMean(),
+                        fractionStatistics.getSD())).append('\n');
+      }
+      writeTable(path(DESTINATION_FOLDER, RESULTS_FOLDER,
+              N_OP_RESULTS + "V" + format(system.getSpeed()) + "_" + suffix + ".csv"), sb);
+
+      final StringBuilder preT = preTResults.computeIfAbsent(suffix, key -> {
+        final StringBuilder header = new StringBuilder();
+        appendConstants(header, system, "Varying");
+        header.append("V, Temperature, E(Pressure) = |Pressure| = mean(Pressure), ")
+                .append("SD(Pressure) = sqrt(|Pressure^2|-|Pressure|^2)").append(TABLE_LINE_SEPARATOR).append('\n');
+        return header;
+      });
+      preT.append(format(system.getSpeed())).append(',').append(temperature).append(',')
+              .append(String.format(Locale.US, "%.6f,%.6f", pressureStatistics.getMean(),
+                      pressureStatistics.getSD())).append('\n');
+    }
+
+    preTResults.forEach((suffix, sb) ->
+            writeTable(path(DESTINATION_FOLDER, RESULTS_FOLDER, PRE_T_RESULTS + suffix + ".csv"), sb));
+  }
+
+  /**
+   * Appends the constants of a system, as analyser.sh does at the top of its tables
+   */
+  private static void appendConstants(final StringBuilder sb, final Ensemble system, final String speed) {
+    sb      .append("N, ").append(system.getN()).append(TABLE_LINE_SEPARATOR)
+            .append("opening, ").append(format(system.getOpening())).append(TABLE_LINE_SEPARATOR)
+            .append("v, ").append(speed).append(TABLE_LINE_SEPARATOR)
+            .append("m, ").append(format(system.getMass())).append(TABLE_LINE_SEPARATOR)
+            .append("r, ").append(format(system.getRadio())).append(TABLE_LINE_SEPARATOR)
+            .append("L, ").append(format(system.getL())).append(TABLE_LINE_SEPARATOR)
+            .append("W, ").append(format(system.getW())).append(TABLE_LINE_SEPARATOR)
+            .append("dt2, ").append(format(system.getDt2())).append(TABLE_LINE_SEPARATOR);
+  }
+
+  /**
+   * @return the given value as it would be written by the user, i.e., without exponent nor trailing zeros
+   */
+  private static String format(final double value) {
+    return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+  }
+
+  private static void writeTable(final Path pathToTable, final StringBuilder sb) {
+    try (final BufferedWriter writer = Files.newBufferedWriter(pathToTable)) {
+      writer.write(sb.toString());
+    } catch (IOException e) {
+      LOGGER.warn("An unexpected IO Exception occurred while writing the file {}. Caused by: ", pathToTable, e);
+      System.out.println("[FAIL] - An unexpected error occurred while writing the file '" + pathToTable + "'. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
+    }
+  }
+
+  /**
+   * Format:  ID X Y Vx Vy R G B
+   * @param outputWriter the writer of output.dat and i_t_fp_pre_temp.csv
+   * @param binaryWriter the writer of the binary snapshot file ; null to save the snapshot as text
+   * @param borderParticles the virtual particles of each graphics.xyz frame ; null to save the snapshot on
+   *                        output.dat instead
+   * @param systemData Structure containing all the dynamic information of the system on the
+   *                   current iteration
+   * @param iteration the iteration number
+   * @param realTime real time of the simulation (iteration number * dt2)
+   */
+  private static void generateOutputDatFile(final AsyncSnapshotWriter outputWriter,
+                                            final SnapshotFileWriter binaryWriter,
+                                            final String borderParticles,
+                                            final GasDiffusion.SystemData systemData,
+                                            final int iteration,
+                                            final double realTime) {
+    final long start = SimulationMetrics.ENABLED ? System.nanoTime() : 0;
+    try {
+      final AsyncSnapshotWriter.Snapshot snapshot = outputWriter.acquire();
+
+      /* write the new output.dat file */
+      appendSnapshot(snapshot, binaryWriter, borderParticles, systemData.getW(), systemData.getParticles(),
+              iteration, realTime);
+
+      // the kinetic energy is kept up to date by the engine, so it is not summed again from all the particles
+      snapshot.data()
+              .append(iteration).append(',')
+              .append(realTime).append(',')
+              .append(systemData.getLeftSideFraction()).append(',')
+              .append(systemData.getCurrentPressure()).append(',')
+              .append(systemData.getMeanKineticEnergy()).append('\n');
+
+      outputWriter.submit(snapshot);
+    } catch (IOException e) {
+      failToWriteSnapshot(iteration, e);
+    }
+    if (SimulationMetrics.ENABLED) {
+      SimulationMetrics.INSTANCE.recordSnapshot(System.nanoTime() - start);
+    }
   }
 
-  private static void generateOutputDatFile(final int i,
-                                            final double eqTime,
-                                            final double timeSinceEq,
-                                            final StaticData staticData,
-                                            final GasDiffusion.SystemData systemData) {
-    final Path pathToCsvFile = Paths.get(DESTINATION_FOLDER, TIME_TO_EQUILIBRIUM_FILE);
+  /**
+   * Saves the particles on the binary file if there is one, or appends them to the snapshot in other case:
+   * as a graphics.xyz frame if there are border particles, or as on output.dat if not
+   * @throws IOException if the binary file can not be written
+   */
+  private static void appendSnapshot(final AsyncSnapshotWriter.Snapshot snapshot,
+                                     final SnapshotFileWriter binaryWriter, final String borderParticles,
+                                     final double W, final Collection<Point> particles, final long iteration,
+                                     final double realTime) throws IOException {
+    final StringBuilder sb = snapshot.particles();
+    if (binaryWriter != null) {
+      binaryWriter.write(realTime, iteration, particles);
+    } else if (borderParticles == null) {
+      sb.append(iteration).append('\n');
+      appendPoints(sb, W, particles);
+    } else {
+      // same frame as 'gen ovito' generates: amount of particles, iteration number, particles and border particles
+      sb.append(particles.size() + 8).append(System.lineSeparator());
+      sb.append(iteration).append(System.lineSeparator());
+      appendPoints(sb, W, particles);
+      sb.append(borderParticles);
+    }
+  }
+
+  private static void failToWriteSnapshot(final long iteration, final IOException e) {
+    LOGGER.warn("An unexpected IO Exception occurred while writing the snapshot {}. Caused by: ", iteration, e);
+    System.out.println("[FAIL] - An unexpected error occurred while writing the snapshot " + iteration + ". \n" +
+            "Check the logs for more info.\n" +
+            "Aborting...");
+    exit(UNEXPECTED_ERROR);
+  }
+
+  /**
+   * Writes the equilibrium conditions of the system on time_to_eq.csv. The rows read by the analysis scripts come
+   * first, and then the ones that tell how precise the measures after the equilibrium are.
+   * @param result the equilibrium conditions of the system
+   * @param staticData the parameters of the system
+   */
+  private static void generateOutputDatFile(final Simulation.Result result, final StaticData staticData) {
+    final Path pathToCsvFile = path(DESTINATION_FOLDER, TIME_TO_EQUILIBRIUM_FILE);
 
     /* delete previous timeToEquilibrium.dat file, if any */
     if(!deleteIfExists(pathToCsvFile)) {
       return;
     }
 
-    double meanPressure = 0;
-    if (systemData != null && timeSinceEq > 0) {
-      meanPressure = systemData.getTotalPressure()/timeSinceEq;
-    }
+    final double meanPressure = result.getSystemData() != null ? result.getMeanPressure() : 0;
     final double temperature = 1/2.0d * staticData.mass * Math.pow(staticData.speed,2);
 
     final StringBuilder sb = new StringBuilder();
@@ -309,10 +1021,14 @@ public class Main {
             .append("W,").append(staticData.W).append(lineSeparator)
             .append("mass,").append(staticData.mass).append(lineSeparator)
             .append("speed,").append(staticData.speed).append(lineSeparator)
-            .append("iteration,").append(i).append(lineSeparator)
-            .append("Real Time (in seconds),").append(eqTime).append(lineSeparator)
+            .append("iteration,").append(result.getEqIteration()).append(lineSeparator)
+            .append("Real Time (in seconds),").append(result.getEqTime()).append(lineSeparator)
             .append("Pressure,").append(meanPressure).append(lineSeparator)
             .append("Temperature,").append(temperature).append(lineSeparator)
+            .append("Snapshots after equilibrium,").append(result.getSnapshotsSinceEq()).append(lineSeparator)
+            .append("Pressure relative error,").append(result.getPressureRelativeError()).append(lineSeparator)
+            .append("Fraction,").append(result.getMeanFraction()).append(lineSeparator)
+            .append("Fraction relative error,").append(result.getFractionRelativeError()).append(lineSeparator)
             ;
 
     BufferedWriter writer = null;
@@ -336,34 +1052,98 @@ public class Main {
     }
   }
 
+  /**
+   * Writes the distributions measured after the equilibrium - if they were - on g_r.csv, speeds.csv and
+   * velocities.csv, with the value at the center of each bin. The velocity ones are written next to the
+   * Maxwell-Boltzmann distribution of the same temperature, so that they can be compared.
+   * @param result the result of the simulation
+   */
+  private static void generateDistributionFiles(final Simulation.Result result) {
+    final Distributions distributions = result.getDistributions();
+    if (distributions == null) {
+      return;
+    }
+    LOGGER.info("Writing the distributions of {} snapshots", distributions.getSamples());
+
+    final String lineSeparator = System.lineSeparator();
+
+    final double distanceBinWidth = distributions.getDistanceBinWidth();
+    final double[] g = distributions.radialDistribution();
+    final StringBuilder radial = new StringBuilder("r,g(r)").append(lineSeparator);
+    for (int k = 0 ; k < g.length ; k++) {
+      radial.append((k + 0.5) * distanceBinWidth).append(',').append(g[k]).append(lineSeparator);
+    }
+    writeTable(path(DESTINATION_FOLDER, RADIAL_DISTRIBUTION_FILE), radial);
+
+    final double speedBinWidth = distributions.getSpeedBinWidth();
+    final double[] speedDensity = distributions.speedDensity();
+    final StringBuilder speeds = new StringBuilder("Speed,Density,Maxwell-Boltzmann").append(lineSeparator);
+    for (int k = 0 ; k < speedDensity.length ; k++) {
+      final double speed = (k + 0.5) * speedBinWidth;
+      speeds.append(speed).append(',').append(speedDensity[k]).append(',')
+              .append(distributions.maxwellBoltzmannSpeed(speed)).append(lineSeparator);
+    }
+    writeTable(path(DESTINATION_FOLDER, SPEEDS_FILE), speeds);
+
+    final double[] vxDensity = distributions.vxDensity();
+    final double[] vyDensity = distributions.vyDensity();
+    final StringBuilder velocities = new StringBuilder("Velocity,Vx density,Vy density,Maxwell-Boltzmann")
+            .append(lineSeparator);
+    for (int k = 0 ; k < vxDensity.length ; k++) {
+      final double v = -distributions.getMaxSpeed() + (k + 0.5) * 2 * speedBinWidth;
+      velocities.append(v).append(',').append(vxDensity[k]).append(',').append(vyDensity[k]).append(',')
+              .append(distributions.maxwellBoltzmannComponent(v)).append(lineSeparator);
+    }
+    writeTable(path(DESTINATION_FOLDER, VELOCITIES_FILE), velocities);
+  }
+
   /**
    * Generates the file for output data, starting with the headers
    * Format:  ID X Y Vx Vy R G B
+   * @param outputWriter the writer of output.dat and i_t_fp_pre_temp.csv
+   * @param binaryWriter the writer of the binary snapshot file ; null to save the snapshot as text
+   * @param borderParticles the virtual particles of each graphics.xyz frame ; null to save the snapshot on
+   *                        output.dat instead
    * @param particles set of particles to be persisted
    * @param iteration the iteration number
    * @param realTime real time of the simulation (iteration number * dt2)
    */
-  private static void generateOutputDatFile(final double W, final Collection<Point> particles,
+  private static void generateOutputDatFile(final AsyncSnapshotWriter outputWriter,
+                                            final SnapshotFileWriter binaryWriter,
+                                            final String borderParticles,
+                                            final double W, final Collection<Point> particles,
                                             final double fraction,
                                             final long iteration,
                                             final double realTime) {
-    /* delete previous dynamic.dat file, if any */
-    final Path pathToDatFile = Paths.get(DESTINATION_FOLDER, OUTPUT_FILE);
-    final Path pathToGraphicsFile = Paths.get(DESTINATION_FOLDER, DATA_FOR_GRAPHICS_FILE);
+    try {
+      final AsyncSnapshotWriter.Snapshot snapshot = outputWriter.acquire();
 
-    /* write the new output.dat file */
-    final String[] data = pointsToString(W, particles, iteration);
+      /* write the new output.dat file */
+      appendSnapshot(snapshot, binaryWriter, borderParticles, W, particles, iteration, realTime);
 
-    final StringBuilder sb = new StringBuilder();
-    sb      .append("Iteration,").append("Time (s),").append("Fraction,").append("Pressure,").append("Temperature")
-            .append(System.lineSeparator());
+      // the engine has not run yet, so this is the only time the kinetic energy is summed from all the particles
+      double kineticEnergy = 0;
+      for (final Point point : particles) {
+        kineticEnergy += point.kineticEnergy();
+      }
+      if (!particles.isEmpty()) {
+        kineticEnergy /= particles.size();
+      }
 
-    double pressure = 0;
+      snapshot.data()
+              .append("Iteration,").append("Time (s),").append("Fraction,").append("Pressure,").append("Temperature")
+              .append(System.lineSeparator());
 
-    sb      .append(iteration).append(',').append(realTime).append(',').append(fraction).append(',')
-            .append(pressure).append(',').append(data[KINETIC_ENERGY_INDEX]).append('\n');
+      double pressure = 0;
 
-    writeToOutputFiles(data, pathToDatFile, pathToGraphicsFile, sb);
+      snapshot.data()
+              .append(iteration).append(',').append(realTime).append(',').append(fraction).append(',')
+              .append(pressure).append(',').append(kineticEnergy).append('\n');
+
+      outputWriter.submit(snapshot);
+    } catch (IOException e) {
+      failToWriteSnapshot(iteration, e);
+    }
   }
 
   private static void generateCase(final String[] args) {
@@ -375,7 +1155,7 @@ public class Main {
 
     switch (args[1]) {
       case "staticdat":
-        if (args.length != 8) {
+        if (args.length < 8) {
           System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
           exit(BAD_N_ARGUMENTS);
         }
@@ -434,21 +1214,29 @@ public class Main {
           exit(BAD_ARGUMENT);
         }
 
+        final long seed = parseSeed(parseOptions(args, 8));
+
         // create the points position, given the static.dat file
-        generateStaticDatFile(N, mass, speed, r, L, W);
+        generateStaticDatFile(N, mass, speed, r, L, W, seed);
 
         break;
       case "dynamicdat":
-        if (args.length != 3) {
+        if (args.length < 3) {
           System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
           exit(BAD_N_ARGUMENTS);
         }
 
+        final String mode = parseOptions(args, 3).getOrDefault("mode", "random");
+        if (!mode.equals("random") && !mode.equals("lattice")) {
+          System.out.println("[FAIL] - <mode> must be 'random' or 'lattice'. Try 'help' for more information.");
+          exit(BAD_ARGUMENT);
+        }
+
         // read N, L and rs from an input file
         final StaticData staticData = loadStaticFile(args[2]);
 
         // create the points position, given the static.dat file
-        generateDynamicDatFile(staticData);
+        generateDynamicDatFile(staticData, mode.equals("lattice"));
         break;
 
       case "ovito":
@@ -480,13 +1268,13 @@ public class Main {
   }
 
   private static void generateStaticDatFile(final int N, final double mass, final double speed, final double r,
-                                            final double L, final double W) {
+                                            final double L, final double W, final long seed) {
     // save data to a new file
-    final File dataFolder = new File(DESTINATION_FOLDER);
+    final File dataFolder = path(DESTINATION_FOLDER).toFile();
     dataFolder.mkdirs(); // tries to make directories for the .dat files
 
     /* delete previous dynamic.dat file, if any */
-    final Path pathToDatFile = Paths.get(DESTINATION_FOLDER, STATIC_FILE);
+    final Path pathToDatFile = path(DESTINATION_FOLDER, STATIC_FILE);
 
     if(!deleteIfExists(pathToDatFile)) {
       return;
@@ -511,6 +1299,8 @@ public class Main {
       writer.write("\n");
       writer.write(String.valueOf(W));
       writer.write("\n");
+      writer.write(String.valueOf(seed));
+      writer.write("\n");
 
     } catch (IOException e) {
       LOGGER.warn("An unexpected IO Exception occurred while writing the file {}. Caused by: ", pathToDatFile, e);
@@ -530,14 +1320,28 @@ public class Main {
     }
   }
 
-  private static void generateDynamicDatFile(final StaticData staticData) {
-    final PointFactory pF = PointFactory.getInstance();
+  /**
+   * @param staticData the particles to generate
+   * @param lattice true to place the particles on a lattice ; false to place them at random
+   */
+  private static void generateDynamicDatFile(final StaticData staticData, final boolean lattice) {
+    // the opening is only given when the simulation is run, and it is not needed to generate the particles
+    final PointFactory pF = new PointFactory(new SimulationContext(staticData.L, staticData.W, 0));
 
     final Point leftBottomPoint = Point.builder(0, 0).vx(0).vy(0).build();
     final Point rightTopPoint = Point.builder(staticData.W / 2, staticData.L).vx(0).vy(0).build();
 
-    final Set<Point> pointsSet = pF.randomPoints(leftBottomPoint, rightTopPoint,
-            staticData.radios, false, Integer.MAX_VALUE, staticData.speed, staticData.mass);
+    // files written before seeds were recorded get a new one
+    final long seed = staticData.seed != null ? staticData.seed : RandomInRange.randomSeed();
+    LOGGER.info("Generating the particles of '{}' with seed {}", DYNAMIC_FILE, seed);
+
+    // the first substream, as the first realization of an ensemble with the same seed
+    final RandomInRange random = new RandomInRange(seed).split();
+    final Set<Point> pointsSet = lattice
+            ? pF.latticePoints(random, leftBottomPoint, rightTopPoint, staticData.radios, staticData.speed,
+                    staticData.mass)
+            : pF.randomPoints(random, leftBottomPoint, rightTopPoint, staticData.radios, false, Integer.MAX_VALUE,
+                    staticData.speed, staticData.mass);
 
     if (pointsSet.size() < staticData.radios.length) {
       System.out.println("[FAIL] - Could not generate all the particles from the static file.\n" +
@@ -548,11 +1352,11 @@ public class Main {
     }
 
     // save data to a new file
-    final File dataFolder = new File(DESTINATION_FOLDER);
+    final File dataFolder = path(DESTINATION_FOLDER).toFile();
     dataFolder.mkdirs(); // tries to make directories for the .dat files
 
     /* delete previous dynamic.dat file, if any */
-    final Path pathToDatFile = Paths.get(DESTINATION_FOLDER, DYNAMIC_FILE);
+    final Path pathToDatFile = path(DESTINATION_FOLDER, DYNAMIC_FILE);
 
     if(!deleteIfExists(pathToDatFile)) {
       return;
@@ -596,60 +1400,49 @@ public class Main {
     return sb.toString();
   }
   // Used for building output.dat
-  private static String[] pointsToString(final double W, final Collection<Point> pointsSet, final long iteration) {
-    final StringBuilder sb = new StringBuilder();
-    sb.append(iteration).append('\n');
-    double vx, vy, r, g, b;
-    double kineticEnergy = 0;
-
+  private static void appendPoints(final StringBuilder sb, final double W, final Collection<Point> pointsSet) {
     for (final Point point : pointsSet) {
-      vx = point.vx();
-      vy = point.vy();
-
-      if (point.isColliding()) {
-        r = 1;
-        g = 0;
-        b = 0;
-      } else if (point.x() < W/2 ) { // left side
-        r = 0;
-        g = 1;
-        b = 0;
-      } else {
-        r = 0;
-        g = 0;
-        b = 1;
-      }
+      appendParticle(sb, W, point.id(), point.x(), point.y(), point.vx(), point.vy(), point.radio(),
+              point.isColliding());
+    }
+  }
 
-      sb      .append(point.id()).append('\t')
-              // type
-              .append(point.id()).append('\t')
-              // position
-              .append(point.x()).append('\t').append(point.y()).append('\t')
-              // velocity
-              .append(vx).append('\t').append(vy).append('\t')
-              // R G B colors
-              .append(r).append('\t')
-              .append(g).append('\t')
-              .append(b).append('\t')
-              // radio
-              .append(point.radio()).append('\n');
-      kineticEnergy += point.kineticEnergy();
-    }
-
-    // calculate the current va, assuming the average of all point's speeds (works for the current case)
-    // 1/(N * v/N) = 1/v for this case, assuming the above is valid
-
-    if (!pointsSet.isEmpty()) {
-      kineticEnergy /= pointsSet.size();
+  /**
+   * Appends a particle on the output.dat format: ID TYPE X Y Vx Vy R G B RADIO.
+   * Colliding particles are red, and the others are green on the left side and blue on the right side.
+   * @param W the width of the box
+   */
+  private static void appendParticle(final StringBuilder sb, final double W, final long id,
+                                     final double x, final double y, final double vx, final double vy,
+                                     final double radio, final boolean isColliding) {
+    final double r, g, b;
+    if (isColliding) {
+      r = 1;
+      g = 0;
+      b = 0;
+    } else if (x < W/2 ) { // left side
+      r = 0;
+      g = 1;
+      b = 0;
     } else {
-      kineticEnergy = 0;
+      r = 0;
+      g = 0;
+      b = 1;
     }
 
-    final String[] answer = new String[2];
-    answer[SYSTEM_PARTICLES_INDEX] = sb.toString();
-    answer[KINETIC_ENERGY_INDEX] = String.valueOf(kineticEnergy);
-
-    return answer;
+    sb      .append(id).append('\t')
+            // type
+            .append(id).append('\t')
+            // position
+            .append(x).append('\t').append(y).append('\t')
+            // velocity
+            .append(vx).append('\t').append(vy).append('\t')
+            // R G B colors
+            .append(r).append('\t')
+            .append(g).append('\t')
+            .append(b).append('\t')
+            // radio
+            .append(radio).append('\n');
   }
 
   /**
@@ -667,12 +1460,12 @@ public class Main {
    * @param outputFile -
    */
   private static void generateOvitoFile(final String staticFile, final String outputFile, final double opening) {
-    final Path pathToStaticDatFile = Paths.get(staticFile);
-    final Path pathToOutputDatFile = Paths.get(outputFile);
-    final Path pathToGraphicsFile = Paths.get(DESTINATION_FOLDER, OVITO_FILE);
+    final Path pathToStaticDatFile = path(staticFile);
+    final Path pathToOutputDatFile = path(outputFile);
+    final Path pathToGraphicsFile = path(DESTINATION_FOLDER, OVITO_FILE);
 
     // save data to a new file
-    final File dataFolder = new File(DESTINATION_FOLDER);
+    final File dataFolder = path(DESTINATION_FOLDER).toFile();
     //noinspection ResultOfMethodCallIgnored
     dataFolder.mkdirs(); // tries to make directories for the .dat files
 
@@ -681,6 +1474,11 @@ public class Main {
       return;
     }
 
+    if (isSnapshotFile(pathToOutputDatFile)) {
+      generateOvitoFile(pathToOutputDatFile, pathToGraphicsFile, opening);
+      return;
+    }
+
     Stream<String> staticDatStream = null;
     Stream<String> outputDatStream = null;
 
@@ -705,7 +1503,6 @@ public class Main {
       final double L, W;
       final Iterator<String> staticDatIterator;
       final Iterator<String> outputDatIterator;
-      final StringBuilder sb = new StringBuilder();
 
       final StaticData staticData = loadStaticFile(staticFile);
 
@@ -722,126 +1519,10 @@ public class Main {
       L = staticData.L;
       W = staticData.W;
       // Create virtual particles in the borders, in order for Ovito to show the whole board
-
-      sb      // id
-              .append(N+1).append('\t')
-              // type
-              .append(N+1).append('\t')
-              // position
-              .append(0).append('\t').append(0).append('\t')
-              // velocity
-              .append(0).append('\t').append(0).append('\t')
-              // color: black [ r, g, b ]
-              .append(0).append('\t').append(0).append('\t').append(0).append('\t')
-              // radio
-              .append(0)
-              .append('\n');
-
-      sb      // id
-              .append(N+2).append('\t')
-              // type
-              .append(N+2).append('\t')
-              // position
-              .append(W).append('\t').append(0).append('\t')
-              // velocity
-              .append(0).append('\t').append(0).append('\t')
-              // color: black [ r, g, b ]
-              .append(0).append('\t').append(0).append('\t').append(0).append('\t')
-              // radio
-              .append(0)
-              .append('\n');
-
-      sb      // id
-              .append(N+3).append('\t')
-              // type
-              .append(N+3).append('\t')
-              // position
-              .append(W).append('\t').append(L).append('\t')
-              // velocity
-              .append(0).append('\t').append(0).append('\t')
-              // color: black [ r, g, b ]
-              .append(0).append('\t').append(0).append('\t').append(0).append('\t')
-              // radio
-              .append(0)
-              .append('\n');
-
-      sb      // id
-              .append(N+4).append('\t')
-              // type
-              .append(N+4).append('\t')
-              // position
-              .append(0).append('\t').append(L).append('\t')
-              // velocity
-              .append(0).append('\t').append(0).append('\t')
-              // color: black [ r, g, b ]
-              .append(0).append('\t').append(0).append('\t').append(0).append('\t')
-              // radio
-              .append(0)
-              .append('\n');
-
-      final int middleDownBar = N+5, middleUpBar = N+6;
-      sb      // id
-              .append(N+5).append('\t')
-              // type
-              .append(middleDownBar).append('\t')
-              // position
-              .append(W/2).append('\t').append(0).append('\t')
-              // velocity
-              .append(0).append('\t').append(0).append('\t')
-              // color: black [ r, g, b ]
-              .append(0).append('\t').append(0).append('\t').append(0).append('\t')
-              // radio
-              .append(0.0001)
-              .append('\n');
-
-      sb      // id
-              .append(N+6).append('\t')
-              // type
-              .append(middleDownBar).append('\t')
-              // position
-              .append(W/2).append('\t').append((L-opening)/2).append('\t')
-              // velocity
-              .append(0).append('\t').append(0).append('\t')
-              // color: black [ r, g, b ]
-              .append(0).append('\t').append(0).append('\t').append(0).append('\t')
-              // radio
-              .append(0.0001)
-              .append('\n');
-
-      sb      // id
-              .append(N+7).append('\t')
-              // type
-              .append(middleUpBar).append('\t')
-              // position
-              .append(W/2).append('\t').append((L+opening)/2).append('\t')
-              // velocity
-              .append(0).append('\t').append(0).append('\t')
-              // color: black [ r, g, b ]
-              .append(0).append('\t').append(0).append('\t').append(0).append('\t')
-              // radio
-              .append(0.0001)
-              .append('\n');
-
-
-      sb      // id
-              .append(N+8).append('\t')
-              // type
-              .append(middleUpBar).append('\t')
-              // position
-              .append(W/2).append('\t').append(L).append('\t')
-              // velocity
-              .append(0).append('\t').append(0).append('\t')
-              // color: black [ r, g, b ]
-              .append(0).append('\t').append(0).append('\t').append(0).append('\t')
-              // radio
-              .append(0.0001)
-              .append('\n');
-
+      borderParticles = borderParticles(N, L, W, opening);
 
       stringN = String.valueOf(N+8);
 
-      borderParticles = sb.toString();
-
       while(outputDatIterator.hasNext()){
         // Write amount of particles (N)
         writer.write(stringN);
@@ -884,6 +1565,318 @@ public class Main {
     }
   }
 
+  /**
+   * Same as {@link #generateOvitoFile(String, String, double)}, but reading the snapshots from a binary
+   * snapshot file - that already has all the static data of the system - instead of from output.dat
+   */
+  private static void generateOvitoFile(final Path pathToSnapshotFile, final Path pathToGraphicsFile,
+                                        final double opening) {
+    try (final SnapshotFileReader reader = new SnapshotFileReader(pathToSnapshotFile);
+         final BufferedWriter writer = Files.newBufferedWriter(pathToGraphicsFile)) {
+      final int N = reader.getN();
+      final double W = reader.getW();
+      final String stringN = String.valueOf(N+8);
+      final String borderParticles = borderParticles(N, reader.getL(), W, opening);
+
+      final StringBuilder sb = new StringBuilder();
+      for (int k = 0 ; k < reader.frames() ; k++) {
+        final SnapshotFileReader.Frame frame = reader.frame(k);
+
+        sb.setLength(0);
+        // amount of particles and iteration number
+        sb.append(stringN).append(System.lineSeparator());
+        sb.append(frame.iteration()).append(System.lineSeparator());
+        for (int i = 0 ; i < N ; i++) {
+          appendParticle(sb, W, frame.id(i), frame.x(i), frame.y(i), frame.vx(i), frame.vy(i), frame.radio(i),
+                  frame.isColliding(i));
+        }
+        sb.append(borderParticles);
+
+        writer.write(sb.toString());
+      }
+    } catch(final IOException e) {
+      LOGGER.warn("Could not convert '{}' to '{}'. Caused by: ", pathToSnapshotFile, pathToGraphicsFile, e);
+      System.out.println("Could not convert '" + pathToSnapshotFile + "' to '" + pathToGraphicsFile + "'." +
+              "\nCheck the logs for a detailed info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
+    }
+  }
+
+  /**
+   * @return true if the given file starts as a binary snapshot file does ; false in other case, even if it can not
+   * be read
+   */
+  private static boolean isSnapshotFile(final Path pathToFile) {
+    try (final FileChannel channel = FileChannel.open(pathToFile, StandardOpenOption.READ)) {
+      final ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(SnapshotFileWriter.BYTE_ORDER);
+      while (magic.hasRemaining()) {
+        if (channel.read(magic) < 0) {
+          return false;
+        }
+      }
+      magic.flip();
+      return magic.getInt() == SnapshotFileWriter.MAGIC;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Creates virtual particles in the borders and at the middle wall, in order for Ovito to show the whole board
+   * @param N the number of real particles ; virtual particles' ids follow theirs
+   * @return the virtual particles, on the output.dat format
+   */
+  private static String borderParticles(final int N, final double L, final double W, final double opening) {
+    final StringBuilder sb = new StringBuilder();
+
+    sb      // id
+            .append(N+1).append('\t')
+            // type
+            .append(N+1).append('\t')
+            // position
+            .append(0).append('\t').append(0).append('\t')
+            // velocity
+            .append(0).append('\t').append(0).append('\t')
+            // color: black [ r, g, b ]
+            .append(0).append('\t').append(0).append('\t').append(0).append('\t')
+            // radio
+            .append(0)
+            .append('\n');
+
+    sb      // id
+            .append(N+2).append('\t')
+            // type
+            .append(N+2).append('\t')
+            // position
+            .append(W).append('\t').append(0).append('\t')
+            // velocity
+            .append(0).append('\t').append(0).append('\t')
+            // color: black [ r, g, b ]
+            .append(0).append('\t').append(0).append('\t').append(0).append('\t')
+            // radio
+            .append(0)
+            .append('\n');
+
+    sb      // id
+            .append(N+3).append('\t')
+            // type
+            .append(N+3).append('\t')
+            // position
+            .append(W).append('\t').append(L).append('\t')
+            // velocity
+            .append(0).append('\t').append(0).append('\t')
+            // color: black [ r, g, b ]
+            .append(0).append('\t').append(0).append('\t').append(0).append('\t')
+            // radio
+            .append(0)
+            .append('\n');
+
+    sb      // id
+            .append(N+4).append('\t')
+            // type
+            .append(N+4).append('\t')
+            // position
+            .append(0).append('\t').append(L).append('\t')
+            // velocity
+            .append(0).append('\t').append(0).append('\t')
+            // color: black [ r, g, b ]
+            .append(0).append('\t').append(0).append('\t').append(0).append('\t')
+            // radio
+            .append(0)
+            .append('\n');
+
+    final int middleDownBar = N+5, middleUpBar = N+6;
+    sb      // id
+            .append(N+5).append('\t')
+            // type
+            .append(middleDownBar).append('\t')
+            // position
+            .append(W/2).append('\t').append(0).append('\t')
+            // velocity
+            .append(0).append('\t').append(0).append('\t')
+            // color: black [ r, g, b ]
+            .append(0).append('\t').append(0).append('\t').append(0).append('\t')
+            // radio
+            .append(0.0001)
+            .append('\n');
+
+    sb      // id
+            .append(N+6).append('\t')
+            // type
+            .append(middleDownBar).append('\t')
+            // position
+            .append(W/2).append('\t').append((L-opening)/2).append('\t')
+            // velocity
+            .append(0).append('\t').append(0).append('\t')
+            // color: black [ r, g, b ]
+            .append(0).append('\t').append(0).append('\t').append(0).append('\t')
+            // radio
+            .append(0.0001)
+            .append('\n');
+
+    sb      // id
+            .append(N+7).append('\t')
+            // type
+            .append(middleUpBar).append('\t')
+            // position
+            .append(W/2).append('\t').append((L+opening)/2).append('\t')
+            // velocity
+            .append(0).append('\t').append(0).append('\t')
+            // color: black [ r, g, b ]
+            .append(0).append('\t').append(0).append('\t').append(0).append('\t')
+            // radio
+            .append(0.0001)
+            .append('\n');
+
+
+    sb      // id
+            .append(N+8).append('\t')
+            // type
+            .append(middleUpBar).append('\t')
+            // position
+            .append(W/2).append('\t').append(L).append('\t')
+            // velocity
+            .append(0).append('\t').append(0).append('\t')
+            // color: black [ r, g, b ]
+            .append(0).append('\t').append(0).append('\t').append(0).append('\t')
+            // radio
+            .append(0.0001)
+            .append('\n');
+
+    return sb.toString();
+  }
+
+  /**
+   * Parses the engine option, as given to the commands that run simulations
+   * @param options the command's options
+   * @return the chosen engine ; FULL_SCAN if none was chosen
+   */
+  private static GasDiffusion.Engine parseEngine(final Map<String, String> options) {
+    final String engineOption = options.getOrDefault("engine", "scan");
+    switch (engineOption) {
+      case "scan":
+        return GasDiffusion.Engine.FULL_SCAN;
+      case "queue":
+        return GasDiffusion.Engine.EVENT_QUEUE;
+      default:
+        System.out.println("[FAIL] - <engine> must be 'scan' or 'queue'. Try 'help' for more information.");
+        exit(BAD_ARGUMENT);
+        return null;
+    }
+  }
+
+  /**
+   * @param options the command's options
+   * @return the master seed given by the 'seed' option ; a new random one if none was given
+   */
+  private static long parseSeed(final Map<String, String> options) {
+    final String seedOption = options.get("seed");
+    if (seedOption == null) {
+      return RandomInRange.randomSeed();
+    }
+    try {
+      return Long.parseLong(seedOption);
+    } catch (NumberFormatException e) {
+      LOGGER.warn("[FAIL] - <seed> must be an integer. Caused by: ", e);
+      System.out.println("[FAIL] - <seed> must be an integer. Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+      return 0;
+    }
+  }
+
+  /**
+   * @param value the argument's value
+   * @param name the argument's name, used on the failure message
+   * @return the value as a positive integer ; the program exits if it is not one
+   */
+  private static int parsePositiveInt(final String value, final String name) {
+    int number = 0;
+    try {
+      number = Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      LOGGER.warn("[FAIL] - <{}> must be a positive integer. Caused by: ", name, e);
+    }
+    if (number < 1) {
+      System.out.println("[FAIL] - <" + name + "> must be a positive integer. Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+    }
+    return number;
+  }
+
+  /**
+   * @param value the argument's value
+   * @param name the argument's name, used on the failure message
+   * @return the value as a number ; the program exits if it is not one
+   */
+  private static double parseDouble(final String value, final String name) {
+    double number = 0;
+    try {
+      number = Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      LOGGER.warn("[FAIL] - <{}> must be a number. Caused by: ", name, e);
+      System.out.println("[FAIL] - <" + name + "> argument must be a number. Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+    }
+    return number;
+  }
+
+  /**
+   * @param value the argument's value: either a list of numbers separated by ',' or an inclusive range
+   *              given as 'from:to:step'
+   * @param name the argument's name, used on the failure message
+   * @return the values ; the program exits if they are not numbers
+   */
+  private static double[] parseValues(final String value, final String name) {
+    final List<Double> values = new ArrayList<>();
+    try {
+      final String[] range = value.split(":");
+      if (range.length == 3) {
+        // ranges are walked with exact decimals, so that '0.006:0.01:0.002' gives 0.008 and not 0.008000000000000002
+        final BigDecimal to = new BigDecimal(range[1]);
+        final BigDecimal step = new BigDecimal(range[2]);
+        if (step.signum() <= 0) {
+          throw new NumberFormatException("Step must be positive");
+        }
+        BigDecimal current = new BigDecimal(range[0]);
+        while (current.compareTo(to) <= 0) {
+          values.add(current.doubleValue());
+          current = current.add(step);
+        }
+      } else {
+        for (final String each : value.split(",")) {
+          values.add(Double.parseDouble(each));
+        }
+      }
+    } catch (NumberFormatException e) {
+      LOGGER.warn("[FAIL] - <{}> must be a list or a range of numbers. Caused by: ", name, e);
+      values.clear();
+    }
+    if (values.isEmpty()) {
+      System.out.println("[FAIL] - <" + name + "> must be a list or a range of numbers. Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+    }
+    return values.stream().mapToDouble(Double::doubleValue).toArray();
+  }
+
+  /**
+   * Parses the optional arguments of a command, given as '--name value' pairs after its mandatory arguments
+   * @param args the command's arguments
+   * @param from the index of the first optional argument
+   * @return a map from each option's name (without the leading '--') to its value
+   */
+  private static Map<String, String> parseOptions(final String[] args, final int from) {
+    final Map<String, String> options = new HashMap<>();
+    for (int i = from ; i < args.length ; i += 2) {
+      if (!args[i].startsWith("--") || i + 1 >= args.length) {
+        System.out.println("[FAIL] - Bad option '" + args[i] + "'. Try 'help' for more information.");
+        exit(BAD_ARGUMENT);
+      }
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    return options;
+  }
+
   /**
    * Try to delete a file, whether it exists or not
    * @param pathToFile the file path that refers to the file that will be deleted
@@ -909,12 +1902,13 @@ public class Main {
     private double speed;
     private double L;
     private double W;
+    private Long seed; // null if the file has none
   }
 
   private static StaticData loadStaticFile(final String filePath) {
     final StaticData staticData = new StaticData();
 
-    final File staticFile = new File(filePath);
+    final File staticFile = path(filePath).toFile();
     if (!staticFile.isFile()) {
       System.out.println("[FAIL] - File '" + filePath + "' is not a normal file. Aborting...");
       exit(NOT_A_FILE);
@@ -948,6 +1942,12 @@ public class Main {
       // get Width
       staticData.W = Double.valueOf(staticFileLines.next());
 
+      // get the seed, if any
+      if (staticFileLines.hasNext()) {
+        final String seed = staticFileLines.next().trim();
+        staticData.seed = seed.isEmpty() ? null : Long.valueOf(seed);
+      }
+
     } catch (final IOException e) {
       LOGGER.warn("An unexpected IO Exception occurred while reading the file {}. Caused by: ", staticFile, e);
       System.out.println("[FAIL] - An unexpected error occurred while reading the file '" + staticFile + "'. \n" +
@@ -979,8 +1979,12 @@ public class Main {
     return staticData;
   }
 
-  private static Set<Point> loadDynamicFile(final String fileName, final StaticData staticData) {
-    final File dynamicFile = new File(fileName);
+  /**
+   * @param context the context of the simulation, from which the particles get their ids
+   */
+  private static Set<Point> loadDynamicFile(final String fileName, final StaticData staticData,
+                                            final SimulationContext context) {
+    final File dynamicFile = path(fileName).toFile();
     if (!dynamicFile.isFile()) {
       System.out.println("[FAIL] - File '" + fileName + "' is not a normal file. Aborting...");
       exit(NOT_A_FILE);
@@ -1002,7 +2006,8 @@ public class Main {
         y = intScanner.nextDouble(); // caught InputMismatchException
         vx = intScanner.nextDouble();
         vy = intScanner.nextDouble();
-        points.add(Point.builder(x,y).radio(staticData.radios[i]).vx(vx).vy(vy).mass(staticData.mass).build());
+        points.add(Point.builder(x,y).id(context.nextId()).radio(staticData.radios[i]).vx(vx).vy(vy)
+                .mass(staticData.mass).build());
       }
 
     } catch (IOException e) {
@@ -0,0 +1,122 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Event;
+import ar.edu.itba.ss.gasdiffusion.models.ParticleStore;
+import ar.edu.itba.ss.gasdiffusion.models.SimulationContext;
+import ar.edu.itba.ss.gasdiffusion.models.WallEvent;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ *  Rebuilds a simulation from its event log, sampling it every dt2 time - that does not need to be the one with which
+ *  it was run. Particles move along straight lines between the recorded events, and their velocities after each event
+ *  are read from the log, so no collision is predicted again.
+ * <p>
+ *  Samples are taken at the exact multiples of dt2, up to the last recorded event, as the simulation takes them.
+ *  The pressure of each sample is the one exerted by the wall collisions since the previous sample ; the ones at the
+ *  exact time of a sample are counted on the next one.
+ */
+/* package-private */ class Replay {
+  /* package-private */ interface SampleListener {
+    /**
+     * @param store the particles at the time of the sample ; it changes as the replay goes on
+     * @param iteration the number of the sample ; 0 for the initial state
+     * @param time the time of the sample, that is, iteration * dt2
+     * @param fraction the fraction of particles on the left side of the box
+     * @param pressure the pressure exerted on the walls since the previous sample
+     * @param meanKineticEnergy the mean kinetic energy of the particles
+     */
+    void onSample(ParticleStore store, int iteration, double time, double fraction, double pressure,
+                  double meanKineticEnergy);
+  }
+
+  private final EventLogReader reader;
+  private final SimulationContext context;
+  private final double dt2;
+
+  /**
+   * @param reader the event log to replay
+   * @param dt2 the time between samples
+   * @throws IllegalArgumentException if dt2 is not positive
+   */
+  /* package-private */ Replay(final EventLogReader reader, final double dt2) {
+    if (dt2 <= 0) {
+      throw new IllegalArgumentException("dt2 should be > 0");
+    }
+    this.reader = reader;
+    this.context = new SimulationContext(reader.getL(), reader.getW(), reader.getOpening());
+    this.dt2 = dt2;
+  }
+
+  /**
+   * Replays the whole log
+   * @param listener the listener to be notified of each sample
+   * @return the number of samples taken, including the initial state
+   * @throws IOException if the log can not be read
+   */
+  /* package-private */ int run(final SampleListener listener) throws IOException {
+    final ParticleStore store = new ParticleStore(reader.getInitialPoints());
+
+    // the kinetic energy is updated by each event, instead of summed again from all the particles
+    double kineticEnergy = 0;
+    for (int p = 0 ; p < store.size() ; p++) {
+      kineticEnergy += store.kineticEnergy(p);
+    }
+
+    listener.onSample(store, 0, 0, leftSideFraction(store), 0, meanKineticEnergy(store, kineticEnergy));
+
+    double time = 0; // of the store, since the start of the simulation
+    double pressure = 0;
+    int iteration = 1;
+    double sampleTime = dt2;
+    while (reader.next()) {
+      final double eventTime = reader.time();
+      while (sampleTime <= eventTime) {
+        store.advance(sampleTime - time);
+        time = sampleTime;
+        listener.onSample(store, iteration, sampleTime, leftSideFraction(store), pressure,
+                meanKineticEnergy(store, kineticEnergy));
+        store.synchronize(); // so that rounding errors do not build up along the replay
+
+        pressure = 0;
+        iteration++;
+        sampleTime = iteration * dt2; // not summed, so that samples do not drift from the multiples of dt2
+      }
+
+      store.advance(eventTime - time);
+      time = eventTime;
+
+      final int i = reader.i();
+      final int j = reader.j();
+      kineticEnergy -= store.kineticEnergy(i);
+      store.redirect(i, reader.vxI(), reader.vyI());
+      kineticEnergy += store.kineticEnergy(i);
+      if (j == Event.NO_PARTICLE) {
+        pressure += WallEvent.pressure(store.mass(i), store.speed(i), context.wallLength(reader.wall()));
+      } else {
+        kineticEnergy -= store.kineticEnergy(j);
+        store.redirect(j, reader.vxJ(), reader.vyJ());
+        kineticEnergy += store.kineticEnergy(j);
+      }
+    }
+    return iteration;
+  }
+
+  private double leftSideFraction(final ParticleStore store) {
+    if (store.size() == 0) {
+      return 0;
+    }
+    int leftSideParticles = 0;
+    for (int p = 0 ; p < store.size() ; p++) {
+      if (store.x(p) <= context.getW()/2) {
+        leftSideParticles++;
+      }
+    }
+    return (double) leftSideParticles / store.size();
+  }
+
+  private static double meanKineticEnergy(final ParticleStore store, final double kineticEnergy) {
+    return store.size() == 0 ? 0 : kineticEnergy / store.size();
+  }
+}
@@ -0,0 +1,70 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Wall;
+
+/**
+ * An event predicted by the event queue engine, stored with its absolute time and the collision counters that the
+ * involved particles had at the moment of the prediction.
+ * <p>
+ * If any of these counters has changed when the event reaches the head of the queue, then one of the particles
+ * has already changed its trajectory and the event is no longer valid (it is stale).
+ * <p>
+ * Events are mutable so that the engine can recycle them once they leave the queue.
+ */
+/* package-private */ class ScheduledEvent implements Comparable<ScheduledEvent> {
+  /* package-private */ static final int NO_PARTICLE = -1;
+
+  /* package-private */ enum Type {
+    /**
+     * Two particles collide
+     */
+    PARTICLES,
+    /**
+     * A particle collides with a wall
+     */
+    WALL,
+    /**
+     * A particle moves to another cell of the grid; its velocity does not change
+     */
+    CELL_CROSSING
+  }
+
+  /* package-private */ double time;
+  /* package-private */ Type type;
+  /* package-private */ int i;
+  /* package-private */ int j;
+  /* package-private */ Wall wall;
+  /* package-private */ int cell;
+  /* package-private */ int collisionsI;
+  /* package-private */ int collisionsJ;
+
+  /**
+   * @param time the absolute time at which the event will happen
+   * @param type the type of the event
+   * @param i the particle for which the event was predicted
+   * @param j the other particle of a PARTICLES event ; NO_PARTICLE in other case
+   * @param wall the wall of a WALL event ; null in other case
+   * @param cell the cell reached on a CELL_CROSSING event ; CellGrid.NO_CELL in other case
+   * @param collisionsI the collision counter of particle i when the event was predicted
+   * @param collisionsJ the collision counter of particle j when the event was predicted
+   * @return this same event
+   */
+  /* package-private */ ScheduledEvent set(final double time, final Type type, final int i, final int j,
+                                           final Wall wall, final int cell,
+                                           final int collisionsI, final int collisionsJ) {
+    this.time = time;
+    this.type = type;
+    this.i = i;
+    this.j = j;
+    this.wall = wall;
+    this.cell = cell;
+    this.collisionsI = collisionsI;
+    this.collisionsJ = collisionsJ;
+    return this;
+  }
+
+  @Override
+  public int compareTo(final ScheduledEvent otherEvent) {
+    return Double.compare(this.time, otherEvent.time);
+  }
+}
@@ -0,0 +1,418 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs a whole gas diffusion simulation: the system evolves until half of the particles are at each side of the box
+ * (the equilibrium), and then for some snapshots more, over which the mean pressure is measured. Either a fixed number
+ * of them, or as many as needed for the mean pressure and fraction to reach a given relative error, estimated by
+ * batch means.
+ * <p>
+ * The distributions of the distances and the velocities of the particles may also be measured over those snapshots.
+ * <p>
+ * A snapshot of the system is taken at every multiple of dt2, and given to a listener, so that the same simulation can
+ * be either persisted to files or just run in memory. Snapshots are taken at those exact times - with the particles
+ * moved along their straight lines since their last event - and not at the first event after them, so there is one
+ * snapshot for each multiple of dt2 even if there is no event between two of them.
+ */
+/* package-private */ class Simulation {
+  /* package-private */ static final long MAX_TIME_AFTER_EQUILIBRIUM = 100;
+  /**
+   * The number of snapshots after the equilibrium at which the simulation stops even if the relative error
+   * has not been reached
+   */
+  /* package-private */ static final long MAX_TIME_AFTER_EQUILIBRIUM_FOR_ERROR = 100 * MAX_TIME_AFTER_EQUILIBRIUM;
+  // the error is not trusted until there are enough batches, and they are long enough to be nearly independent
+  private static final int MIN_BATCHES = BatchMeans.MAX_BATCHES / 2;
+
+  /* package-private */ interface SnapshotListener {
+    /**
+     * @param systemData the system's state at the moment of the snapshot
+     * @param iteration the number of the snapshot
+     * @param systemTime the simulation time at which the snapshot was taken: iteration * dt2, or the time of the
+     *                   last event if dt2 is 0
+     */
+    void onSnapshot(GasDiffusion.SystemData systemData, int iteration, double systemTime);
+  }
+
+  /* package-private */ interface CheckpointListener {
+    /**
+     * Called right after a snapshot, when the simulation can be resumed from the given progress
+     * @param progress the progress of the simulation ; it changes as the simulation goes on
+     */
+    void onCheckpoint(Progress progress);
+  }
+
+  private static final SnapshotListener NO_LISTENER = (systemData, iteration, systemTime) -> {};
+  private static final CheckpointListener NO_CHECKPOINTS = progress -> {};
+
+  private final GasDiffusion gasDiffusion;
+  private final double dt2;
+  private final double relativeError;
+
+  /**
+   * Builds a simulation that runs for {@link #MAX_TIME_AFTER_EQUILIBRIUM} snapshots after the equilibrium
+   * @param gasDiffusion the engine that moves the system from one event to the next one
+   * @param dt2 the time between snapshots
+   */
+  /* package-private */ Simulation(final GasDiffusion gasDiffusion, final double dt2) {
+    this(gasDiffusion, dt2, 0);
+  }
+
+  /**
+   * @param gasDiffusion the engine that moves the system from one event to the next one
+   * @param dt2 the time between snapshots
+   * @param relativeError the relative standard error of the mean pressure and fraction after the equilibrium at
+   *                      which the simulation stops - or after {@link #MAX_TIME_AFTER_EQUILIBRIUM_FOR_ERROR}
+   *                      snapshots ; 0 to stop after {@link #MAX_TIME_AFTER_EQUILIBRIUM} snapshots
+   */
+  /* package-private */ Simulation(final GasDiffusion gasDiffusion, final double dt2, final double relativeError) {
+    this.gasDiffusion = gasDiffusion;
+    this.dt2 = dt2;
+    this.relativeError = relativeError;
+  }
+
+  /**
+   * Runs the simulation without taking snapshots
+   * @see #run(List, SnapshotListener)
+   */
+  /* package-private */ Result run(final List<Point> initialPoints) {
+    return run(initialPoints, NO_LISTENER);
+  }
+
+  /**
+   * Runs the simulation. Snapshots are numbered from 1, as the initial state is considered to be the snapshot 0.
+   * @param initialPoints the particles of the system at time 0
+   * @param listener the listener to be notified of each snapshot
+   * @return the equilibrium conditions of the system
+   * @throws IllegalStateException if the particles never collide, so the system can not evolve
+   */
+  /* package-private */ Result run(final List<Point> initialPoints, final SnapshotListener listener) {
+    return run(new Progress(initialPoints), listener, 0, NO_CHECKPOINTS);
+  }
+
+  /**
+   * Runs the simulation from the given progress: either a new one, or one given to a checkpoint listener
+   * - and restored together with the state of the engine - to resume a simulation that was stopped
+   * @param progress the progress from which to run ; it is updated as the simulation goes on
+   * @param listener the listener to be notified of each snapshot
+   * @param checkpointInterval the number of snapshots between checkpoints ; 0 for no checkpoints
+   * @param checkpointListener the listener to be notified of each checkpoint
+   * @return the equilibrium conditions of the system
+   * @throws IllegalStateException if the particles never collide, so the system can not evolve
+   */
+  /* package-private */ Result run(final Progress progress, final SnapshotListener listener,
+                                   final int checkpointInterval, final CheckpointListener checkpointListener) {
+    final GasDiffusion.Sampler sampler = tc -> takeSnapshots(progress, progress.systemTime + tc, listener);
+
+    GasDiffusion.SystemData systemData = null;
+    while (!isFinished(progress)) {
+      final int firstIteration = progress.iteration;
+      systemData = gasDiffusion.run(progress.points, sampler);
+
+      progress.points = systemData.getParticles();
+      if (progress.points.isEmpty()) { // there was no collision indeed
+        throw new IllegalStateException("There is no collision at any time with the given parameters");
+      }
+
+      progress.systemTime += systemData.getCollisionTime();
+      if (dt2 == 0 && !isFinished(progress)) { // a snapshot after every event
+        takeSnapshot(progress, systemData, progress.systemTime, listener);
+      }
+
+      if (!progress.equilibrium && systemData.getLeftSideFraction() <= 0.5) {
+        progress.equilibrium = true;
+        progress.eqIteration = progress.iteration;
+        progress.eqSystemTime = progress.systemTime;
+        systemData.resetTotalPressure();
+      }
+
+      // a checkpoint is written if any of the snapshots of this event is a multiple of the interval ;
+      // a finished simulation has nothing to resume
+      if (checkpointInterval > 0
+              && (progress.iteration - 1) / checkpointInterval > (firstIteration - 1) / checkpointInterval
+              && !isFinished(progress)) {
+        checkpointListener.onCheckpoint(progress);
+      }
+    }
+
+    return new Result(progress.eqIteration, progress.eqSystemTime,
+            progress.lastSnapshotTime - progress.eqSystemTime, systemData, progress.timeAfterEquilibrium,
+            progress.pressures, progress.fractions, progress.distributions, relativeError > 0);
+  }
+
+  /**
+   * Takes a snapshot at each multiple of dt2 up to the time of the next events, right before they are run
+   * @param eventsTime the simulation time of the next events
+   */
+  private void takeSnapshots(final Progress progress, final double eventsTime, final SnapshotListener listener) {
+    if (dt2 == 0) {
+      return;
+    }
+    double snapshotTime;
+    // each snapshot time is a multiple of dt2, and not a sum of them, so that snapshots do not drift from them
+    while (!isFinished(progress) && (snapshotTime = progress.iteration * dt2) <= eventsTime) {
+      takeSnapshot(progress, gasDiffusion.sample(eventsTime - snapshotTime), snapshotTime, listener);
+    }
+  }
+
+  private void takeSnapshot(final Progress progress, final GasDiffusion.SystemData systemData,
+                            final double snapshotTime, final SnapshotListener listener) {
+    listener.onSnapshot(systemData, progress.iteration, snapshotTime); // save the current configuration
+    progress.iteration++;
+    if (progress.equilibrium) {
+      progress.timeAfterEquilibrium++;
+      // the pressure of a snapshot at the same time as the previous one - i.e., of simultaneous events when dt2 is 0 -
+      // can not be divided by its interval, so it is carried to the next one
+      progress.pendingPressure += systemData.getCurrentPressure();
+      if (snapshotTime > progress.lastSnapshotTime) {
+        progress.pressures.add(progress.pendingPressure / (snapshotTime - progress.lastSnapshotTime));
+        progress.pendingPressure = 0;
+      }
+      progress.fractions.add(systemData.getLeftSideFraction());
+      if (progress.distributions != null) {
+        progress.distributions.add(systemData.getParticles());
+      }
+    }
+    systemData.resetCurrentPressure(); // reset pressure for the new iteration
+    progress.lastSnapshotTime = snapshotTime;
+  }
+
+  private boolean isFinished(final Progress progress) {
+    if (!progress.equilibrium) {
+      return false;
+    }
+    if (relativeError <= 0) {
+      return progress.timeAfterEquilibrium >= MAX_TIME_AFTER_EQUILIBRIUM;
+    }
+    return progress.timeAfterEquilibrium >= MAX_TIME_AFTER_EQUILIBRIUM_FOR_ERROR
+            || isConverged(progress.pressures) && isConverged(progress.fractions);
+  }
+
+  /**
+   * The batch means are taken as independent when their lag-1 autocorrelation is not significantly positive: the
+   * autocorrelation of n independent values has a standard deviation of about 1/sqrt(n)
+   */
+  private boolean isConverged(final BatchMeans batchMeans) {
+    return batchMeans.batches() >= MIN_BATCHES
+            && batchMeans.autocorrelation() <= 2 / Math.sqrt(batchMeans.batches())
+            && batchMeans.relativeError() <= relativeError;
+  }
+
+  /**
+   * <p>
+   *  How far a simulation has gone: the system evolves until the equilibrium is reached, and then for some
+   *  snapshots more, on which the pressure and the fraction are measured.
+   * <p>
+   *  The particles are the ones returned by the engine on its last event ; the rest of the engine's state
+   *  - as the accumulated pressure - is kept by the engine itself.
+   */
+  /* package-private */ static class Progress {
+    private List<Point> points;
+    private double systemTime;
+    private int iteration; // the number of the next snapshot
+    private boolean equilibrium;
+    private int eqIteration;
+    private double eqSystemTime;
+    private long timeAfterEquilibrium;
+    private double lastSnapshotTime;
+    private double pendingPressure; // of the snapshots since the last one whose pressure was measured
+    private BatchMeans pressures = new BatchMeans(); // of each snapshot after the equilibrium
+    private BatchMeans fractions = new BatchMeans();
+    private Distributions distributions; // of the snapshots after the equilibrium ; null if they are not measured
+
+    /**
+     * @param initialPoints the particles of the system at time 0
+     */
+    /* package-private */ Progress(final List<Point> initialPoints) {
+      this(initialPoints, null);
+    }
+
+    /**
+     * @param initialPoints the particles of the system at time 0
+     * @param distributions the histograms on which the snapshots after the equilibrium are added ; null for none
+     */
+    /* package-private */ Progress(final List<Point> initialPoints, final Distributions distributions) {
+      this.points = initialPoints;
+      this.iteration = 1;
+      this.distributions = distributions;
+    }
+
+    private Progress() {
+    }
+
+    /* package-private */ List<Point> getPoints() {
+      return points;
+    }
+
+    /**
+     * @return the simulation time of the last event run
+     */
+    /* package-private */ double getSystemTime() {
+      return systemTime;
+    }
+
+    /**
+     * @return the number of the last snapshot taken
+     */
+    /* package-private */ int getLastIteration() {
+      return iteration - 1;
+    }
+
+    /**
+     * Writes all the progress but the particles, that are written together with the engine's state
+     */
+    /* package-private */ void write(final DataOutput out) throws IOException {
+      out.writeDouble(systemTime);
+      out.writeInt(iteration);
+      out.writeBoolean(equilibrium);
+      out.writeInt(eqIteration);
+      out.writeDouble(eqSystemTime);
+      out.writeLong(timeAfterEquilibrium);
+      out.writeDouble(lastSnapshotTime);
+      out.writeDouble(pendingPressure);
+      pressures.write(out);
+      fractions.write(out);
+      out.writeBoolean(distributions != null);
+      if (distributions != null) {
+        distributions.write(out);
+      }
+    }
+
+    /**
+     * @param points the particles restored together with the engine's state
+     * @return the progress written by {@link #write(DataOutput)}
+     */
+    /* package-private */ static Progress read(final DataInput in, final List<Point> points) throws IOException {
+      final Progress progress = new Progress();
+      progress.points = points;
+      progress.systemTime = in.readDouble();
+      progress.iteration = in.readInt();
+      progress.equilibrium = in.readBoolean();
+      progress.eqIteration = in.readInt();
+      progress.eqSystemTime = in.readDouble();
+      progress.timeAfterEquilibrium = in.readLong();
+      progress.lastSnapshotTime = in.readDouble();
+      progress.pendingPressure = in.readDouble();
+      progress.pressures = BatchMeans.read(in);
+      progress.fractions = BatchMeans.read(in);
+      if (in.readBoolean()) {
+        progress.distributions = Distributions.read(in);
+      }
+      return progress;
+    }
+  }
+
+  /**
+   * The conditions of the system when it reached the equilibrium
+   */
+  /* package-private */ static class Result {
+    private final int eqIteration;
+    private final double eqTime;
+    private final double timeSinceEq;
+    private final GasDiffusion.SystemData systemData;
+    private final long snapshotsSinceEq;
+    private final BatchMeans pressures;
+    private final BatchMeans fractions;
+    private final Distributions distributions;
+    private final boolean snapshotsPressure; // true if the mean pressure is the one whose error is estimated
+
+    private Result(final int eqIteration, final double eqTime, final double timeSinceEq,
+                   final GasDiffusion.SystemData systemData, final long snapshotsSinceEq,
+                   final BatchMeans pressures, final BatchMeans fractions, final Distributions distributions,
+                   final boolean snapshotsPressure) {
+      this.eqIteration = eqIteration;
+      this.eqTime = eqTime;
+      this.timeSinceEq = timeSinceEq;
+      this.systemData = systemData;
+      this.snapshotsSinceEq = snapshotsSinceEq;
+      this.pressures = pressures;
+      this.fractions = fractions;
+      this.distributions = distributions;
+      this.snapshotsPressure = snapshotsPressure;
+    }
+
+    /**
+     * @return the number of the snapshot at which the equilibrium was reached
+     */
+    /* package-private */ int getEqIteration() {
+      return eqIteration;
+    }
+
+    /**
+     * @return the simulation time at which the equilibrium was reached
+     */
+    /* package-private */ double getEqTime() {
+      return eqTime;
+    }
+
+    /**
+     * @return the simulation time elapsed since the equilibrium was reached until the last snapshot
+     */
+    /* package-private */ double getTimeSinceEq() {
+      return timeSinceEq;
+    }
+
+    /**
+     * @return the mean pressure since the equilibrium was reached ; 0 if no time has elapsed since then.
+     *          If the simulation ran until a relative error was reached, it is the mean of the pressures of the
+     *          snapshots since then, so that {@link #getPressureRelativeError()} is the error of this same value
+     */
+    /* package-private */ double getMeanPressure() {
+      if (snapshotsPressure) {
+        return pressures.mean();
+      }
+      return timeSinceEq > 0 ? systemData.getTotalPressure() / timeSinceEq : 0;
+    }
+
+    /**
+     * @return the number of snapshots taken since the equilibrium was reached
+     */
+    /* package-private */ long getSnapshotsSinceEq() {
+      return snapshotsSinceEq;
+    }
+
+    /**
+     * @return the relative standard error of the mean pressure of the snapshots since the equilibrium was reached ;
+     *          infinite if there were not enough of them to estimate it
+     */
+    /* package-private */ double getPressureRelativeError() {
+      return pressures.relativeError();
+    }
+
+    /**
+     * @return the mean fraction of particles on the left side on the snapshots since the equilibrium was reached
+     */
+    /* package-private */ double getMeanFraction() {
+      return fractions.mean();
+    }
+
+    /**
+     * @return the relative standard error of {@link #getMeanFraction()} ; infinite if there were not enough
+     *          snapshots to estimate it
+     */
+    /* package-private */ double getFractionRelativeError() {
+      return fractions.relativeError();
+    }
+
+    /**
+     * @return the distributions of the distances and the velocities of the particles on the snapshots since the
+     *          equilibrium was reached ; null if they were not measured
+     */
+    /* package-private */ Distributions getDistributions() {
+      return distributions;
+    }
+
+    /**
+     * @return the system's state at the end of the simulation
+     */
+    /* package-private */ GasDiffusion.SystemData getSystemData() {
+      return systemData;
+    }
+  }
+}
@@ -0,0 +1,275 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ *  Counters and latency histograms of the hot paths of the simulation: the steps of the engine, the collision
+ *  predictions and the snapshots. They are exposed as an MBean, and summarized on the log periodically.
+ * <p>
+ *  Metrics are enabled by starting the JVM with {@code -Dgasdiffusion.metrics=<seconds>}, the period of the log
+ *  summary. As {@link #ENABLED} is a constant, every instrumented block is guarded by it, and so it is removed by the
+ *  JIT compiler when metrics are disabled.
+ * <p>
+ *  Simulations that run at the same time - as the realizations of an ensemble - share the same metrics.
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SimulationMetrics.class);
+  private static final String OBJECT_NAME = "ar.edu.itba.ss.gasdiffusion:type=SimulationMetrics";
+
+  /* package-private */ static final long PERIOD = Long.getLong("gasdiffusion.metrics", 0);
+  /* package-private */ static final boolean ENABLED = PERIOD > 0;
+  /* package-private */ static final SimulationMetrics INSTANCE = new SimulationMetrics();
+
+  private final LongAdder particleCollisions = new LongAdder();
+  private final LongAdder wallCollisions = new LongAdder();
+  private final LongAdder middleWallCollisions = new LongAdder();
+  private final LongAdder cellCrossings = new LongAdder();
+  private final LongAdder staleEvents = new LongAdder();
+  private final LongAccumulator maxQueueSize = new LongAccumulator(Math::max, 0);
+  private volatile int queueSize;
+
+  private final LatencyHistogram steps = new LatencyHistogram();
+  private final LatencyHistogram predictions = new LatencyHistogram();
+  private final LatencyHistogram snapshots = new LatencyHistogram();
+  private final LatencyHistogram snapshotWrites = new LatencyHistogram();
+
+  private ScheduledExecutorService summaryExecutor;
+  private long lastSteps;
+
+  /* package-private */ SimulationMetrics() {
+  }
+
+  /**
+   * Registers the MBean and starts logging the summary every {@link #PERIOD} seconds.
+   * Nothing is done if metrics are disabled.
+   */
+  /* package-private */ synchronized void start() {
+    if (!ENABLED || summaryExecutor != null) {
+      return;
+    }
+
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    } catch (final JMException e) {
+      LOGGER.warn("Simulation metrics could not be registered as an MBean. Caused by: ", e);
+    }
+
+    summaryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "metrics-summary");
+      thread.setDaemon(true);
+      return thread;
+    });
+    summaryExecutor.scheduleAtFixedRate(() -> LOGGER.info(summary()), PERIOD, PERIOD, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Stops logging the summary, and logs it one last time
+   */
+  /* package-private */ synchronized void stop() {
+    if (summaryExecutor == null) {
+      return;
+    }
+    summaryExecutor.shutdownNow();
+    summaryExecutor = null;
+    LOGGER.info(summary());
+  }
+
+  /**
+   * @return a single line with the counters and the latencies, and the steps per second since the previous one
+   */
+  /* package-private */ synchronized String summary() {
+    final long steps = getSteps();
+    final double stepsPerSecond = (double) (steps - lastSteps) / PERIOD;
+    lastSteps = steps;
+
+    return String.format("Metrics - steps: %d (%.0f/s) ; particles: %d ; walls: %d ; middle wall: %d ; " +
+                    "cell crossings: %d ; stale: %d ; queue: %d (max %d) ; step: %s ; prediction: %s ; " +
+                    "snapshot: %s ; snapshot write: %s",
+            steps, stepsPerSecond, getParticleCollisions(), getWallCollisions(), getMiddleWallCollisions(),
+            getCellCrossings(), getStaleEvents(), getQueueSize(), getMaxQueueSize(), summary(this.steps),
+            summary(predictions), summary(snapshots), summary(snapshotWrites));
+  }
+
+  private static String summary(final LatencyHistogram histogram) {
+    return String.format("mean %.0fns, p99 %dns, max %dns",
+            histogram.meanNanos(), histogram.percentileNanos(0.99), histogram.maxNanos());
+  }
+
+  /* package-private */ void recordStep(final long nanos) {
+    steps.record(nanos);
+  }
+
+  /* package-private */ void recordPrediction(final long nanos) {
+    predictions.record(nanos);
+  }
+
+  /* package-private */ void recordSnapshot(final long nanos) {
+    snapshots.record(nanos);
+  }
+
+  /* package-private */ void recordSnapshotWrite(final long nanos) {
+    snapshotWrites.record(nanos);
+  }
+
+  /* package-private */ void countParticleCollision() {
+    particleCollisions.increment();
+  }
+
+  /* package-private */ void countWallCollision() {
+    wallCollisions.increment();
+  }
+
+  /* package-private */ void countMiddleWallCollision() {
+    middleWallCollisions.increment();
+  }
+
+  /* package-private */ void countCellCrossing() {
+    cellCrossings.increment();
+  }
+
+  /* package-private */ void countStaleEvent() {
+    staleEvents.increment();
+  }
+
+  /* package-private */ void recordQueueSize(final int size) {
+    queueSize = size;
+    maxQueueSize.accumulate(size);
+  }
+
+  @Override
+  public long getSteps() {
+    return steps.count();
+  }
+
+  @Override
+  public long getParticleCollisions() {
+    return particleCollisions.sum();
+  }
+
+  @Override
+  public long getWallCollisions() {
+    return wallCollisions.sum();
+  }
+
+  @Override
+  public long getMiddleWallCollisions() {
+    return middleWallCollisions.sum();
+  }
+
+  @Override
+  public long getCellCrossings() {
+    return cellCrossings.sum();
+  }
+
+  @Override
+  public long getStaleEvents() {
+    return staleEvents.sum();
+  }
+
+  @Override
+  public int getQueueSize() {
+    return queueSize;
+  }
+
+  @Override
+  public int getMaxQueueSize() {
+    return (int) maxQueueSize.get();
+  }
+
+  @Override
+  public double getStepMeanNanos() {
+    return steps.meanNanos();
+  }
+
+  @Override
+  public long getStepP99Nanos() {
+    return steps.percentileNanos(0.99);
+  }
+
+  @Override
+  public long getStepMaxNanos() {
+    return steps.maxNanos();
+  }
+
+  @Override
+  public long getPredictions() {
+    return predictions.count();
+  }
+
+  @Override
+  public double getPredictionMeanNanos() {
+    return predictions.meanNanos();
+  }
+
+  @Override
+  public long getPredictionP99Nanos() {
+    return predictions.percentileNanos(0.99);
+  }
+
+  @Override
+  public long getPredictionMaxNanos() {
+    return predictions.maxNanos();
+  }
+
+  @Override
+  public long getSnapshots() {
+    return snapshots.count();
+  }
+
+  @Override
+  public double getSnapshotMeanNanos() {
+    return snapshots.meanNanos();
+  }
+
+  @Override
+  public long getSnapshotP99Nanos() {
+    return snapshots.percentileNanos(0.99);
+  }
+
+  @Override
+  public long getSnapshotMaxNanos() {
+    return snapshots.maxNanos();
+  }
+
+  @Override
+  public double getSnapshotWriteMeanNanos() {
+    return snapshotWrites.meanNanos();
+  }
+
+  @Override
+  public long getSnapshotWriteP99Nanos() {
+    return snapshotWrites.percentileNanos(0.99);
+  }
+
+  @Override
+  public long getSnapshotWriteMaxNanos() {
+    return snapshotWrites.maxNanos();
+  }
+
+  @Override
+  public synchronized void reset() {
+    particleCollisions.reset();
+    wallCollisions.reset();
+    middleWallCollisions.reset();
+    cellCrossings.reset();
+    staleEvents.reset();
+    maxQueueSize.reset();
+    queueSize = 0;
+    steps.reset();
+    predictions.reset();
+    snapshots.reset();
+    snapshotWrites.reset();
+    lastSteps = 0;
+  }
+}
@@ -0,0 +1,84 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+/**
+ * Management interface of {@link SimulationMetrics}. Durations are in nanoseconds, and percentiles are upper bounds,
+ * known up to a factor of two.
+ */
+public interface SimulationMetricsMBean {
+  /**
+   * @return the number of times that the engine has run, one per collision
+   */
+  long getSteps();
+
+  long getParticleCollisions();
+
+  /**
+   * @return the number of collisions against the horizontal and the outer vertical walls
+   */
+  long getWallCollisions();
+
+  long getMiddleWallCollisions();
+
+  /**
+   * @return the number of cell crossings run by the event queue engine
+   */
+  long getCellCrossings();
+
+  /**
+   * @return the number of events discarded by the event queue engine because they were stale
+   */
+  long getStaleEvents();
+
+  /**
+   * @return the size of the event queue after the last step of the event queue engine
+   */
+  int getQueueSize();
+
+  int getMaxQueueSize();
+
+  double getStepMeanNanos();
+
+  long getStepP99Nanos();
+
+  long getStepMaxNanos();
+
+  /**
+   * @return the number of collision predictions: one per step for the full scan engine, and one per particle
+   *          whose events are predicted again for the event queue engine
+   */
+  long getPredictions();
+
+  double getPredictionMeanNanos();
+
+  long getPredictionP99Nanos();
+
+  long getPredictionMaxNanos();
+
+  /**
+   * @return the number of snapshots handed over to be written
+   */
+  long getSnapshots();
+
+  /**
+   * @return the mean time that the simulation thread spends on each snapshot, waiting for a free buffer included
+   */
+  double getSnapshotMeanNanos();
+
+  long getSnapshotP99Nanos();
+
+  long getSnapshotMaxNanos();
+
+  /**
+   * @return the mean time that the writer thread spends writing each snapshot
+   */
+  double getSnapshotWriteMeanNanos();
+
+  long getSnapshotWriteP99Nanos();
+
+  long getSnapshotWriteMaxNanos();
+
+  /**
+   * Sets every counter and histogram back to 0
+   */
+  void reset();
+}
@@ -0,0 +1,193 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static ar.edu.itba.ss.gasdiffusion.core.SnapshotFileWriter.*;
+
+/**
+ * <p>
+ *  Reads a file written by {@link SnapshotFileWriter}. The file is memory-mapped, so frames are read in place,
+ *  without copying nor parsing them.
+ * <p>
+ *  As a single mapping can not be larger than 2GB, the file is mapped on windows of whole frames,
+ *  each one the first time one of its frames is read.
+ */
+public class SnapshotFileReader implements Closeable {
+  private static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+  private final FileChannel channel;
+  private final int N;
+  private final double L;
+  private final double W;
+  private final double opening;
+  private final int frameSize;
+  private final int frames;
+  private final int framesPerWindow;
+  private final MappedByteBuffer[] windows;
+
+  /**
+   * @param path the file to read
+   * @throws IOException if the file can not be read, or it is not a snapshot file
+   */
+  public SnapshotFileReader(final Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) < 0) {
+        channel.close();
+        throw new IOException("'" + path + "' is too short to be a snapshot file");
+      }
+    }
+    header.flip();
+
+    if (header.getInt() != MAGIC) {
+      channel.close();
+      throw new IOException("'" + path + "' is not a snapshot file");
+    }
+    final int version = header.getInt();
+    if (version != VERSION) {
+      channel.close();
+      throw new IOException("'" + path + "' has an unsupported version: " + version);
+    }
+    this.N = header.getInt();
+    this.L = header.getDouble();
+    this.W = header.getDouble();
+    this.opening = header.getDouble();
+
+    this.frameSize = frameSize(N);
+    // a frame that was being written when the simulation stopped is ignored
+    this.frames = (int) ((channel.size() - HEADER_SIZE) / frameSize);
+    this.framesPerWindow = (int) Math.max(1, MAX_WINDOW_SIZE / frameSize);
+    this.windows = new MappedByteBuffer[(frames + framesPerWindow - 1) / framesPerWindow];
+  }
+
+  /**
+   * @return the number of particles of every frame
+   */
+  public int getN() {
+    return N;
+  }
+
+  public double getL() {
+    return L;
+  }
+
+  public double getW() {
+    return W;
+  }
+
+  public double getOpening() {
+    return opening;
+  }
+
+  /**
+   * @return the number of frames of the file
+   */
+  public int frames() {
+    return frames;
+  }
+
+  /**
+   * @param k the index of the frame, from 0 to frames() - 1
+   * @return a view of the k-th frame ; it is valid until this reader is closed
+   * @throws IOException if the file can not be mapped
+   */
+  public Frame frame(final int k) throws IOException {
+    if (k < 0 || k >= frames) {
+      throw new IndexOutOfBoundsException("Frame " + k + " does not exist ; there are " + frames + " frames");
+    }
+
+    final int window = k / framesPerWindow;
+    if (windows[window] == null) {
+      final int windowFrames = Math.min(framesPerWindow, frames - window * framesPerWindow);
+      windows[window] = channel.map(FileChannel.MapMode.READ_ONLY,
+              HEADER_SIZE + (long) window * framesPerWindow * frameSize, (long) windowFrames * frameSize);
+      windows[window].order(BYTE_ORDER);
+    }
+    return new Frame(windows[window], (k % framesPerWindow) * frameSize);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * A single snapshot of the system. Particles are given by their index on the frame, from 0 to N - 1.
+   */
+  public class Frame {
+    private final ByteBuffer buffer;
+    private final int idsStart;
+    private final int xStart;
+    private final int yStart;
+    private final int vxStart;
+    private final int vyStart;
+    private final int radioStart;
+    private final int collidingStart;
+    private final int start;
+
+    private Frame(final ByteBuffer buffer, final int start) {
+      this.buffer = buffer;
+      this.start = start;
+      this.idsStart = start + Double.BYTES + Long.BYTES;
+      this.xStart = idsStart + N * Long.BYTES;
+      this.yStart = xStart + N * Double.BYTES;
+      this.vxStart = yStart + N * Double.BYTES;
+      this.vyStart = vxStart + N * Double.BYTES;
+      this.radioStart = vyStart + N * Double.BYTES;
+      this.collidingStart = radioStart + N * Double.BYTES;
+    }
+
+    /**
+     * @return the simulation time of the snapshot
+     */
+    public double time() {
+      return buffer.getDouble(start);
+    }
+
+    /**
+     * @return the number of the snapshot
+     */
+    public long iteration() {
+      return buffer.getLong(start + Double.BYTES);
+    }
+
+    public long id(final int i) {
+      return buffer.getLong(idsStart + i * Long.BYTES);
+    }
+
+    public double x(final int i) {
+      return buffer.getDouble(xStart + i * Double.BYTES);
+    }
+
+    public double y(final int i) {
+      return buffer.getDouble(yStart + i * Double.BYTES);
+    }
+
+    public double vx(final int i) {
+      return buffer.getDouble(vxStart + i * Double.BYTES);
+    }
+
+    public double vy(final int i) {
+      return buffer.getDouble(vyStart + i * Double.BYTES);
+    }
+
+    public double radio(final int i) {
+      return buffer.getDouble(radioStart + i * Double.BYTES);
+    }
+
+    /**
+     * @return whether the particle took part on the last event before the snapshot
+     */
+    public boolean isColliding(final int i) {
+      return buffer.get(collidingStart + i) != 0;
+    }
+  }
+}
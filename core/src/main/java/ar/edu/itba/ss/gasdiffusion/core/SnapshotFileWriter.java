@@ -0,0 +1,151 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * <p>
+ *  Writes snapshots of the system on a compact binary format, as an alternative to the text format of output.dat.
+ *  All values are little-endian.
+ * <p>
+ *  The file starts with a header:
+ *  <pre>
+ *    int    magic number ({@link #MAGIC})
+ *    int    format version ({@link #VERSION})
+ *    int    N, the number of particles of every frame
+ *    double L, the height of the box
+ *    double W, the width of the box
+ *    double opening, the size of the opening at the middle wall
+ *  </pre>
+ *  followed by frames of {@link #frameSize(int)} bytes each, one per snapshot:
+ *  <pre>
+ *    double   time
+ *    long     iteration
+ *    long[N]  ids
+ *    double[N] x
+ *    double[N] y
+ *    double[N] vx
+ *    double[N] vy
+ *    double[N] radios
+ *    byte[N]  collision flags: 1 if the particle took part on the last event, 0 in other case
+ *  </pre>
+ *  As all frames have the same size, any of them can be read without reading the previous ones.
+ *
+ * @see SnapshotFileReader
+ */
+public class SnapshotFileWriter implements Closeable {
+  /* package-private */ static final int MAGIC = 0x47445346; // "GDSF"
+  /* package-private */ static final int VERSION = 1;
+  /* package-private */ static final int HEADER_SIZE = 3 * Integer.BYTES + 3 * Double.BYTES;
+  /* package-private */ static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  private final FileChannel channel;
+  private final ByteBuffer frame;
+  private final int N;
+
+  /**
+   * Creates - or truncates - the given file, and writes its header
+   * @param path the file to write
+   * @param N the number of particles of every frame
+   * @param L the height of the box
+   * @param W the width of the box
+   * @param opening the size of the opening at the middle wall
+   * @throws IOException if the file can not be written
+   */
+  public SnapshotFileWriter(final Path path, final int N, final double L, final double W, final double opening)
+          throws IOException {
+    this.channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    this.N = N;
+    // the same buffer is used for every frame
+    this.frame = ByteBuffer.allocateDirect(frameSize(N)).order(BYTE_ORDER);
+
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+    header.putInt(MAGIC).putInt(VERSION).putInt(N).putDouble(L).putDouble(W).putDouble(opening);
+    header.flip();
+    writeFully(header);
+  }
+
+  /**
+   * Opens an existing file to append new frames to it
+   * @param path the file to write ; it must have been created by this class for the same N
+   * @param N the number of particles of every frame
+   * @throws IOException if the file can not be written, or it is too short to be a snapshot file
+   */
+  public SnapshotFileWriter(final Path path, final int N) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    if (channel.size() < HEADER_SIZE) {
+      channel.close();
+      throw new IOException("'" + path + "' is too short to be a snapshot file");
+    }
+    this.N = N;
+    this.frame = ByteBuffer.allocateDirect(frameSize(N)).order(BYTE_ORDER);
+  }
+
+  /**
+   * @param N the number of particles
+   * @return the size in bytes of each frame of a file of N particles
+   */
+  /* package-private */ static int frameSize(final int N) {
+    return Double.BYTES + Long.BYTES + N * (Long.BYTES + 6 * Double.BYTES + 1);
+  }
+
+  /**
+   * Appends a new frame to the file
+   * @param time the simulation time of the snapshot
+   * @param iteration the number of the snapshot
+   * @param particles the particles of the system ; there must be N of them
+   * @throws IOException if the file can not be written
+   */
+  public void write(final double time, final long iteration, final Collection<Point> particles) throws IOException {
+    if (particles.size() != N) {
+      throw new IllegalArgumentException("Each frame must have " + N + " particles, but got " + particles.size());
+    }
+
+    frame.clear();
+    frame.putDouble(time).putLong(iteration);
+
+    // each array is written on its own region of the frame
+    final int idsStart = frame.position();
+    final int xStart = idsStart + N * Long.BYTES;
+    final int yStart = xStart + N * Double.BYTES;
+    final int vxStart = yStart + N * Double.BYTES;
+    final int vyStart = vxStart + N * Double.BYTES;
+    final int radioStart = vyStart + N * Double.BYTES;
+    final int collidingStart = radioStart + N * Double.BYTES;
+
+    int i = 0;
+    for (final Point point : particles) {
+      frame.putLong(idsStart + i * Long.BYTES, point.id());
+      frame.putDouble(xStart + i * Double.BYTES, point.x());
+      frame.putDouble(yStart + i * Double.BYTES, point.y());
+      frame.putDouble(vxStart + i * Double.BYTES, point.vx());
+      frame.putDouble(vyStart + i * Double.BYTES, point.vy());
+      frame.putDouble(radioStart + i * Double.BYTES, point.radio());
+      frame.put(collidingStart + i, (byte) (point.isColliding() ? 1 : 0));
+      i++;
+    }
+
+    frame.position(0).limit(frame.capacity());
+    writeFully(frame);
+  }
+
+  private void writeFully(final ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
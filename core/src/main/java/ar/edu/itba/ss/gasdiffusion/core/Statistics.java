@@ -0,0 +1,43 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+/**
+ * Mean, standard deviation and minimum of a sample of values, as reported by the analysis scripts
+ */
+/* package-private */ class Statistics {
+  private final double mean;
+  private final double sd;
+  private final double min;
+
+  /**
+   * @param values the sample ; it must not be empty
+   */
+  /* package-private */ Statistics(final double[] values) {
+    double sum = 0;
+    double min = Double.POSITIVE_INFINITY;
+    for (final double value : values) {
+      sum += value;
+      min = Math.min(min, value);
+    }
+    this.mean = sum / values.length;
+    this.min = min;
+
+    // SD = sqrt(|x^2| - |x|^2), calculated as the mean of the squared deviations so as not to lose precision
+    double squaredDeviations = 0;
+    for (final double value : values) {
+      squaredDeviations += (value - mean) * (value - mean);
+    }
+    this.sd = Math.sqrt(squaredDeviations / values.length);
+  }
+
+  /* package-private */ double getMean() {
+    return mean;
+  }
+
+  /* package-private */ double getSD() {
+    return sd;
+  }
+
+  /* package-private */ double getMin() {
+    return min;
+  }
+}
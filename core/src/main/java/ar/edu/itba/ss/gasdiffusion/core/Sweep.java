@@ -0,0 +1,99 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.services.RandomInRange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs many realizations of every combination of the given parameters, all of them scheduled at once on the same
+ * work-stealing pool, so that threads are kept busy until the last realization of the last system has finished.
+ */
+/* package-private */ class Sweep {
+  private final List<Ensemble> systems;
+
+  /**
+   * Builds a system for each combination of the given values. Systems are ordered by speed, then by N,
+   * then by opening, then by radio, then by L and lastly by W.
+   * @param N the values for the number of particles
+   * @param mass the mass of each particle
+   * @param speeds the values for the initial speed of each particle
+   * @param radios the values for the radio of each particle
+   * @param Ls the values for the height of the box
+   * @param Ws the values for the width of the box
+   * @param openings the values for the size of the opening at the middle wall
+   * @param dt2 the time between snapshots
+   * @param engine the engine used by each realization
+   * @param seed the seed from which the seed of each system is taken
+   */
+  /* package-private */ Sweep(final int[] N, final double mass, final double[] speeds, final double[] radios,
+                              final double[] Ls, final double[] Ws, final double[] openings, final double dt2,
+                              final GasDiffusion.Engine engine, final long seed) {
+    final RandomInRange seeds = new RandomInRange(seed);
+    this.systems = new ArrayList<>();
+    for (final double speed : speeds) {
+      for (final int n : N) {
+        for (final double opening : openings) {
+          for (final double radio : radios) {
+            for (final double L : Ls) {
+              for (final double W : Ws) {
+                systems.add(new Ensemble(n, mass, speed, radio, L, W, opening, dt2, engine, seeds.nextSeed()));
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the systems of the sweep, in the order they are run
+   */
+  /* package-private */ List<Ensemble> getSystems() {
+    return systems;
+  }
+
+  /**
+   * @param realizations the number of realizations to run for each system
+   * @param threads the number of realizations that run at the same time
+   * @return for each system - in the same order as {@link #getSystems()} - the equilibrium conditions of its
+   *          realizations
+   * @throws IllegalStateException if a realization can not be run: either its particles could not be generated,
+   *                               or they never collide
+   * @throws InterruptedException if the current thread is interrupted while waiting for the realizations
+   */
+  /* package-private */ List<List<Ensemble.Realization>> run(final int realizations, final int threads)
+          throws InterruptedException {
+    final ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      final List<List<ForkJoinTask<Ensemble.Realization>>> tasks = new ArrayList<>(systems.size());
+      for (final Ensemble system : systems) {
+        final List<ForkJoinTask<Ensemble.Realization>> systemTasks = new ArrayList<>(realizations);
+        for (final RandomInRange random : system.streams(realizations)) {
+          systemTasks.add(pool.submit(() -> system.runRealization(random)));
+        }
+        tasks.add(systemTasks);
+      }
+
+      final List<List<Ensemble.Realization>> results = new ArrayList<>(systems.size());
+      for (final List<ForkJoinTask<Ensemble.Realization>> systemTasks : tasks) {
+        final List<Ensemble.Realization> systemResults = new ArrayList<>(realizations);
+        for (final ForkJoinTask<Ensemble.Realization> task : systemTasks) {
+          systemResults.add(task.get());
+        }
+        results.add(systemResults);
+      }
+      return results;
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class AsyncSnapshotWriterTest {
+	private static final int SNAPSHOTS = 100;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSnapshotsAreWrittenInOrder() throws IOException {
+		final Path datFile = folder.newFile("output.dat").toPath();
+		final Path graphicsFile = folder.newFile("i_t_fp_pre_temp.csv").toPath();
+
+		final StringBuilder expectedParticles = new StringBuilder();
+		final StringBuilder expectedData = new StringBuilder();
+		// more snapshots than buffers, so buffers must be recycled
+		try (final AsyncSnapshotWriter writer = new AsyncSnapshotWriter(datFile, graphicsFile, 2)) {
+			for (int i = 0 ; i < SNAPSHOTS ; i++) {
+				final AsyncSnapshotWriter.Snapshot snapshot = writer.acquire();
+				assertEquals(0, snapshot.particles().length());
+				assertEquals(0, snapshot.data().length());
+
+				snapshot.particles().append(i).append('\n').append("particle ").append(i).append('\n');
+				snapshot.data().append(i).append(",0.5\n");
+				expectedParticles.append(i).append('\n').append("particle ").append(i).append('\n');
+				expectedData.append(i).append(",0.5\n");
+				writer.submit(snapshot);
+			}
+		}
+
+		assertEquals(expectedParticles.toString(), new String(Files.readAllBytes(datFile), StandardCharsets.UTF_8));
+		assertEquals(expectedData.toString(), new String(Files.readAllBytes(graphicsFile), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testParticlesAreNotWrittenWithoutDatFile() throws IOException {
+		final Path graphicsFile = folder.getRoot().toPath().resolve("i_t_fp_pre_temp.csv");
+
+		try (final AsyncSnapshotWriter writer = new AsyncSnapshotWriter(null, graphicsFile, 1)) {
+			final AsyncSnapshotWriter.Snapshot snapshot = writer.acquire();
+			snapshot.data().append("0,0.5\n");
+			writer.submit(snapshot);
+		}
+
+		assertEquals("0,0.5\n", new String(Files.readAllBytes(graphicsFile), StandardCharsets.UTF_8));
+		assertFalse(Files.exists(folder.getRoot().toPath().resolve("output.dat")));
+	}
+}
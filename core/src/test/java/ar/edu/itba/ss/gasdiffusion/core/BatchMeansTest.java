@@ -0,0 +1,111 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchMeansTest {
+	private static final double L = 0.09;
+	private static final double W = 0.24;
+	private static final double OPENING = 0.01;
+
+	@Test
+	public void testBatchesAreMergedWhenFull() {
+		final BatchMeans batchMeans = new BatchMeans();
+		for (int i = 0 ; i < BatchMeans.MAX_BATCHES - 1 ; i++) {
+			batchMeans.add(i);
+		}
+		assertEquals(BatchMeans.MAX_BATCHES - 1, batchMeans.batches());
+
+		batchMeans.add(BatchMeans.MAX_BATCHES - 1);
+		assertEquals(BatchMeans.MAX_BATCHES / 2, batchMeans.batches());
+		assertEquals(BatchMeans.MAX_BATCHES, batchMeans.count());
+		assertEquals((BatchMeans.MAX_BATCHES - 1) / 2.0, batchMeans.mean(), 1e-12);
+	}
+
+	@Test
+	public void testConstantValuesHaveNoError() {
+		final BatchMeans batchMeans = new BatchMeans();
+		for (int i = 0 ; i < 100 ; i++) {
+			batchMeans.add(3);
+		}
+		assertEquals(3, batchMeans.mean(), 0);
+		assertEquals(0, batchMeans.relativeError(), 0);
+	}
+
+	@Test
+	public void testStandardErrorOfIndependentValues() {
+		final Random random = new Random(2016);
+		final BatchMeans batchMeans = new BatchMeans();
+		final int n = 10000;
+		for (int i = 0 ; i < n ; i++) {
+			batchMeans.add(random.nextDouble());
+		}
+
+		// the standard deviation of a uniform value is 1/sqrt(12) ; batch means estimate the error up to ~25%
+		final double expected = 1 / Math.sqrt(12) / Math.sqrt(n);
+		assertTrue(batchMeans.standardError() > expected / 2 && batchMeans.standardError() < expected * 2);
+		assertTrue(Math.abs(batchMeans.autocorrelation()) < 0.5);
+	}
+
+	@Test
+	public void testCorrelatedValuesNeedLongerBatches() {
+		final Random random = new Random(2016);
+		final BatchMeans batchMeans = new BatchMeans();
+		double value = 0;
+		for (int i = 0 ; i < 64 ; i++) {
+			value = 0.999 * value + random.nextGaussian();
+			batchMeans.add(value);
+		}
+		assertTrue(batchMeans.autocorrelation() > 0.5);
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		final BatchMeans batchMeans = new BatchMeans();
+		for (int i = 0 ; i < 100 ; i++) {
+			batchMeans.add(i % 7);
+		}
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		batchMeans.write(new DataOutputStream(bytes));
+		final BatchMeans read = BatchMeans.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		read.add(5);
+		batchMeans.add(5);
+		assertEquals(batchMeans.count(), read.count());
+		assertEquals(batchMeans.batches(), read.batches());
+		assertEquals(batchMeans.mean(), read.mean(), 0);
+		assertEquals(batchMeans.standardError(), read.standardError(), 0);
+	}
+
+	@Test
+	public void testSimulationStopsAtTheRelativeError() {
+		final double relativeError = 0.05;
+		final double dt2 = 0.5;
+		final List<Double> pressures = new ArrayList<>(); // of each snapshot, indexed by its iteration
+		final Simulation.Result result = new Simulation(new GasDiffusion(L, W, OPENING, GasDiffusion.Engine.EVENT_QUEUE),
+				dt2, relativeError).run(GasDiffusionTest.latticePoints(40, 0.0015, 0.01, 11),
+				(systemData, iteration, systemTime) -> pressures.add(systemData.getCurrentPressure() / dt2));
+
+		assertTrue(result.getSnapshotsSinceEq() < Simulation.MAX_TIME_AFTER_EQUILIBRIUM_FOR_ERROR);
+		assertTrue(result.getPressureRelativeError() <= relativeError);
+		assertTrue(result.getFractionRelativeError() <= relativeError);
+		assertEquals(0.5, result.getMeanFraction(), 0.1);
+		// the reported pressure is the mean whose error is reported
+		final List<Double> pressuresSinceEq = pressures.subList(result.getEqIteration() - 1, pressures.size());
+		assertEquals(result.getSnapshotsSinceEq(), pressuresSinceEq.size());
+		assertEquals(pressuresSinceEq.stream().mapToDouble(Double::doubleValue).average().getAsDouble(),
+				result.getMeanPressure(), 1e-12 * result.getMeanPressure());
+	}
+}
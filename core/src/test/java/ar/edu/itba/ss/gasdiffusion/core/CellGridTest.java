@@ -0,0 +1,67 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CellGridTest {
+	private static final double L = 0.09;
+	private static final double W = 0.24;
+	private static final double OPENING = 0.01;
+	private static final double RADIO = 0.0015;
+
+	@Test
+	public void testOppositeSidesAreOnlyNeighboursNextToTheOpening() {
+		final CellGrid grid = new CellGrid(L, W, OPENING, RADIO, 10000);
+		final double leftX = W / 2 - RADIO;
+		final double rightX = W / 2 + RADIO;
+
+		// next to the opening
+		assertTrue(isNeighbour(grid, grid.cellAt(leftX, L / 2), grid.cellAt(rightX, L / 2)));
+
+		// far from the opening, even though both cells touch each other
+		assertFalse(isNeighbour(grid, grid.cellAt(leftX, RADIO), grid.cellAt(rightX, RADIO)));
+		assertFalse(isNeighbour(grid, grid.cellAt(leftX, L - RADIO), grid.cellAt(rightX, L - RADIO)));
+	}
+
+	@Test
+	public void testMoveKeepsCellsConsistent() {
+		final CellGrid grid = new CellGrid(L, W, OPENING, RADIO, 3);
+		final int cell = grid.cellAt(RADIO, RADIO);
+		final int otherCell = grid.nextColumnCell(cell, 1);
+
+		grid.add(0, cell);
+		grid.add(1, cell);
+		grid.add(2, cell);
+		grid.move(1, otherCell);
+
+		assertEquals(2, countParticles(grid, cell));
+		assertEquals(1, countParticles(grid, otherCell));
+		assertEquals(otherCell, grid.cellOf(1));
+
+		grid.move(2, otherCell);
+		grid.move(0, otherCell);
+
+		assertEquals(0, countParticles(grid, cell));
+		assertEquals(3, countParticles(grid, otherCell));
+	}
+
+	private static boolean isNeighbour(final CellGrid grid, final int cell, final int otherCell) {
+		for (final int neighbour : grid.neighbours(cell)) {
+			if (neighbour == otherCell) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int countParticles(final CellGrid grid, final int cell) {
+		int count = 0;
+		for (int p = grid.first(cell) ; p != CellGrid.NO_PARTICLE ; p = grid.next(p)) {
+			count++;
+		}
+		return count;
+	}
+}
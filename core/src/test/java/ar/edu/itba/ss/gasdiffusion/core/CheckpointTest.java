@@ -0,0 +1,103 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CheckpointTest {
+	private static final double L = 0.09;
+	private static final double W = 0.24;
+	private static final double OPENING = 0.01;
+	private static final double DT2 = 0.5;
+	private static final int CHECKPOINT_INTERVAL = 5;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFullScanResumesExactly() throws IOException {
+		assertResumesExactly(GasDiffusion.Engine.FULL_SCAN);
+	}
+
+	@Test
+	public void testEventQueueResumesExactly() throws IOException {
+		assertResumesExactly(GasDiffusion.Engine.EVENT_QUEUE);
+	}
+
+	private void assertResumesExactly(final GasDiffusion.Engine engine) throws IOException {
+		final List<Point> points = GasDiffusionTest.latticePoints(40, 0.0015, 0.01, 11);
+
+		final List<double[]> expectedSnapshots = new ArrayList<>();
+		final Simulation.Result expected = new Simulation(new GasDiffusion(L, W, OPENING, engine), DT2)
+				.run(points, (systemData, iteration, systemTime) -> expectedSnapshots.add(snapshot(systemData,
+						iteration, systemTime)));
+
+		// the simulation is stopped right after its first checkpoint
+		final Path path = folder.getRoot().toPath().resolve("checkpoint.bin");
+		final Checkpoint parameters = new Checkpoint("text", engine, L, W, OPENING, DT2, 1, 0.01,
+				CHECKPOINT_INTERVAL, 0, false);
+		final GasDiffusion gasDiffusion = new GasDiffusion(L, W, OPENING, engine);
+		try {
+			new Simulation(gasDiffusion, DT2).run(new Simulation.Progress(points),
+					(systemData, iteration, systemTime) -> {}, CHECKPOINT_INTERVAL, progress -> {
+						try {
+							parameters.write(path, gasDiffusion, progress, new long[] {3, 4});
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+						throw new StopException();
+					});
+			fail("The simulation should have been stopped");
+		} catch (final StopException ignored) {
+		}
+
+		final Checkpoint checkpoint = Checkpoint.read(path, 1);
+		assertEquals(engine, checkpoint.getEngine());
+		assertEquals(DT2, checkpoint.getDt2(), 0);
+		assertEquals(CHECKPOINT_INTERVAL, checkpoint.getInterval());
+		assertArrayEquals(new long[] {3, 4}, checkpoint.getOutputLengths());
+		assertEquals(CHECKPOINT_INTERVAL, checkpoint.getProgress().getLastIteration());
+
+		final List<double[]> snapshots = new ArrayList<>();
+		final Simulation.Result result = new Simulation(checkpoint.getGasDiffusion(), DT2)
+				.run(checkpoint.getProgress(), (systemData, iteration, systemTime) -> snapshots.add(snapshot(systemData,
+						iteration, systemTime)), 0, progress -> {});
+
+		assertEquals(expectedSnapshots.size() - CHECKPOINT_INTERVAL, snapshots.size());
+		for (int k = 0 ; k < snapshots.size() ; k++) {
+			assertArrayEquals(expectedSnapshots.get(k + CHECKPOINT_INTERVAL), snapshots.get(k), 0);
+		}
+		assertEquals(expected.getEqIteration(), result.getEqIteration());
+		assertEquals(expected.getEqTime(), result.getEqTime(), 0);
+		assertEquals(expected.getMeanPressure(), result.getMeanPressure(), 0);
+	}
+
+	private static double[] snapshot(final GasDiffusion.SystemData systemData, final int iteration,
+	                                 final double systemTime) {
+		final List<Point> particles = systemData.getParticles();
+		final double[] snapshot = new double[4 + 2 * particles.size()];
+		snapshot[0] = iteration;
+		snapshot[1] = systemTime;
+		snapshot[2] = systemData.getLeftSideFraction();
+		snapshot[3] = systemData.getCurrentPressure();
+		for (int i = 0 ; i < particles.size() ; i++) {
+			snapshot[4 + 2 * i] = particles.get(i).x();
+			snapshot[5 + 2 * i] = particles.get(i).vy();
+		}
+		return snapshot;
+	}
+
+	private static class StopException extends RuntimeException {
+	}
+}
@@ -0,0 +1,100 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DistributionsTest {
+	private static final double L = 0.09;
+	private static final double W = 0.24;
+	private static final int N = 400;
+	private static final int SAMPLES = 200;
+	private static final double SPEED = 0.01;
+
+	@Test
+	public void testUniformPointsHaveAFlatRadialDistribution() {
+		final Random random = new Random(3);
+		final Distributions distributions = new Distributions(L, W, uniformPoints(random));
+		for (int sample = 0 ; sample < SAMPLES ; sample++) {
+			distributions.add(uniformPoints(random));
+		}
+
+		assertEquals(SAMPLES, distributions.getSamples());
+		// the walls make the pairs at long distances fewer than on an infinite plane, which the normalization corrects
+		for (final double g : distributions.radialDistribution()) {
+			assertEquals(1, g, 0.1);
+		}
+	}
+
+	@Test
+	public void testDensitiesIntegrateToOne() {
+		final Random random = new Random(5);
+		final Distributions distributions = new Distributions(L, W, uniformPoints(random));
+		for (int sample = 0 ; sample < SAMPLES ; sample++) {
+			distributions.add(uniformPoints(random));
+		}
+
+		assertEquals(1, integral(distributions.speedDensity(), distributions.getSpeedBinWidth()), 1e-3);
+		assertEquals(1, integral(distributions.vxDensity(), 2 * distributions.getSpeedBinWidth()), 1e-3);
+		assertEquals(1, integral(distributions.vyDensity(), 2 * distributions.getSpeedBinWidth()), 1e-3);
+		// gaussian components, so the speed follows the Maxwell-Boltzmann distribution
+		assertEquals(2 * SPEED * SPEED, distributions.meanSquaredSpeed(), 2 * SPEED * SPEED * 0.01);
+		final double speed = SPEED;
+		final int bin = (int) (speed / distributions.getSpeedBinWidth());
+		assertEquals(distributions.maxwellBoltzmannSpeed(speed), distributions.speedDensity()[bin],
+				distributions.maxwellBoltzmannSpeed(speed) * 0.1);
+	}
+
+	@Test
+	public void testWrittenHistogramsAreReadBack() throws IOException {
+		final Random random = new Random(7);
+		final Distributions distributions = new Distributions(L, W, uniformPoints(random));
+		distributions.add(uniformPoints(random));
+		distributions.add(uniformPoints(random));
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		distributions.write(new DataOutputStream(bytes));
+		final Distributions read = Distributions.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertEquals(distributions.getSamples(), read.getSamples());
+		assertEquals(distributions.getMaxSpeed(), read.getMaxSpeed(), 0);
+		assertArrayEquals(distributions.radialDistribution(), read.radialDistribution(), 0);
+		assertArrayEquals(distributions.speedDensity(), read.speedDensity(), 0);
+		assertArrayEquals(distributions.vxDensity(), read.vxDensity(), 0);
+		assertArrayEquals(distributions.vyDensity(), read.vyDensity(), 0);
+	}
+
+	/**
+	 * @return N points uniformly distributed on the box, with gaussian velocity components of SD SPEED
+	 */
+	private static List<Point> uniformPoints(final Random random) {
+		final List<Point> points = new ArrayList<>(N);
+		for (int p = 0 ; p < N ; p++) {
+			points.add(Point.builder(random.nextDouble() * W, random.nextDouble() * L)
+					.id(p)
+					.vx(random.nextGaussian() * SPEED)
+					.vy(random.nextGaussian() * SPEED)
+					.build());
+		}
+		return points;
+	}
+
+	private static double integral(final double[] density, final double binWidth) {
+		double integral = 0;
+		for (final double value : density) {
+			integral += value * binWidth;
+		}
+		return integral;
+	}
+}
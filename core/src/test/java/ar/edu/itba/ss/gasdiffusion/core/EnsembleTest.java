@@ -0,0 +1,64 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EnsembleTest {
+	private static final double L = 0.09;
+	private static final double W = 0.24;
+	private static final double OPENING = 0.01;
+	private static final double MASS = 1;
+	private static final double SPEED = 0.01;
+	private static final double EPSILON = 1e-12;
+	private static final long SEED = 2016;
+
+	@Test
+	public void testEveryRealizationReachesTheEquilibrium() throws InterruptedException {
+		final Ensemble ensemble = new Ensemble(50, MASS, SPEED, 0.0015, L, W, OPENING, 0.5,
+				GasDiffusion.Engine.EVENT_QUEUE, SEED);
+
+		final List<Ensemble.Realization> realizations = ensemble.run(6, 3);
+
+		assertEquals(6, realizations.size());
+		for (final Ensemble.Realization realization : realizations) {
+			assertTrue(realization.getTimeToEquilibrium() > 0);
+			assertTrue(realization.getIterationsToEquilibrium() > 0);
+			assertTrue(realization.getPressure() > 0);
+			// elastic collisions keep the kinetic energy of each particle on average
+			assertEquals(0.5 * MASS * SPEED * SPEED, realization.getTemperature(), EPSILON);
+		}
+	}
+
+	@Test
+	public void testSameSeedGivesSameRealizations() throws InterruptedException {
+		final Ensemble ensemble = new Ensemble(30, MASS, SPEED, 0.0015, L, W, OPENING, 0.5,
+				GasDiffusion.Engine.EVENT_QUEUE, SEED);
+
+		// realizations are scheduled differently on each run
+		final List<Ensemble.Realization> expected = ensemble.run(4, 1);
+		final List<Ensemble.Realization> realizations = ensemble.run(4, 3);
+
+		for (int k = 0 ; k < expected.size() ; k++) {
+			assertEquals(expected.get(k).getTimeToEquilibrium(), realizations.get(k).getTimeToEquilibrium(), 0);
+			assertEquals(expected.get(k).getPressure(), realizations.get(k).getPressure(), 0);
+			assertArrayEquals(expected.get(k).getFractions(), realizations.get(k).getFractions(), 0);
+		}
+		// while each realization has its own particles
+		assertNotEquals(expected.get(0).getPressure(), expected.get(1).getPressure(), 0);
+	}
+
+	@Test
+	public void testStatistics() {
+		final Statistics statistics = new Statistics(new double[] {2, 4, 4, 4, 5, 5, 7, 9});
+
+		assertEquals(5, statistics.getMean(), EPSILON);
+		assertEquals(2, statistics.getSD(), EPSILON);
+		assertEquals(2, statistics.getMin(), EPSILON);
+	}
+}
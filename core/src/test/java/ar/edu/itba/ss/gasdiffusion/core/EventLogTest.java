@@ -0,0 +1,103 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.ParticleStore;
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+import ar.edu.itba.ss.gasdiffusion.models.Wall;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventLogTest {
+	private static final double L = 0.09;
+	private static final double W = 0.24;
+	private static final double OPENING = 0.01;
+	private static final double DT2 = 0.5;
+	private static final double REPLAY_DT2 = 0.1;
+	private static final int SAMPLE = 37;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFullScanReplaysTheSameTrajectories() throws IOException {
+		assertReplaysTheSameTrajectories(GasDiffusion.Engine.FULL_SCAN);
+	}
+
+	@Test
+	public void testEventQueueReplaysTheSameTrajectories() throws IOException {
+		assertReplaysTheSameTrajectories(GasDiffusion.Engine.EVENT_QUEUE);
+	}
+
+	private void assertReplaysTheSameTrajectories(final GasDiffusion.Engine engine) throws IOException {
+		final List<Point> points = GasDiffusionTest.latticePoints(40, 0.0015, 0.01, 11);
+		final Path path = folder.getRoot().toPath().resolve("events.bin");
+
+		// the positions of the particles at the time of the sample, taken from the first step after it
+		final double sampleTime = SAMPLE * REPLAY_DT2;
+		final double[] expected = new double[2 * points.size()];
+		final GasDiffusion gasDiffusion = new GasDiffusion(L, W, OPENING, engine);
+		try (final EventLogWriter writer = new EventLogWriter(path, points, L, W, OPENING)) {
+			gasDiffusion.setEventListener(new GasDiffusion.EventListener() {
+				private double time;
+				private ParticleStore store;
+
+				@Override
+				public void onStep(final double tc) {
+					writer.onStep(tc);
+					if (time <= sampleTime && time + tc > sampleTime) {
+						final double sinceSample = time + tc - sampleTime;
+						for (int p = 0 ; p < store.size() ; p++) {
+							expected[2 * p] = store.x(p) - store.vx(p) * sinceSample;
+							expected[2 * p + 1] = store.y(p) - store.vy(p) * sinceSample;
+						}
+					}
+					time += tc;
+				}
+
+				@Override
+				public void onEvent(final ParticleStore store, final int i, final int j, final Wall wall) {
+					writer.onEvent(store, i, j, wall);
+					this.store = store;
+				}
+			});
+			new Simulation(gasDiffusion, DT2).run(points);
+		}
+
+		final List<double[]> samples = new ArrayList<>();
+		try (final EventLogReader reader = new EventLogReader(path)) {
+			assertEquals(points.size(), reader.getN());
+			assertEquals(points.get(3).vx(), reader.getInitialPoints().get(3).vx(), 0);
+
+			final int samplesTaken = new Replay(reader, REPLAY_DT2).run(
+					(store, iteration, time, fraction, pressure, meanKineticEnergy) -> {
+						assertEquals(iteration * REPLAY_DT2, time, 0);
+						final double[] sample = new double[2 * store.size() + 1];
+						for (int p = 0 ; p < store.size() ; p++) {
+							sample[2 * p] = store.x(p);
+							sample[2 * p + 1] = store.y(p);
+						}
+						sample[2 * store.size()] = meanKineticEnergy;
+						samples.add(sample);
+					});
+			assertEquals(samples.size(), samplesTaken);
+		}
+
+		assertTrue(samples.size() > SAMPLE);
+		final double[] sample = samples.get(SAMPLE);
+		for (int k = 0 ; k < expected.length ; k++) {
+			assertEquals(expected[k], sample[k], 1e-12);
+		}
+		// collisions are elastic
+		for (final double[] each : samples) {
+			assertEquals(samples.get(0)[expected.length], each[expected.length], 1e-15);
+		}
+	}
+}
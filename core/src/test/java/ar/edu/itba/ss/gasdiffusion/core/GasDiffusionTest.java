@@ -0,0 +1,268 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GasDiffusionTest {
+	private static final double L = 0.09;
+	private static final double W = 0.24;
+	private static final double OPENING = 0.01;
+	// hard disks are chaotic: rounding differences between both engines grow quickly after a hundred events or so
+	private static final int MATCHING_EVENTS = 50;
+	private static final int EVENTS = 5000;
+	private static final double EPSILON = 1e-9;
+
+	@Test
+	public void testEventQueueMatchesFullScan() {
+		final GasDiffusion fullScan = new GasDiffusion(L, W, OPENING, GasDiffusion.Engine.FULL_SCAN);
+		final GasDiffusion eventQueue = new GasDiffusion(L, W, OPENING, GasDiffusion.Engine.EVENT_QUEUE);
+
+		List<Point> fullScanPoints = latticePoints(40, 0.0015, 0.01, 42);
+		List<Point> eventQueuePoints = new ArrayList<>(fullScanPoints);
+
+		for (int i = 0 ; i < MATCHING_EVENTS ; i++) {
+			final GasDiffusion.SystemData fullScanData = fullScan.run(fullScanPoints);
+			final double fullScanTime = fullScanData.getCollisionTime();
+			final double fullScanFraction = fullScanData.getLeftSideFraction();
+			fullScanPoints = new ArrayList<>(fullScanData.getParticles());
+
+			final GasDiffusion.SystemData eventQueueData = eventQueue.run(eventQueuePoints);
+			eventQueuePoints = eventQueueData.getParticles();
+
+			assertEquals(fullScanTime, eventQueueData.getCollisionTime(), EPSILON);
+			assertEquals(fullScanFraction, eventQueueData.getLeftSideFraction(), 1.0 / fullScanPoints.size());
+			assertSamePositions(fullScanPoints, eventQueuePoints);
+		}
+	}
+
+	@Test
+	public void testSnapshotsAreTakenAtEveryMultipleOfDt2() {
+		final double dt2 = 0.01; // much shorter than the time between events
+		for (final GasDiffusion.Engine engine : GasDiffusion.Engine.values()) {
+			final List<List<Point>> snapshots = new ArrayList<>();
+			new Simulation(new GasDiffusion(L, W, OPENING, engine), dt2).run(latticePoints(10, 0.0015, 0.01, 5),
+					(systemData, iteration, systemTime) -> {
+						assertEquals(snapshots.size() + 1, iteration);
+						assertEquals(iteration * dt2, systemTime, 0);
+						// snapshots are taken between events, when no particle is in contact with another one
+						systemData.getParticles().forEach(point -> assertFalse(point.isColliding()));
+						snapshots.add(new ArrayList<>(systemData.getParticles()));
+					});
+
+			// particles that do not change their velocities between two snapshots move along a straight line
+			for (int k = 1 ; k < snapshots.size() ; k++) {
+				for (int p = 0 ; p < snapshots.get(k).size() ; p++) {
+					final Point previous = snapshots.get(k - 1).get(p);
+					final Point current = snapshots.get(k).get(p);
+					if (previous.vx() == current.vx() && previous.vy() == current.vy()) {
+						assertEquals(previous.x() + previous.vx() * dt2, current.x(), EPSILON);
+						assertEquals(previous.y() + previous.vy() * dt2, current.y(), EPSILON);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEveryParticleOfTiedEventsIsMarkedAsColliding() {
+		final GasDiffusion.SystemData systemData = new GasDiffusion(L, W, OPENING, GasDiffusion.Engine.FULL_SCAN)
+				.run(tiedPairs());
+
+		assertEquals((0.02 - 0.003) / 0.02, systemData.getCollisionTime(), EPSILON);
+		for (final Point point : systemData.getParticles()) {
+			assertTrue(point.isColliding());
+		}
+	}
+
+	@Test
+	public void testSampleAtTheTimeOfTheEventsMarksTheirParticles() {
+		for (final GasDiffusion.Engine engine : GasDiffusion.Engine.values()) {
+			final GasDiffusion gasDiffusion = new GasDiffusion(L, W, OPENING, engine);
+			final List<Long> atTheEvents = new ArrayList<>(); // ids of the colliding particles at the time of the events
+			final List<Long> beforeTheEvents = new ArrayList<>();
+			final GasDiffusion.Sampler sampler = tc -> {
+				atTheEvents.clear();
+				gasDiffusion.sample(0).getParticles().stream().filter(Point::isColliding)
+						.forEach(point -> atTheEvents.add(point.id()));
+				beforeTheEvents.clear();
+				gasDiffusion.sample(tc / 2).getParticles().stream().filter(Point::isColliding)
+						.forEach(point -> beforeTheEvents.add(point.id()));
+			};
+
+			final List<Point> points = gasDiffusion.run(tiedPairs(), sampler).getParticles();
+			assertTrue(beforeTheEvents.isEmpty());
+			if (engine == GasDiffusion.Engine.EVENT_QUEUE) {
+				// it runs one of the tied events on each call: the first pair is still in contact on the next one
+				assertEquals(2, atTheEvents.size());
+				assertEquals(0, gasDiffusion.run(points, sampler).getCollisionTime(), 0);
+			}
+			assertEquals(4, atTheEvents.size());
+		}
+	}
+
+	@Test
+	public void testSnapshotsAtTheSameTimeKeepThePressureFinite() {
+		// half of the particles on the right side, so the equilibrium is reached on the first event
+		final List<Point> points = tiedPairs();
+		for (int k = 0 ; k < 4 ; k++) {
+			points.add(Point.builder(0.15 + k * 0.02, 0.045).id(k + 5).radio(0.0015).mass(1).vx(0).vy(0.001).build());
+		}
+		final List<Double> times = new ArrayList<>();
+
+		// the event queue engine runs the second tied collision on its own event, right at the time of the first one
+		final Simulation.Result result = new Simulation(new GasDiffusion(L, W, OPENING, GasDiffusion.Engine.EVENT_QUEUE),
+				0, 0.5).run(points, (systemData, iteration, systemTime) -> times.add(systemTime));
+
+		assertEquals(times.get(0), times.get(1), 0);
+		assertEquals(2, result.getEqIteration()); // the snapshot at the same time is the first after it
+		assertTrue(Double.isFinite(result.getMeanPressure()));
+		assertTrue(result.getMeanPressure() > 0);
+		assertTrue(Double.isFinite(result.getPressureRelativeError()));
+	}
+
+	/**
+	 * @return two pairs with the same relative positions and velocities, so they collide at the same time
+	 */
+	private static List<Point> tiedPairs() {
+		final List<Point> points = new ArrayList<>();
+		for (int k = 0 ; k < 2 ; k++) {
+			final double y = 0.02 + k * 0.04;
+			points.add(Point.builder(0.03, y).id(2 * k + 1).radio(0.0015).mass(1).vx(0.01).vy(0).build());
+			points.add(Point.builder(0.05, y).id(2 * k + 2).radio(0.0015).mass(1).vx(-0.01).vy(0).build());
+		}
+		return points;
+	}
+
+	@Test
+	public void testParallelFullScanIsIdenticalToSequential() {
+		final GasDiffusion sequential = new GasDiffusion(L, W, OPENING, GasDiffusion.Engine.FULL_SCAN, 1);
+		final GasDiffusion parallel = new GasDiffusion(L, W, OPENING, GasDiffusion.Engine.FULL_SCAN, 4);
+
+		List<Point> sequentialPoints = latticePoints(200, 0.0015, 0.01, 3);
+		List<Point> parallelPoints = new ArrayList<>(sequentialPoints);
+
+		for (int i = 0 ; i < 200 ; i++) {
+			final GasDiffusion.SystemData sequentialData = sequential.run(sequentialPoints);
+			final double sequentialTime = sequentialData.getCollisionTime();
+			sequentialPoints = new ArrayList<>(sequentialData.getParticles());
+
+			final GasDiffusion.SystemData parallelData = parallel.run(parallelPoints);
+			parallelPoints = new ArrayList<>(parallelData.getParticles());
+
+			assertEquals(sequentialTime, parallelData.getCollisionTime(), 0);
+			assertEquals(sequentialPoints, parallelPoints); // same ids in the same order
+			for (int j = 0 ; j < sequentialPoints.size() ; j++) {
+				assertEquals(sequentialPoints.get(j).x(), parallelPoints.get(j).x(), 0);
+				assertEquals(sequentialPoints.get(j).vx(), parallelPoints.get(j).vx(), 0);
+			}
+		}
+		parallel.close();
+	}
+
+	@Test
+	public void testEventQueueKeepsParticlesInsideTheBox() {
+		final GasDiffusion eventQueue = new GasDiffusion(L, W, OPENING, GasDiffusion.Engine.EVENT_QUEUE);
+
+		List<Point> points = latticePoints(100, 0.0015, 0.01, 7);
+		final double initialEnergy = kineticEnergy(points);
+		double time = 0;
+
+		for (int i = 0 ; i < EVENTS ; i++) {
+			final GasDiffusion.SystemData systemData = eventQueue.run(points);
+			points = systemData.getParticles();
+
+			assertEquals(100, points.size());
+			assertTrue(systemData.getCollisionTime() >= 0);
+			time += systemData.getCollisionTime();
+
+			int leftSideParticles = 0;
+			for (final Point point : points) {
+				assertTrue(point.x() >= point.radio() - EPSILON && point.x() <= W - point.radio() + EPSILON);
+				assertTrue(point.y() >= point.radio() - EPSILON && point.y() <= L - point.radio() + EPSILON);
+				if (point.x() <= W/2) {
+					leftSideParticles++;
+				}
+			}
+			// the fraction is kept up to date as particles cross the middle of the box
+			assertEquals(leftSideParticles / 100.0, systemData.getLeftSideFraction(), 0);
+		}
+
+		assertTrue(time > 0);
+		assertEquals(initialEnergy, kineticEnergy(points), 1e-12);
+	}
+
+	@Test
+	public void testKineticEnergyOfEachSideIsKeptUpToDate() {
+		for (final GasDiffusion.Engine engine : GasDiffusion.Engine.values()) {
+			final GasDiffusion gasDiffusion = new GasDiffusion(L, W, OPENING, engine);
+			List<Point> points = latticePoints(60, 0.0015, 0.01, 5);
+
+			for (int i = 0 ; i < 2000 ; i++) {
+				final GasDiffusion.SystemData systemData = gasDiffusion.run(points);
+				points = systemData.getParticles();
+
+				double left = 0, right = 0;
+				for (final Point point : points) {
+					if (point.x() <= W/2) {
+						left += point.kineticEnergy();
+					} else {
+						right += point.kineticEnergy();
+					}
+				}
+				assertEquals(left, systemData.getLeftSideKineticEnergy(), 1e-15);
+				assertEquals(right, systemData.getRightSideKineticEnergy(), 1e-15);
+				assertEquals(kineticEnergy(points) / points.size(), systemData.getMeanKineticEnergy(), 1e-15);
+			}
+		}
+	}
+
+	private static double kineticEnergy(final List<Point> points) {
+		return points.stream().mapToDouble(Point::kineticEnergy).sum();
+	}
+
+	/* package-private */ static List<Point> latticePoints(final int N, final double radio, final double speed,
+	                                                       final long seed) {
+		final Random random = new Random(seed);
+		final List<Point> points = new ArrayList<>(N);
+		final int columns = (int) Math.ceil(Math.sqrt(N));
+		final double dx = (W / 2) / (columns + 1);
+		final double dy = L / (columns + 1);
+
+		for (int i = 0 ; i < N ; i++) {
+			final double orientation = random.nextDouble() * 2 * Math.PI;
+			points.add(Point.builder((i % columns + 1) * dx, (i / columns + 1) * dy)
+							.id(i + 1)
+							.radio(radio)
+							.mass(1)
+							.vx(speed * Math.cos(orientation))
+							.vy(speed * Math.sin(orientation))
+							.build());
+		}
+		return points;
+	}
+
+	private static void assertSamePositions(final List<Point> expected, final List<Point> actual) {
+		assertEquals(expected.size(), actual.size());
+
+		final Map<Long, Point> actualById = new HashMap<>();
+		actual.forEach(point -> actualById.put(point.id(), point));
+
+		for (final Point point : expected) {
+			final Point other = actualById.get(point.id());
+			assertEquals(point.x(), other.x(), EPSILON);
+			assertEquals(point.y(), other.y(), EPSILON);
+			assertEquals(point.vx(), other.vx(), EPSILON);
+			assertEquals(point.vy(), other.vy(), EPSILON);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JobServerTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private JobServer server;
+	private PrintStream processOut;
+	private Path tokenFile;
+
+	@Before
+	public void startServer() throws IOException {
+		processOut = System.out;
+		tokenFile = folder.getRoot().toPath().resolve("server.token");
+		server = new JobServer(0, 2, tokenFile);
+		final Thread thread = new Thread(server::serve);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@After
+	public void closeServer() throws IOException {
+		server.close();
+		assertSame(processOut, System.out);
+		assertFalse(Files.exists(tokenFile));
+	}
+
+	@Test
+	public void testJobRunsOnTheWorkingDirectoryOfItsClient() throws IOException {
+		final Path directory = folder.getRoot().toPath();
+
+		final List<String> output = send(directory, "gen", "staticdat", "10", "1", "0.01", "0.0015", "0.09", "0.24",
+				"--seed", "1");
+
+		assertTrue(Files.isRegularFile(directory.resolve("output").resolve("static.dat")));
+		assertTrue(output.contains("[DONE]"));
+		assertTrue(output.contains(JobServer.OUTPUT_PREFIX + directory.resolve("output")));
+		assertEquals(JobServer.EXIT_PREFIX + 0, output.get(output.size() - 1));
+	}
+
+	@Test
+	public void testFailedJobDoesNotStopTheServer() throws IOException {
+		final Path directory = folder.getRoot().toPath();
+
+		final List<String> failed = send(directory, "gas");
+		assertEquals(JobServer.EXIT_PREFIX + (Main.EXIT_CODE.BAD_N_ARGUMENTS.getCode() & 0xFF),
+				failed.get(failed.size() - 1));
+		assertTrue(failed.stream().anyMatch(line -> line.startsWith("[FAIL]")));
+
+		final List<String> help = send(directory, "help");
+		assertEquals(JobServer.EXIT_PREFIX + 0, help.get(help.size() - 1));
+	}
+
+	@Test
+	public void testJobWithoutTheTokenIsRejected() throws IOException {
+		final Path directory = folder.getRoot().toPath();
+		assertEquals(server.getToken(), new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8));
+
+		final List<String> output = send("not-the-token", directory, "gen", "staticdat", "10", "1", "0.01", "0.0015",
+				"0.09", "0.24");
+
+		assertFalse(Files.exists(directory.resolve("output")));
+		assertEquals(JobServer.EXIT_PREFIX + (Main.EXIT_CODE.BAD_ARGUMENT.getCode() & 0xFF),
+				output.get(output.size() - 1));
+	}
+
+	@Test
+	public void testJobOnARelativeDirectoryIsRejected() throws IOException {
+		final List<String> output = send(Paths.get("relative", "directory"), "help");
+
+		assertEquals(JobServer.EXIT_PREFIX + (Main.EXIT_CODE.BAD_ARGUMENT.getCode() & 0xFF),
+				output.get(output.size() - 1));
+	}
+
+	private List<String> send(final Path directory, final String... args) throws IOException {
+		return send(server.getToken(), directory, args);
+	}
+
+	private List<String> send(final String token, final Path directory, final String... args) throws IOException {
+		try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+		     final PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8.name());
+		     final BufferedReader in = new BufferedReader(
+				     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+			out.println(token);
+			out.println(directory);
+			for (final String arg : args) {
+				out.println(arg);
+			}
+			out.println();
+
+			final List<String> lines = new ArrayList<>();
+			String line;
+			while ((line = in.readLine()) != null) {
+				lines.add(line);
+			}
+			return lines;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testEmptyHistogram() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.count());
+		assertEquals(0, histogram.meanNanos(), 0);
+		assertEquals(0, histogram.maxNanos());
+		assertEquals(0, histogram.percentileNanos(0.99));
+	}
+
+	@Test
+	public void testPercentilesAreBoundedByTheirBucket() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0 ; i < 99 ; i++) {
+			histogram.record(100); // on the bucket from 64 to 127
+		}
+		histogram.record(5000);
+
+		assertEquals(100, histogram.count());
+		assertEquals(99 * 100 + 5000, histogram.totalNanos());
+		assertEquals(5000, histogram.maxNanos());
+		assertEquals(127, histogram.percentileNanos(0.5));
+		assertEquals(127, histogram.percentileNanos(0.99));
+		assertEquals(5000, histogram.percentileNanos(1)); // bounded by the max
+	}
+
+	@Test
+	public void testNegativeDurationsAreRecordedAsZero() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-10);
+		assertEquals(1, histogram.count());
+		assertEquals(0, histogram.totalNanos());
+		assertEquals(0, histogram.percentileNanos(1));
+	}
+
+	@Test
+	public void testReset() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1000);
+		histogram.reset();
+		assertEquals(0, histogram.count());
+		assertEquals(0, histogram.maxNanos());
+		assertEquals(0, histogram.percentileNanos(0.5));
+	}
+}
@@ -0,0 +1,84 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import ar.edu.itba.ss.gasdiffusion.models.Point;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SnapshotFileTest {
+	private static final double EPSILON = 0;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final Point p1 = Point.builder(0.01, 0.02).id(7).radio(0.0015).mass(1).vx(0.1).vy(-0.2).build();
+	private final Point p2 = Point.builder(0.03, 0.04).id(9).radio(0.002).mass(1).vx(-0.3).vy(0.4)
+			.isColliding(true).build();
+
+	@Test
+	public void testFramesAreReadAsWritten() throws IOException {
+		final Path path = folder.newFile("output.bin").toPath();
+
+		try (final SnapshotFileWriter writer = new SnapshotFileWriter(path, 2, 0.09, 0.24, 0.01)) {
+			writer.write(0, 0, Arrays.asList(p1, p2));
+			writer.write(0.5, 1, Arrays.asList(p2, p1));
+		}
+
+		try (final SnapshotFileReader reader = new SnapshotFileReader(path)) {
+			assertEquals(2, reader.getN());
+			assertEquals(0.09, reader.getL(), EPSILON);
+			assertEquals(0.24, reader.getW(), EPSILON);
+			assertEquals(0.01, reader.getOpening(), EPSILON);
+			assertEquals(2, reader.frames());
+
+			final SnapshotFileReader.Frame second = reader.frame(1);
+			assertEquals(0.5, second.time(), EPSILON);
+			assertEquals(1, second.iteration());
+			assertSamePoint(p2, second, 0);
+			assertSamePoint(p1, second, 1);
+
+			final SnapshotFileReader.Frame first = reader.frame(0);
+			assertEquals(0, first.iteration());
+			assertSamePoint(p1, first, 0);
+			assertSamePoint(p2, first, 1);
+		}
+	}
+
+	@Test
+	public void testIncompleteFrameIsIgnored() throws IOException {
+		final Path path = folder.newFile("output.bin").toPath();
+		final List<Point> points = Arrays.asList(p1, p2);
+
+		try (final SnapshotFileWriter writer = new SnapshotFileWriter(path, 2, 0.09, 0.24, 0.01)) {
+			writer.write(0, 0, points);
+			writer.write(0.5, 1, points);
+		}
+		// as if the simulation had been stopped while writing the second frame
+		try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 1);
+		}
+
+		try (final SnapshotFileReader reader = new SnapshotFileReader(path)) {
+			assertEquals(1, reader.frames());
+		}
+	}
+
+	private static void assertSamePoint(final Point expected, final SnapshotFileReader.Frame frame, final int i) {
+		assertEquals(expected.id(), frame.id(i));
+		assertEquals(expected.x(), frame.x(i), EPSILON);
+		assertEquals(expected.y(), frame.y(i), EPSILON);
+		assertEquals(expected.vx(), frame.vx(i), EPSILON);
+		assertEquals(expected.vy(), frame.vy(i), EPSILON);
+		assertEquals(expected.radio(), frame.radio(i), EPSILON);
+		assertEquals(expected.isColliding(), frame.isColliding(i));
+	}
+}
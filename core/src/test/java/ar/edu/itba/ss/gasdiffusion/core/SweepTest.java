@@ -0,0 +1,42 @@
+package ar.edu.itba.ss.gasdiffusion.core;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SweepTest {
+	private static final double EPSILON = 1e-12;
+
+	@Test
+	public void testEveryCombinationIsRunInOrder() throws InterruptedException {
+		final Sweep sweep = new Sweep(new int[] {30, 40}, 1, new double[] {0.01}, new double[] {0.0015},
+				new double[] {0.09, 0.12}, new double[] {0.24}, new double[] {0.01}, 0.5,
+				GasDiffusion.Engine.EVENT_QUEUE, 2016);
+
+		final List<Ensemble> systems = sweep.getSystems();
+		assertEquals(4, systems.size());
+		assertEquals(30, systems.get(0).getN());
+		assertEquals(0.09, systems.get(0).getL(), EPSILON);
+		assertEquals(30, systems.get(1).getN());
+		assertEquals(0.12, systems.get(1).getL(), EPSILON);
+		assertEquals(40, systems.get(2).getN());
+
+		// systems of different sizes run at the same time
+		final List<List<Ensemble.Realization>> results = sweep.run(2, 4);
+
+		assertEquals(4, results.size());
+		for (final List<Ensemble.Realization> realizations : results) {
+			assertEquals(2, realizations.size());
+			for (final Ensemble.Realization realization : realizations) {
+				assertTrue(realization.getPressure() > 0);
+				assertEquals(1.0, realization.getFractions()[0], EPSILON);
+				// the initial state, the snapshots until the equilibrium and the ones after it
+				assertEquals(realization.getIterationsToEquilibrium() + Simulation.MAX_TIME_AFTER_EQUILIBRIUM,
+						realization.getFractions().length);
+			}
+		}
+	}
+}
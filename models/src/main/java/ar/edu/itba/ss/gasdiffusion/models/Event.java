@@ -1,13 +1,22 @@
 package ar.edu.itba.ss.gasdiffusion.models;
 
-import java.util.Set;
-
+/**
+ * <p>
+ *  A collision of the particles of a {@link ParticleStore}, that are referenced by their indices on it.
+ * <p>
+ *  Events are mutable records, so that an engine can keep one of each type per particle and set it again on each
+ *  prediction instead of creating a new one. Executing an event changes the velocities of its particles in place,
+ *  on the store.
+ */
 public abstract class Event implements Comparable<Event> {
-    final double time; // Time has to go here because we need that all the implementations of the Comparable to be equal
+    public static final int NO_PARTICLE = -1;
+
+    double time; // Time has to go here because we need that all the implementations of the Comparable to be equal
+    int i;
+    int j = NO_PARTICLE;
 
     /* Package Private */
-    Event(final double time) {
-        this.time = time;
+    Event() {
     }
 
     @Override
@@ -25,7 +34,35 @@ public abstract class Event implements Comparable<Event> {
         return time;
     }
 
-    public abstract Set<Point> execute();
+    /**
+     * @return the index of the particle for which this event was predicted
+     */
+    public int getI() {
+        return i;
+    }
 
+    /**
+     * @return the index of the other particle that takes part on this event ; NO_PARTICLE if there is none
+     */
+    public int getJ() {
+        return j;
+    }
+
+    /**
+     * Changes the velocities of the particles of this event, that should be in contact at the current time of the
+     * given store
+     * @param store the store that holds the particles of this event
+     */
+    public abstract void execute(ParticleStore store);
+
+    /**
+     * @return the pressure exerted on the last execution of this event
+     */
     public abstract double getPressure();
+
+    /**
+     * @param particle the index of one of the particles that take part on this event
+     * @return how much the kinetic energy of the given particle changed on the last execution of this event
+     */
+    public abstract double getKineticEnergyChange(int particle);
 }
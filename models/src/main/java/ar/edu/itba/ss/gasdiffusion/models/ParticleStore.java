@@ -0,0 +1,360 @@
+package ar.edu.itba.ss.gasdiffusion.models;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * <p>
+ *  Structure-of-arrays storage of the particles' state, that the simulation engine mutates in place so as not to
+ *  create a new Point for each particle on each event.
+ * <p>
+ *  Each particle keeps the time at which its position was last updated, and positions at the current time of the
+ *  store are calculated from it when read. This way, moving the system forward is O(1), and only the particles
+ *  that take part on an event get their position updated.
+ * <p>
+ *  Points are still available as read-only views of the current state of each particle, through {@link #point(int)}
+ *  and {@link #points()}, for I/O and testing purposes.
+ */
+public class ParticleStore {
+  private final long[] id;
+  private final double[] x;
+  private final double[] y;
+  private final double[] vx;
+  private final double[] vy;
+  private final double[] mass;
+  private final double[] radio;
+  private final double[] lastUpdate;
+  private final double[] lastEvent; // the time of the last event of each particle ; -infinity if it had none
+  private final int[] collisions;
+  private final List<Point> points;
+  private double time;
+
+  public ParticleStore(final Collection<Point> particles) {
+    this(particles.size());
+
+    int i = 0;
+    for (final Point point : particles) {
+      id[i] = point.id();
+      x[i] = point.x();
+      y[i] = point.y();
+      vx[i] = point.vx();
+      vy[i] = point.vy();
+      mass[i] = point.mass();
+      radio[i] = point.radio();
+      i++;
+    }
+  }
+
+  private ParticleStore(final int N) {
+    this.id = new long[N];
+    this.x = new double[N];
+    this.y = new double[N];
+    this.vx = new double[N];
+    this.vy = new double[N];
+    this.mass = new double[N];
+    this.radio = new double[N];
+    this.lastUpdate = new double[N];
+    this.lastEvent = new double[N];
+    Arrays.fill(lastEvent, Double.NEGATIVE_INFINITY);
+    this.collisions = new int[N];
+    this.time = 0;
+
+    this.points = new AbstractList<Point>() {
+      @Override
+      public Point get(final int index) {
+        return point(index);
+      }
+
+      @Override
+      public int size() {
+        return id.length;
+      }
+    };
+  }
+
+  public int size() {
+    return id.length;
+  }
+
+  public long id(final int i) {
+    return id[i];
+  }
+
+  /**
+   * @return the current time of the store ; particles' states are given at this time
+   */
+  public double time() {
+    return time;
+  }
+
+  /**
+   * @return the x position of the given particle at the current time
+   */
+  public double x(final int i) {
+    return x[i] + vx[i] * (time - lastUpdate[i]);
+  }
+
+  /**
+   * @return the y position of the given particle at the current time
+   */
+  public double y(final int i) {
+    return y[i] + vy[i] * (time - lastUpdate[i]);
+  }
+
+  public double vx(final int i) {
+    return vx[i];
+  }
+
+  public double vy(final int i) {
+    return vy[i];
+  }
+
+  public double mass(final int i) {
+    return mass[i];
+  }
+
+  public double radio(final int i) {
+    return radio[i];
+  }
+
+  public double speed(final int i) {
+    return Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i]);
+  }
+
+  /**
+   * @return the kinetic energy of the given particle (the same as {@link Point#kineticEnergy()})
+   */
+  public double kineticEnergy(final int i) {
+    return 1/2.0d * mass[i] * (vx[i] * vx[i] + vy[i] * vy[i]);
+  }
+
+  /**
+   * @return how many events the given particle has taken part on
+   */
+  public int collisions(final int i) {
+    return collisions[i];
+  }
+
+  /**
+   * Moves all the particles along their current velocities.
+   * Their positions are not updated until they are needed, so this takes constant time.
+   * @param time the time to move the particles
+   */
+  public void advance(final double time) {
+    this.time += time;
+  }
+
+  /**
+   * Moves all the particles along their current velocities to the given time of the store, that may also be
+   * before the current one, as particles move along straight lines between their events.
+   * Moving back to the current time afterwards gives exactly the same positions as before.
+   * @param time a time of the store, not before the last event of any particle
+   */
+  public void moveTo(final double time) {
+    this.time = time;
+  }
+
+  /**
+   * Stores the position of the given particle at the current time
+   */
+  private void update(final int i) {
+    x[i] = x(i);
+    y[i] = y(i);
+    lastUpdate[i] = time;
+  }
+
+  /**
+   * Stores the positions of all the particles at the current time, and makes it the new origin of times,
+   * so that rounding errors do not build up as time values grow.
+   * @return the time that was subtracted from the current time ; any other absolute time should be shifted by it
+   */
+  public double synchronize() {
+    final double offset = time;
+    for (int i = 0 ; i < id.length ; i++) {
+      update(i);
+      lastUpdate[i] = 0;
+      lastEvent[i] -= offset; // the particles of an event at the current time are still at 0
+    }
+    time = 0;
+    return offset;
+  }
+
+  /**
+   * Changes the velocities of two particles that are in contact, based on an elastic collision
+   * @throws IllegalStateException if the modulus of their relative velocity is not kept, that is, the collision
+   *                               is not elastic
+   */
+  public void collide(final int i, final int j) {
+    update(i);
+    update(j);
+
+    final double sigma = radio[i] + radio[j];
+    final double deltaRx = x[j] - x[i];
+    final double deltaRy = y[j] - y[i];
+    final double deltaVx = vx[j] - vx[i];
+    final double deltaVy = vy[j] - vy[i];
+
+    final double deltaV_deltaR_squareDistance = deltaVx * deltaRx + deltaVy * deltaRy;
+
+    // Thanks Marco Boschetti & Juan Cruz Lepore for the following.
+    /*
+        Each ji will assume that the mass of particle i is not Infinite, so as we can divide all the term by
+        our mass.
+        If mass of particle i results to be Infinite, then it is because our new speed is not of our interest
+         (due to the fact that the particles with infinite mass should not move),
+          and this does not affect the other particles.
+     */
+    final double ji = (2 * mass[i] * deltaV_deltaR_squareDistance) / (sigma * (mass[i] / mass[j] + 1));
+    final double jj = (2 * mass[j] * deltaV_deltaR_squareDistance) / (sigma * (1 + mass[j] / mass[i]));
+
+    final double moduleBefore = Math.sqrt(deltaVx * deltaVx + deltaVy * deltaVy);
+
+    vx[i] += ji * deltaRx / sigma / mass[i];
+    vy[i] += ji * deltaRy / sigma / mass[i];
+    vx[j] -= jj * deltaRx / sigma / mass[j];
+    vy[j] -= jj * deltaRy / sigma / mass[j];
+
+    final double deltaVxAfter = vx[j] - vx[i];
+    final double deltaVyAfter = vy[j] - vy[i];
+    final double moduleAfter = Math.sqrt(deltaVxAfter * deltaVxAfter + deltaVyAfter * deltaVyAfter);
+
+    if (Math.abs(moduleAfter - moduleBefore) >= 1e-6) {
+      throw new IllegalStateException("Kinetic energy is being modified on a particle colision.");
+    }
+
+    collisions[i]++;
+    collisions[j]++;
+    lastEvent[i] = time;
+    lastEvent[j] = time;
+  }
+
+  /**
+   * Changes the velocity of a particle that is in contact with a wall
+   */
+  public void bounce(final int i, final Wall wall) {
+    update(i);
+
+    if (wall == Wall.VERTICAL || wall == Wall.MIDDLE_VERTICAL) {
+      vx[i] = -vx[i];
+    } else if (wall == Wall.HORIZONTAL) {
+      vy[i] = -vy[i];
+    }
+
+    collisions[i]++;
+    lastEvent[i] = time;
+  }
+
+  /**
+   * Sets the velocity that a particle has right after an event, as it was recorded - i.e., on an event log -
+   * instead of calculating it from the event
+   */
+  public void redirect(final int i, final double vx, final double vy) {
+    update(i);
+
+    this.vx[i] = vx;
+    this.vy[i] = vy;
+
+    collisions[i]++;
+  }
+
+  /**
+   * Writes the whole state of the store - as it is kept, and not as it is read - so that it can be restored exactly
+   * with {@link #read(DataInput)}
+   */
+  public void write(final DataOutput out) throws IOException {
+    out.writeInt(id.length);
+    for (int i = 0 ; i < id.length ; i++) {
+      out.writeLong(id[i]);
+      out.writeDouble(x[i]);
+      out.writeDouble(y[i]);
+      out.writeDouble(vx[i]);
+      out.writeDouble(vy[i]);
+      out.writeDouble(mass[i]);
+      out.writeDouble(radio[i]);
+      out.writeDouble(lastUpdate[i]);
+      out.writeDouble(lastEvent[i]);
+      out.writeInt(collisions[i]);
+    }
+    out.writeDouble(time);
+  }
+
+  /**
+   * @return a store with the state written by {@link #write(DataOutput)}
+   */
+  public static ParticleStore read(final DataInput in) throws IOException {
+    final ParticleStore store = new ParticleStore(in.readInt());
+    for (int i = 0 ; i < store.id.length ; i++) {
+      store.id[i] = in.readLong();
+      store.x[i] = in.readDouble();
+      store.y[i] = in.readDouble();
+      store.vx[i] = in.readDouble();
+      store.vy[i] = in.readDouble();
+      store.mass[i] = in.readDouble();
+      store.radio[i] = in.readDouble();
+      store.lastUpdate[i] = in.readDouble();
+      store.lastEvent[i] = in.readDouble();
+      store.collisions[i] = in.readInt();
+    }
+    store.time = in.readDouble();
+    return store;
+  }
+
+  /**
+   * @return a new immutable point with the current state of the given particle. It is marked as colliding if it took
+   * part on an event at the current time - on any of them, if several events are run at the same time
+   */
+  public Point point(final int i) {
+    return point(i, isColliding(i));
+  }
+
+  /**
+   * @return true if the given particle took part on an event at the current time
+   */
+  public boolean isColliding(final int i) {
+    return lastEvent[i] == time;
+  }
+
+  private Point point(final int i, final boolean isColliding) {
+    return Point.builder(x(i), y(i))
+            .id(id[i])
+            .vx(vx[i])
+            .vy(vy[i])
+            .mass(mass[i])
+            .radio(radio[i])
+            .isColliding(isColliding)
+            .build();
+  }
+
+  /**
+   * @return a read-only list that always reflects the current state of the particles.
+   * Each access to one of its elements creates a new point, so it should only be used for I/O and testing.
+   */
+  public List<Point> points() {
+    return points;
+  }
+
+  /**
+   * @return a read-only list as {@link #points()}, on which the particles of the events that are about to be run at
+   * the current time are also marked as colliding
+   * @param isAboutToCollide tells whether a particle takes part on one of those events
+   */
+  public List<Point> points(final IntPredicate isAboutToCollide) {
+    return new AbstractList<Point>() {
+      @Override
+      public Point get(final int index) {
+        return point(index, isColliding(index) || isAboutToCollide.test(index));
+      }
+
+      @Override
+      public int size() {
+        return id.length;
+      }
+    };
+  }
+}
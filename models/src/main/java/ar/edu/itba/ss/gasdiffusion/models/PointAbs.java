@@ -3,6 +3,8 @@ package ar.edu.itba.ss.gasdiffusion.models;
 import org.immutables.builder.Builder;
 import org.immutables.value.Value;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 @Value.Immutable
 @Value.Style(
         typeAbstract = "*Abs",
@@ -11,11 +13,13 @@ import org.immutables.value.Value;
 )
 public abstract class PointAbs {
 
-  private static long idGen = 1;
+  // only for points built without an id, outside of any simulation ; the particles of a simulation get their ids
+  // from its SimulationContext
+  private static final AtomicLong idGen = new AtomicLong(1);
 
   @Value.Default
   public long id() {
-    return idGen ++;
+    return idGen.getAndIncrement();
   }
 
   @Value.Default
@@ -66,13 +70,13 @@ public abstract class PointAbs {
   @Value.Derived
   @Value.Auxiliary
   public double speed() {
-    return Math.sqrt(Math.pow(vx(), 2) + Math.pow(vy(), 2));
+    return Math.sqrt(vx() * vx() + vy() * vy());
   }
 
   @Value.Derived
   @Value.Auxiliary
   public double kineticEnergy() {
-    return 1/2.0d * mass() * Math.pow(speed(), 2);
+    return 1/2.0d * mass() * (vx() * vx() + vy() * vy());
   }
 
   @Value.Check
@@ -134,6 +138,6 @@ public abstract class PointAbs {
 
   /* for testing purposes only */
   public static void resetIdGen() {
-    idGen = 0;
+    idGen.set(0);
   }
 }
@@ -0,0 +1,62 @@
+package ar.edu.itba.ss.gasdiffusion.models;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *  The state that belongs to a single simulation: the geometry of its box - and so the lengths of its walls, over
+ *  which the pressure of their collisions is exerted - and the ids of its particles.
+ * <p>
+ *  Each simulation has its own context, so that many of them can run at the same time on the same JVM without
+ *  sharing any mutable state.
+ */
+public class SimulationContext {
+  private final double L;
+  private final double W;
+  private final double opening;
+  private final AtomicLong idGen = new AtomicLong(1);
+
+  /**
+   * @param L the height of the box
+   * @param W the width of the box
+   * @param opening the height of the opening of the middle wall
+   */
+  public SimulationContext(final double L, final double W, final double opening) {
+    this.L = L;
+    this.W = W;
+    this.opening = opening;
+  }
+
+  public double getL() {
+    return L;
+  }
+
+  public double getW() {
+    return W;
+  }
+
+  public double getOpening() {
+    return opening;
+  }
+
+  /**
+   * @return the length of the given wall on this box, over which the pressure of its collisions is exerted
+   */
+  public double wallLength(final Wall wall) {
+    switch (wall) {
+      case HORIZONTAL:
+        return W;
+      case VERTICAL:
+        return L;
+      default: // MIDDLE_VERTICAL: each of its halves
+        return (L - opening) / 2.0;
+    }
+  }
+
+  /**
+   * @return a new id for a particle of this simulation ; ids start at 1, and are never repeated
+   */
+  public long nextId() {
+    return idGen.getAndIncrement();
+  }
+}
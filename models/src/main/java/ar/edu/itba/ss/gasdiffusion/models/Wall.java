@@ -1,26 +1,10 @@
 package ar.edu.itba.ss.gasdiffusion.models;
 
+/**
+ * The walls of the box. Their lengths depend on the box, so they are given by its {@link SimulationContext}
+ */
 public enum Wall {
     HORIZONTAL,
     VERTICAL,
-    MIDDLE_VERTICAL;
-
-    private double length;
-    private double pressure = 0.0;
-
-    public void setLength(final double length) {
-        this.length = length;
-    }
-
-    public double getLength() {
-        return length;
-    }
-
-    /**
-     * Add pressure to the wall
-     * @param pressure the pressure to be added to the wall
-     */
-    public void increasePressure(final double pressure) {
-        this.pressure += pressure;
-    }
+    MIDDLE_VERTICAL
 }
@@ -1,35 +1,57 @@
 package ar.edu.itba.ss.gasdiffusion.models;
 
-import java.util.HashSet;
-import java.util.Set;
-
 public class WallEvent extends Event {
-    private final Point point;
     private Wall wall;
+    private double wallLength;
+    private double pressure;
 
-    public WallEvent(final double time, final Point point, final Wall wall) {
-        super(time);
-        this.point = point;
+    /**
+     * @param time the time at which the particle hits the wall
+     * @param i the index of the particle
+     * @param wall the wall that is hit
+     * @param wallLength the length of the wall, over which the pressure of the collision is exerted
+     * @return this same event
+     */
+    public WallEvent set(final double time, final int i, final Wall wall, final double wallLength) {
+        this.time = time;
+        this.i = i;
         this.wall = wall;
+        this.wallLength = wallLength;
+        return this;
     }
 
+    /**
+     * Changes the velocity of the particle (see {@link ParticleStore#bounce})
+     */
     @Override
-    public Set<Point> execute() {
-        final Set<Point> points = new HashSet<>();
-
-        if(wall == Wall.VERTICAL || wall == Wall.MIDDLE_VERTICAL) {
-            points.add(point.updatePoint(time, -1 * point.vx(), point.vy()));
-        } else if (wall == Wall.HORIZONTAL) {
-            points.add(point.updatePoint(time, point.vx(), -1 * point.vy()));
-        }
+    public void execute(final ParticleStore store) {
+        store.bounce(i, wall);
+        pressure = pressure(store.mass(i), store.speed(i), wallLength);
+    }
 
-        return points;
+    public Wall getWall() {
+        return wall;
     }
 
     @Override
     public double getPressure() {
-      if (wall.getLength() > 0) {
-        return 2*point.mass()*point.speed()/wall.getLength();
+      return pressure;
+    }
+
+    @Override
+    public double getKineticEnergyChange(final int particle) {
+      return 0; // only the sign of a velocity's component is changed
+    }
+
+    /**
+     * @param mass the mass of the particle that hits the wall
+     * @param speed the speed of the particle that hits the wall
+     * @param wallLength the length of the wall that is hit
+     * @return the pressure that the particle exerts on the wall ; -1 if the wall has no length
+     */
+    public static double pressure(final double mass, final double speed, final double wallLength) {
+      if (wallLength > 0) {
+        return 2*mass*speed/wallLength;
       }
       return -1;
     }
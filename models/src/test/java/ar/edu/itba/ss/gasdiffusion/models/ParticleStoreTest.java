@@ -0,0 +1,135 @@
+package ar.edu.itba.ss.gasdiffusion.models;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParticleStoreTest {
+	private static final double EPSILON = 1e-12;
+
+	private final Point p1 = Point.builder(1, 1).id(1).radio(0.5).mass(1).vx(1).vy(0.2).build();
+	private final Point p2 = Point.builder(1.8, 1.6).id(2).radio(0.5).mass(2).vx(-0.5).vy(-0.1).build();
+
+	@Test
+	public void testCollideKeepsMomentumAndKineticEnergy() {
+		final ParticleStore store = new ParticleStore(Arrays.asList(p1, p2));
+		final PointsEvent event = new PointsEvent().set(0, 0, 1);
+
+		event.execute(store);
+
+		assertEquals(p1.mass() * p1.vx() + p2.mass() * p2.vx(), store.mass(0) * store.vx(0) + store.mass(1) * store.vx(1),
+				EPSILON);
+		assertEquals(p1.mass() * p1.vy() + p2.mass() * p2.vy(), store.mass(0) * store.vy(0) + store.mass(1) * store.vy(1),
+				EPSILON);
+		assertEquals(p1.kineticEnergy() + p2.kineticEnergy(), store.kineticEnergy(0) + store.kineticEnergy(1), EPSILON);
+		assertEquals(store.kineticEnergy(0) - p1.kineticEnergy(), event.getKineticEnergyChange(0), EPSILON);
+		assertEquals(store.kineticEnergy(1) - p2.kineticEnergy(), event.getKineticEnergyChange(1), EPSILON);
+		assertEquals(0, event.getPressure(), 0);
+
+		// the relative velocity only changes along the line that joins the centers
+		final double tangentX = -(p2.y() - p1.y());
+		final double tangentY = p2.x() - p1.x();
+		assertEquals((p2.vx() - p1.vx()) * tangentX + (p2.vy() - p1.vy()) * tangentY,
+				(store.vx(1) - store.vx(0)) * tangentX + (store.vy(1) - store.vy(0)) * tangentY, EPSILON);
+
+		for (int i = 0 ; i < 2 ; i++) {
+			assertTrue(store.point(i).isColliding());
+			assertEquals(1, store.collisions(i));
+		}
+	}
+
+	@Test
+	public void testBounceChangesTheSignOfOneComponent() {
+		for (final Wall wall : Wall.values()) {
+			final ParticleStore store = new ParticleStore(Arrays.asList(p1, p2));
+			final WallEvent event = new WallEvent().set(0, 1, wall, 2);
+
+			event.execute(store);
+
+			final boolean isHorizontal = wall == Wall.HORIZONTAL;
+			assertEquals(isHorizontal ? p2.vx() : -p2.vx(), store.vx(1), EPSILON);
+			assertEquals(isHorizontal ? -p2.vy() : p2.vy(), store.vy(1), EPSILON);
+			assertEquals(p2.mass() * p2.speed(), event.getPressure(), EPSILON); // 2 * m * v / 2
+			assertEquals(0, event.getKineticEnergyChange(1), 0);
+			assertFalse(store.point(0).isColliding());
+			assertEquals(0, store.collisions(0));
+			assertEquals(1, store.collisions(1));
+		}
+	}
+
+	@Test
+	public void testEveryParticleOfSimultaneousEventsIsColliding() {
+		// two pairs that get in contact at 0.5, and a particle that hits a wall at the same time
+		final ParticleStore store = new ParticleStore(Arrays.asList(
+				Point.builder(0, 0).id(1).radio(0.5).mass(1).vx(1).vy(0).build(),
+				Point.builder(2, 0).id(2).radio(0.5).mass(1).vx(-1).vy(0).build(),
+				Point.builder(0, 5).id(3).radio(0.5).mass(1).vx(1).vy(0).build(),
+				Point.builder(2, 5).id(4).radio(0.5).mass(2).vx(-1).vy(0).build(),
+				Point.builder(8, 8).id(5).radio(0.5).mass(1).vx(0).vy(1).build()));
+
+		store.advance(0.5);
+		store.collide(0, 1);
+		store.collide(2, 3);
+		store.bounce(4, Wall.HORIZONTAL);
+
+		for (int i = 0 ; i < store.size() ; i++) {
+			assertTrue(store.point(i).isColliding());
+		}
+
+		// they are still colliding at the same time after the store is synchronized, but not after it moves on
+		store.synchronize();
+		for (int i = 0 ; i < store.size() ; i++) {
+			assertTrue(store.point(i).isColliding());
+		}
+		store.advance(0.25);
+		for (int i = 0 ; i < store.size() ; i++) {
+			assertFalse(store.point(i).isColliding());
+		}
+	}
+
+	@Test
+	public void testAdvanceMatchesUpdatePoint() {
+		final ParticleStore store = new ParticleStore(Arrays.asList(p1, p2));
+
+		store.advance(0.75);
+
+		assertSameState(p1.updatePoint(0.75), store.point(0));
+		assertSameState(p2.updatePoint(0.75), store.point(1));
+		assertEquals(2, store.points().size());
+		assertEquals(store.point(1), store.points().get(1));
+	}
+
+	@Test
+	public void testSynchronizeKeepsPositionsAndRestartsTheClock() {
+		final ParticleStore store = new ParticleStore(Arrays.asList(p1, p2));
+
+		store.advance(0.25);
+		store.bounce(0, Wall.HORIZONTAL); // only the first particle is updated
+		store.advance(0.5);
+
+		final Point expected1 = store.point(0);
+		final Point expected2 = store.point(1);
+
+		assertEquals(0.75, store.synchronize(), EPSILON);
+		assertEquals(0, store.time(), EPSILON);
+		assertSameState(expected1, store.point(0));
+		assertSameState(expected2, store.point(1));
+
+		store.advance(0.25);
+		assertSameState(p2.updatePoint(1), store.point(1));
+	}
+
+	private static void assertSameState(final Point expected, final Point actual) {
+		assertEquals(expected.id(), actual.id());
+		assertEquals(expected.x(), actual.x(), EPSILON);
+		assertEquals(expected.y(), actual.y(), EPSILON);
+		assertEquals(expected.vx(), actual.vx(), EPSILON);
+		assertEquals(expected.vy(), actual.vy(), EPSILON);
+		assertEquals(expected.mass(), actual.mass(), EPSILON);
+		assertEquals(expected.radio(), actual.radio(), EPSILON);
+	}
+}
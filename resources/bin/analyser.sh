@@ -49,6 +49,8 @@ N_OP_RESULTS="$RESULTS_FOLDER/i_t_fp_pre_temp_"
 PRE_T_RESULTS="$RESULTS_FOLDER/pre_t_results_"
 
 JAR="java -jar $PROJECT_FOLDER/core/target/gas-diffusion.jar"
+# To run each command on an already running 'serve' instead of on a new JVM, use instead:
+# JAR="$BIN_FOLDER/gas-diffusion-client.sh"
 
 # Extension of the output table
 OUTPUT_TABLE_TYPE=".csv"
@@ -0,0 +1,56 @@
+#!/bin/bash
+
+# Thin client of a running 'serve' command of the Gas Diffusion 2D Simulation Implementation.
+# Runs the given arguments as a job of the server - that reads and writes its files on the current folder -,
+# prints its output, and exits with its exit code, just as 'java -jar gas-diffusion.jar <arguments>' would.
+#
+# The server must have been started before, i.e.:
+# java -jar core/target/gas-diffusion.jar serve [--port <port>] [--threads <n>] &
+#
+# Usage of this bash:
+# ./gas-diffusion-client.sh <arguments>
+#
+# The port of the server may be changed with the GAS_DIFFUSION_PORT variable (default: 7810).
+# Jobs are sent with the token that the server wrote on ~/.gas-diffusion-<port>.token, that only the user who
+# started it can read ; another file may be given with the GAS_DIFFUSION_TOKEN_FILE variable.
+
+PORT=${GAS_DIFFUSION_PORT:-7810}
+TOKEN_FILE=${GAS_DIFFUSION_TOKEN_FILE:-"$HOME/.gas-diffusion-$PORT.token"}
+
+if ! [ -r "$TOKEN_FILE" ] ; then
+  echo "[FAIL] - The token file '$TOKEN_FILE' can not be read. Is the server running as this user? Aborting..."
+  exit 1
+fi
+read -r TOKEN < "$TOKEN_FILE"
+
+if ! exec 3<>"/dev/tcp/127.0.0.1/$PORT" ; then
+  echo "[FAIL] - No server is listening on port $PORT. Start it with 'java -jar gas-diffusion.jar serve'. Aborting..."
+  exit 1
+fi
+
+# Job: the token, the current folder, each argument on its own line, and an empty line
+{
+  echo "$TOKEN"
+  echo "$PWD"
+  for arg in "$@" ; do
+    echo "$arg"
+  done
+  echo
+} >&3
+
+# Output of the job, until its exit code
+EXIT_CODE=1
+while IFS= read -r line <&3 ; do
+  case "$line" in
+    "[EXIT] "*)
+      EXIT_CODE=${line#"[EXIT] "}
+      break
+      ;;
+    *)
+      echo "$line"
+      ;;
+  esac
+done
+exec 3<&-
+
+exit ${EXIT_CODE}
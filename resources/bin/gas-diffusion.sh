@@ -46,6 +46,8 @@ SIM_OUTPUT_PATH="$OUTPUT_FOLDER/output.dat"
 OVITO_OUTPUT_PATH="$OUTPUT_FOLDER/graphics.xyz"
 
 JAR="java -jar $PROJECT_FOLDER/core/target/gas-diffusion.jar"
+# To run each command on an already running 'serve' instead of on a new JVM, use instead:
+# JAR="$BIN_FOLDER/gas-diffusion-client.sh"
 
 # Number of exact parameters required to run the script
 PARAMS_REQUIRED=8
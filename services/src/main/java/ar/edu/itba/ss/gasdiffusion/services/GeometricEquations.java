@@ -18,13 +18,25 @@ public abstract class GeometricEquations {
      *          a positive value in other case;
      */
     public static double collisionTime(final Point p1, final Point p2) {
+        return collisionTime(p1.x(), p1.y(), p1.vx(), p1.vy(), p1.radio(),
+                p2.x(), p2.y(), p2.vx(), p2.vy(), p2.radio());
+    }
+
+    /**
+     * Calculate the time of collision between two particles, given their state component by component.
+     * @see #collisionTime(Point, Point)
+     */
+    public static double collisionTime(final double x1, final double y1, final double vx1, final double vy1,
+                                       final double radio1,
+                                       final double x2, final double y2, final double vx2, final double vy2,
+                                       final double radio2) {
         // Components of Delta v
-        final double deltaVx = p2.vx() - p1.vx();
-        final double deltaVy = p2.vy() - p1.vy();
+        final double deltaVx = vx2 - vx1;
+        final double deltaVy = vy2 - vy1;
 
         // Components of Delta r
-        final double deltaRx = p2.x() - p1.x();
-        final double deltaRy = p2.y() - p1.y();
+        final double deltaRx = x2 - x1;
+        final double deltaRy = y2 - y1;
 
         // deltaV * deltaR
         final double vr = deltaVx * deltaRx + deltaVy * deltaRy;
@@ -33,8 +45,8 @@ public abstract class GeometricEquations {
             return Double.POSITIVE_INFINITY;
         }
 
-        final double vv = pow(deltaVx, 2) + pow(deltaVy, 2);
-        final double rr = pow(deltaRx, 2) + pow(deltaRy, 2);
+        final double vv = deltaVx * deltaVx + deltaVy * deltaVy;
+        final double rr = deltaRx * deltaRx + deltaRy * deltaRy;
         /*
          * The following formula was taken from class lecture and not from the paper
          * The paper specifies that sigma equals the sums of its radios only when they collide.
@@ -43,10 +55,10 @@ public abstract class GeometricEquations {
          * rxj' = rxj + deltaT vxj,   ryj' = ryj + deltaT vyj
          * Problem is that we don't have deltaT
          */
-        final double sigma = p1.radio() + p2.radio();
+        final double sigma = radio1 + radio2;
 
         //final double d = pow(vr, 2) - pow(vv, 2) * (pow(rr, 2) - pow(σ,2));
-        final double d = pow(vr, 2) - vv * (rr - pow(sigma,2));
+        final double d = vr * vr - vv * (rr - sigma * sigma);
 
         if(d < 0) {
             return Double.POSITIVE_INFINITY;
@@ -76,19 +88,44 @@ public abstract class GeometricEquations {
             r = point.x();
         }
 
+        return timeToHitWall(r, v, point.radio(), negativeBound, positiveBound);
+    }
+
+    /**
+     * Calculates the time when it collides with one of two parallel walls
+     * @param r the position of the point, perpendicular to the walls
+     * @param v the velocity of the point, perpendicular to the walls
+     * @param radio the radio of the point
+     * @param negativeBound the position of the wall in case velocity is negative
+     * @param positiveBound the position of the wall in case velocity is positive
+     * @return the time to reach the wall
+     */
+    public static double timeToHitWall(final double r, final double v, final double radio,
+                                       final double negativeBound, final double positiveBound) {
         if(v == 0) {
             return Double.POSITIVE_INFINITY;
         }
         if(v < 0) {
-            return (negativeBound + point.radio() - r) / v;
+            return (negativeBound + radio - r) / v;
         }
-        return (positiveBound - point.radio() - r) / v;
+        return (positiveBound - radio - r) / v;
     }
 
     public static double timeToHitMiddleWall(final Point point, final double xPosition, final double wallHeight, final double opening) {
+        return timeToHitMiddleWall(point.x(), point.y(), point.vx(), point.vy(), point.radio(),
+                xPosition, wallHeight, opening);
+    }
+
+    /**
+     * Calculates the time when a point, given its state component by component, collides with the middle wall
+     * @see #timeToHitMiddleWall(Point, double, double, double)
+     */
+    public static double timeToHitMiddleWall(final double x, final double y, final double vx, final double vy,
+                                             final double radio,
+                                             final double xPosition, final double wallHeight, final double opening) {
         double tc, newY, openingUpperLimit, openingLowerLimit;
-        final double v = point.vx();
-        final double r = point.x();
+        final double v = vx;
+        final double r = x;
 
         if(v == 0) {
             return Double.POSITIVE_INFINITY;
@@ -124,26 +161,26 @@ public abstract class GeometricEquations {
 
         // Check that if particle is travelling left, it's currently positioned to the right of the wall. (Same if its going left)
         if(v < 0) {
-            if( (r-point.radio()) > xPosition){ // r+radio is used to make sure the particle isn't in contact with the wall
-                tc = (xPosition + point.radio() - r) / v;
+            if( (r-radio) > xPosition){ // r+radio is used to make sure the particle isn't in contact with the wall
+                tc = (xPosition + radio - r) / v;
             } else{
                 return Double.POSITIVE_INFINITY;
             }
         } else{
-            if( (r+point.radio()) < xPosition){
-                tc = (xPosition - point.radio() - r) / v;
+            if( (r+radio) < xPosition){
+                tc = (xPosition - radio - r) / v;
             } else{
                 return Double.POSITIVE_INFINITY;
             }
         }
 
         // check what happens at the new y position
-        newY = point.y() + point.vy() * tc;
+        newY = y + vy * tc;
         openingUpperLimit = (wallHeight/2) + opening/2;
         openingLowerLimit = (wallHeight/2) - opening/2;
 
-        if (     newY-point.radio() > openingLowerLimit
-                && newY+point.radio() < openingUpperLimit){
+        if (     newY-radio > openingLowerLimit
+                && newY+radio < openingUpperLimit){
             // If the MBB of the particle is travelling towards the opening, then there's no collision,
             // and Infinity is returned
             tc = Double.POSITIVE_INFINITY;
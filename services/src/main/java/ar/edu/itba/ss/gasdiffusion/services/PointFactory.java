@@ -1,26 +1,41 @@
 package ar.edu.itba.ss.gasdiffusion.services;
 
 import ar.edu.itba.ss.gasdiffusion.models.Point;
+import ar.edu.itba.ss.gasdiffusion.models.SimulationContext;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Generates the particles of a simulation. Each simulation has its own factory, as particles get their ids from the
+ * context of the simulation.
+ */
 public class PointFactory {
-    private static PointFactory pointFactory;
+    // Leaves a blank space around all borders, just to make sure no particles collide with walls.
+    private static final double EMPTY_BORDER = 1.25;
+    private static final double ROW_HEIGHT = Math.sqrt(3) / 2; // of a hexagonal lattice, relative to its spacing
 
-    private PointFactory() {
-    }
+    private final SimulationContext context;
 
-    public static PointFactory getInstance() {
-        if (pointFactory == null) {
-            pointFactory = new PointFactory();
-        }
-        return pointFactory;
+    /**
+     * @param context the context of the simulation to which the generated points belong
+     */
+    public PointFactory(final SimulationContext context) {
+        this.context = context;
     }
 
 
-    public Set<Point> randomPoints(final Point leftBottomPoint,
+    /**
+     * @param random the stream from which the positions and orientations of the points are taken
+     * @see #randomPoints(RandomInRange, Point, Point, double, int, boolean, int, double, double)
+     */
+    public Set<Point> randomPoints(final RandomInRange random,
+                                   final Point leftBottomPoint,
                                    final Point rightTopPoint,
                                    final double[] radios,
                                    final boolean canCollide,
@@ -28,7 +43,7 @@ public class PointFactory {
                                    final double speed,
                                    final double mass) {
         final double minX, minY, maxX, maxY, maxRadio;
-        final double emptyBorder = 1.25; // Leaves a blank space around all borders, just to make sure no particles collide with walls.
+        final double emptyBorder = EMPTY_BORDER;
 
         maxRadio = Arrays.stream(radios).max().getAsDouble();
 
@@ -49,20 +64,24 @@ public class PointFactory {
         final int amount = radios.length;
 
         final Set<Point> generatedPoints = new HashSet<>(amount);
+        // two points can only overlap if they are closer than twice the max. radio
+        final OverlapGrid overlapGrid = canCollide ? null : new OverlapGrid(minX, minY, maxRadio > 0 ? 2 * maxRadio : 1);
 
         int tries;
         double pX, pY, pR, pOrientation;
 
         for (int i = 0 ; i < amount ; i++) {
             Point p;
+            final long id = context.nextId(); // only taken by the point that is finally generated
             tries = 0;
             do {
-                pX = RandomInRange.randomDouble(minX, maxX);
-                pY = RandomInRange.randomDouble(minY, maxY);
+                pX = random.randomDouble(minX, maxX);
+                pY = random.randomDouble(minY, maxY);
                 pR = radios[i] <= -1 ? 0 : radios[i];
-                pOrientation = RandomInRange.randomDouble(0, 2 * Math.PI);
+                pOrientation = random.randomDouble(0, 2 * Math.PI);
 
                 p = Point.builder(pX, pY)
+                        .id(id)
                         .mass(mass)
                         .radio(pR)
                         .vx(speed * Math.cos(pOrientation))
@@ -73,10 +92,13 @@ public class PointFactory {
                 if (tries > maxTries) {
                     return generatedPoints;
                 }
-            } while (!passCollisionCondition(generatedPoints, p, canCollide));
+            } while (overlapGrid != null && overlapGrid.overlaps(p));
 
             // for sure that the point is not at the set; if it were, it would have collied with itself
             generatedPoints.add(p);
+            if (overlapGrid != null) {
+                overlapGrid.add(p);
+            }
         }
 
         return generatedPoints;
@@ -88,6 +110,7 @@ public class PointFactory {
      * the specified amount of points.
      * Collisions are accepted or not depending the given parameter.
      *
+     * @param random the stream from which the positions and orientations of the points are taken
      * @param leftBottomPoint the point at that corner of the area to where the points must belong ; null if random
      * @param rightTopPoint the point at that corner of the area to where the points must belong ; null if random
      * @param radio the point's radio ; < 0 if random
@@ -99,7 +122,8 @@ public class PointFactory {
      * @param speed points' speed
      * @return a set containing the generated points - could have less than amount points
      */
-    public Set<Point> randomPoints(final Point leftBottomPoint,
+    public Set<Point> randomPoints(final RandomInRange random,
+                                   final Point leftBottomPoint,
                                    final Point rightTopPoint,
                                    final double radio,
                                    final int amount,
@@ -109,45 +133,196 @@ public class PointFactory {
                                    final double mass) {
         double[] radios = new double[amount];
         Arrays.fill(radios, radio);
-        return randomPoints(leftBottomPoint, rightTopPoint, radios, canCollide, maxTries, speed, mass);
+        return randomPoints(random, leftBottomPoint, rightTopPoint, radios, canCollide, maxTries, speed, mass);
     }
 
     /**
      * Generates in a pseudo-aleatory manner the given amount of points.
      * Collisions are accepted or not depending the given parameter.
      *
+     * @param random the stream from which the positions and orientations of the points are taken
      * @param amount the amount of points to be generated - if possible
      * @param canCollide whether the points can collide or not
      * @param maxTries how many times the function will try to generate non-colliding points - consecutively.
      *                 If this limit is reached, the set as is at that moment is returned
      * @return a set containing the generated points - could have less than amount points
      */
-    public Set<Point> randomPoints(final int amount, final boolean canCollide, final int maxTries, final double speed,
-                                   final double mass) {
-        return randomPoints(null, null, -1, amount, canCollide, maxTries, speed, mass);
+    public Set<Point> randomPoints(final RandomInRange random, final int amount, final boolean canCollide,
+                                   final int maxTries, final double speed, final double mass) {
+        return randomPoints(random, null, null, -1, amount, canCollide, maxTries, speed, mass);
     }
 
     /**
-     * Checks that the collision condition is passed, comparing the just created point with all the
-     * previous already obtained
-     * @param generatedPoints -
-     * @param p -
-     * @param canCollide -
-     * @return -
+     * <p>
+     * Generates the given points - as many as radios - on the sites of a hexagonal lattice, so that they can be
+     * placed even at densities at which {@link #randomPoints} would never find room for the last ones.
+     * <p>
+     * The spacing of the lattice is the largest one at which there are enough sites on the area. Points are placed
+     * on sites chosen at random, each one moved at random from its site by less than half the free space between
+     * neighbour sites - so they never overlap - and with a random orientation.
+     * It takes a time linear on the amount of points.
+     *
+     * @param random the stream from which the sites, displacements and orientations of the points are taken
+     * @param leftBottomPoint the point at that corner of the area to where the points must belong
+     * @param rightTopPoint the point at that corner of the area to where the points must belong
+     * @param radios the radio of each point ; < 0 if 0
+     * @param speed points' speed
+     * @param mass points' mass
+     * @return a set containing the generated points ; empty if they do not fit on the area even when touching
+     *          each other
      */
-    private boolean passCollisionCondition(final Set<Point> generatedPoints,
-                                           final Point p, final boolean canCollide) {
-        if (canCollide) {
-            return true;
+    public Set<Point> latticePoints(final RandomInRange random,
+                                    final Point leftBottomPoint,
+                                    final Point rightTopPoint,
+                                    final double[] radios,
+                                    final double speed,
+                                    final double mass) {
+        final int amount = radios.length;
+        final double maxRadio = Math.max(0, Arrays.stream(radios).max().orElse(0));
+        final double minX = leftBottomPoint.x() + EMPTY_BORDER * maxRadio;
+        final double minY = leftBottomPoint.y() + EMPTY_BORDER * maxRadio;
+        final double width = rightTopPoint.x() - EMPTY_BORDER * maxRadio - minX;
+        final double height = rightTopPoint.y() - EMPTY_BORDER * maxRadio - minY;
+
+        final Set<Point> generatedPoints = new HashSet<>(amount);
+        if (amount == 0 || width < 0 || height < 0 || latticeSites(width, height, 2 * maxRadio) < amount) {
+            return generatedPoints;
         }
 
-        for (Point each : generatedPoints) {
-            if (GeometricEquations.distanceBetween(each, p) <= 0) {
-                return false;
+        // the number of sites only decreases as the spacing grows, so the largest spacing is searched by bisection
+        double minSpacing = 2 * maxRadio;
+        double maxSpacing = 2 * maxRadio + Math.max(width, height) + 1;
+        for (int i = 0 ; i < 100 && minSpacing < maxSpacing ; i++) {
+            final double spacing = (minSpacing + maxSpacing) / 2;
+            if (latticeSites(width, height, spacing) >= amount) {
+                minSpacing = spacing;
+            } else {
+                maxSpacing = spacing;
             }
         }
+        final double spacing = minSpacing;
+        final double maxDisplacement = (spacing - 2 * maxRadio) / 2;
 
-        return true;
+        final int[] sites = new int[(int) latticeSites(width, height, spacing)];
+        for (int k = 0 ; k < sites.length ; k++) {
+            sites[k] = k;
+        }
+        final int columns = (int) latticeColumns(width, spacing, false);
+        final int pairOfRows = columns + (int) latticeColumns(width, spacing, true);
+
+        double pX, pY, pR, pOrientation, pDisplacement, pDirection;
+        for (int i = 0 ; i < amount ; i++) {
+            // partial Fisher-Yates shuffle: the i-th point takes a site at random among the ones not taken yet
+            final int k = i + (int) random.randomDouble(0, sites.length - i);
+            final int site = sites[k];
+            sites[k] = sites[i];
+            sites[i] = site;
+
+            // sites are numbered row by row ; odd rows are shifted half the spacing
+            final int row = 2 * (site / pairOfRows) + (site % pairOfRows < columns ? 0 : 1);
+            final int column = site % pairOfRows - (row % 2 == 0 ? 0 : columns);
+
+            pDisplacement = random.randomDouble(0, maxDisplacement);
+            pDirection = random.randomDouble(0, 2 * Math.PI);
+            // the area is convex and holds the site, so keeping the point inside it does not move it further away
+            pX = clamp(minX + (column + (row % 2 == 0 ? 0 : 0.5)) * spacing
+                    + pDisplacement * Math.cos(pDirection), minX, minX + width);
+            pY = clamp(minY + row * ROW_HEIGHT * spacing + pDisplacement * Math.sin(pDirection), minY, minY + height);
+            pR = radios[i] <= -1 ? 0 : radios[i];
+            pOrientation = random.randomDouble(0, 2 * Math.PI);
+
+            generatedPoints.add(Point.builder(pX, pY)
+                    .id(context.nextId())
+                    .mass(mass)
+                    .radio(pR)
+                    .vx(speed * Math.cos(pOrientation))
+                    .vy(speed * Math.sin(pOrientation))
+                    .build());
+        }
+
+        return generatedPoints;
     }
-}
 
+    /**
+     * @return the number of sites of a hexagonal lattice of the given spacing, with rows parallel to the x axis,
+     *          on a width x height area
+     */
+    private static long latticeSites(final double width, final double height, final double spacing) {
+        if (spacing <= 0) {
+            return Long.MAX_VALUE;
+        }
+        final long rows = (long) Math.floor(height / (ROW_HEIGHT * spacing)) + 1;
+        // odd rows are numbered from the second one on
+        return (rows + 1) / 2 * latticeColumns(width, spacing, false) + rows / 2 * latticeColumns(width, spacing, true);
+    }
+
+    /**
+     * @return the number of sites of each even - or odd, which are shifted half the spacing - row of a hexagonal
+     *          lattice of the given spacing on the given width
+     */
+    private static long latticeColumns(final double width, final double spacing, final boolean isOdd) {
+        final double shift = isOdd ? spacing / 2 : 0;
+        return width >= shift ? (long) Math.floor((width - shift) / spacing) + 1 : 0;
+    }
+
+    private static double clamp(final double value, final double min, final double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Spatial hash of the already generated points, on square cells at least as big as the distance at which
+     * two points can overlap, so that each candidate is only checked against the points of its own and
+     * its 8 neighbour cells, instead of against all of them
+     */
+    private static class OverlapGrid {
+        private final double minX;
+        private final double minY;
+        private final double cellSize;
+        private final Map<Long, List<Point>> cells = new HashMap<>();
+
+        private OverlapGrid(final double minX, final double minY, final double cellSize) {
+            this.minX = minX;
+            this.minY = minY;
+            this.cellSize = cellSize;
+        }
+
+        private void add(final Point p) {
+            cells.computeIfAbsent(key(column(p), row(p)), k -> new ArrayList<>()).add(p);
+        }
+
+        /**
+         * @return whether the given point overlaps any of the added points
+         */
+        private boolean overlaps(final Point p) {
+            final int column = column(p);
+            final int row = row(p);
+            // as longs, so that the bounds do not overflow on the outermost cells
+            for (long i = column - 1L ; i <= column + 1L ; i++) {
+                for (long j = row - 1L ; j <= row + 1L ; j++) {
+                    final List<Point> cell = cells.get(key((int) i, (int) j));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Point each : cell) {
+                        if (GeometricEquations.distanceBetween(each, p) <= 0) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        private int column(final Point p) {
+            return (int) Math.floor((p.x() - minX) / cellSize);
+        }
+
+        private int row(final Point p) {
+            return (int) Math.floor((p.y() - minY) / cellSize);
+        }
+
+        private static long key(final int column, final int row) {
+            return ((long) column << Integer.SIZE) | (row & 0xFFFFFFFFL);
+        }
+    }
+}
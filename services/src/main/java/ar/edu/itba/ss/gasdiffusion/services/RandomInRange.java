@@ -1,9 +1,49 @@
 package ar.edu.itba.ss.gasdiffusion.services;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+/**
+ * A stream of pseudo-aleatory values, that always gives the same values for the same seed.
+ * <p>
+ * A stream must not be shared among threads: each one should use its own substream, taken with {@link #split()},
+ * so that they do not contend and the values of each one do not depend on how threads are scheduled.
+ */
 public class RandomInRange {
-    private static final Random random= new Random();
+    private final SplittableRandom random;
+
+    /**
+     * @param seed the seed of the stream ; the same seed always gives the same values and substreams
+     */
+    public RandomInRange(final long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private RandomInRange(final SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * @return a new seed, different on each call and on each run, for when none is given
+     */
+    public static long randomSeed() {
+        return new SplittableRandom().nextLong();
+    }
+
+    /**
+     * Takes a new substream, independent of this one and of the previously taken ones.
+     * Substreams are always the same ones - and in the same order - for the same seed.
+     * @return the new substream
+     */
+    public RandomInRange split() {
+        return new RandomInRange(random.split());
+    }
+
+    /**
+     * @return a seed for another stream, taken from this one
+     */
+    public long nextSeed() {
+        return random.nextLong();
+    }
 
     /**
      * Gets a new pseudo-aleatory random double between the min (inclusive) and max (exclusive) values
@@ -11,7 +51,7 @@ public class RandomInRange {
      * @param max the max value
      * @return a value between the min (inclusive) and the max (exclusive) value
      */
-    public static double randomDouble(final double min, final double max) {
+    public double randomDouble(final double min, final double max) {
         return min + random.nextDouble() * (max-min);
     }
 }
@@ -1,7 +1,6 @@
 package ar.edu.itba.ss.gasdiffusion.services;
 
 import ar.edu.itba.ss.gasdiffusion.models.Point;
-import ar.edu.itba.ss.gasdiffusion.models.Wall;
 
 import java.util.Set;
 
@@ -15,13 +14,26 @@ public abstract class StateEquations {
      * @return the temperature
      */
     public static double temperature(final Set<Point> points, final int spatialDimension) {
-        final double N = points.size();
-        double sum = 0;
+        double kineticEnergy = 0;
 
         for (Point point: points) {
-            sum += point.mass() * Math.pow(point.speed(), 2);
+            kineticEnergy += point.kineticEnergy();
         }
 
+        return temperature(kineticEnergy, points.size(), spatialDimension);
+    }
+
+    /**
+     * Same as {@link #temperature(Set, int)}, but from the total kinetic energy of the system,
+     * so that it does not need to go through all its points
+     * @param kineticEnergy the total kinetic energy of the points that are part of the system
+     * @param N the number of points that are part of the system
+     * @param spatialDimension the number of spatial dimensions
+     * @return the temperature
+     */
+    public static double temperature(final double kineticEnergy, final int N, final int spatialDimension) {
+        final double sum = 2 * kineticEnergy; // sum of m * v^2
+
         /**
          * the factor N − 1 takes into
          * account that the total momentum of the system is a conserved quantity,
@@ -33,7 +45,13 @@ public abstract class StateEquations {
         //return BOLTZMANN_CONSTANT * sum;
     }
 
-    public static double pressure(final Point point, final Wall wall, final double tc) {
-        return 2 * point.mass() * point.speed() / (tc * wall.getLength());
+    /**
+     * @param point the point that hits the wall
+     * @param wallLength the length of the wall that is hit, as given by the context of the simulation
+     * @param tc the time over which the pressure is exerted
+     * @return the pressure that the point exerts on the wall
+     */
+    public static double pressure(final Point point, final double wallLength, final double tc) {
+        return 2 * point.mass() * point.speed() / (tc * wallLength);
     }
 }
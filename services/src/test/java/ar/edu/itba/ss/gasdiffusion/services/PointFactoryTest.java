@@ -1,28 +1,140 @@
 package ar.edu.itba.ss.gasdiffusion.services;
 
 import ar.edu.itba.ss.gasdiffusion.models.Point;
+import ar.edu.itba.ss.gasdiffusion.models.SimulationContext;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 public class PointFactoryTest {
+	private static final long SEED = 2016;
+
 	/* trivial repetition test */
 
 	@Test
 	public void testRandomPoints() {
+		final RandomInRange random = new RandomInRange(SEED);
 		// trivial repetition
 		for (int i = 0 ; i < 10000 ; i++) {
-			wrappedTestRandomPoints();
+			wrappedTestRandomPoints(random);
+		}
+	}
+
+	@Test
+	public void testManyRandomPointsDoNotOverlap() {
+		final Point leftBottomPoint = Point.builder(0, 0).build();
+		final Point rightTopPoint = Point.builder(0.12, 0.09).build();
+		final int amount = 500;
+
+		final List<Point> points = new ArrayList<>(newPointFactory()
+				.randomPoints(new RandomInRange(SEED), leftBottomPoint, rightTopPoint, 0.0015, amount, false,
+						Integer.MAX_VALUE, 0.01, 1));
+
+		assertEquals(amount, points.size());
+		for (int i = 0 ; i < points.size() ; i++) {
+			for (int j = i + 1 ; j < points.size() ; j++) {
+				assertTrue(GeometricEquations.distanceBetween(points.get(i), points.get(j)) > 0);
+			}
+		}
+	}
+
+	@Test
+	public void testLatticePointsAtHighDensity() {
+		final Point leftBottomPoint = Point.builder(0, 0).build();
+		final Point rightTopPoint = Point.builder(0.12, 0.09).build();
+		// 70% of the area is covered by particles, way beyond what random placement reaches
+		final double radio = 0.0015;
+		final int amount = (int) (0.7 * 0.12 * 0.09 / (Math.PI * radio * radio));
+		final double[] radios = new double[amount];
+		Arrays.fill(radios, radio);
+
+		final List<Point> points = new ArrayList<>(newPointFactory()
+				.latticePoints(new RandomInRange(SEED), leftBottomPoint, rightTopPoint, radios, 0.01, 1));
+
+		assertEquals(amount, points.size());
+		for (int i = 0 ; i < points.size() ; i++) {
+			final Point p = points.get(i);
+			assertTrue(p.x() - radio > 0 && p.x() + radio < 0.12);
+			assertTrue(p.y() - radio > 0 && p.y() + radio < 0.09);
+			assertEquals(0.01, p.speed(), 1e-15);
+			for (int j = i + 1 ; j < points.size() ; j++) {
+				assertTrue(GeometricEquations.distanceBetween(p, points.get(j)) > 0);
+			}
+		}
+	}
+
+	@Test
+	public void testLatticePointsThatDoNotFit() {
+		final Point leftBottomPoint = Point.builder(0, 0).build();
+		final Point rightTopPoint = Point.builder(0.12, 0.09).build();
+		// more particles than the area of the box
+		final double[] radios = new double[2000];
+		Arrays.fill(radios, 0.0015);
+
+		assertTrue(newPointFactory()
+				.latticePoints(new RandomInRange(SEED), leftBottomPoint, rightTopPoint, radios, 0.01, 1).isEmpty());
+	}
+
+	@Test
+	public void testSameSeedGivesSamePoints() {
+		final RandomInRange first = new RandomInRange(SEED);
+		final RandomInRange second = new RandomInRange(SEED);
+
+		// substreams are taken in the same order from both streams
+		assertEquals(positions(first.split()), positions(second.split()));
+		assertEquals(positions(first.split()), positions(second.split()));
+		assertNotEquals(positions(first.split()), positions(new RandomInRange(SEED + 1).split()));
+	}
+
+	@Test
+	public void testEachContextHasItsOwnIds() {
+		final Point leftBottomPoint = Point.builder(0, 0).build();
+		final Point rightTopPoint = Point.builder(0.12, 0.09).build();
+		final PointFactory first = newPointFactory();
+		first.randomPoints(new RandomInRange(SEED), leftBottomPoint, rightTopPoint, 0.0015, 10, false,
+				Integer.MAX_VALUE, 0.01, 1); // the ids of another simulation
+
+		final Set<Long> ids = new HashSet<>();
+		for (final Point p : newPointFactory().randomPoints(new RandomInRange(SEED), leftBottomPoint, rightTopPoint,
+				0.0015, 10, false, Integer.MAX_VALUE, 0.01, 1)) {
+			ids.add(p.id());
+		}
+		assertEquals(LongStream.rangeClosed(1, 10).boxed().collect(Collectors.toSet()), ids);
+	}
+
+	private static PointFactory newPointFactory() {
+		return new PointFactory(new SimulationContext(0.09, 0.24, 0.01));
+	}
+
+	private static Set<List<Double>> positions(final RandomInRange random) {
+		final Point leftBottomPoint = Point.builder(0, 0).build();
+		final Point rightTopPoint = Point.builder(0.12, 0.09).build();
+
+		final Set<List<Double>> positions = new HashSet<>();
+		for (final Point p : newPointFactory().randomPoints(random, leftBottomPoint, rightTopPoint, 0.0015,
+				100, false, Integer.MAX_VALUE, 0.01, 1)) {
+			positions.add(Arrays.asList(p.x(), p.y(), p.vx(), p.vy()));
 		}
+		return positions;
 	}
 
-	private void wrappedTestRandomPoints() {
-		final PointFactory pF = PointFactory.getInstance();
+	private void wrappedTestRandomPoints(final RandomInRange random) {
+		final PointFactory pF = newPointFactory();
 
 		final Point leftBottomPoint = Point.builder(0,0).build();
 		final Point rightTopPoint = Point.builder(20,20).build();
 
-		final Set<Point> points = pF.randomPoints(leftBottomPoint, rightTopPoint, 2, 5, false, 10, 0, 0);
+		final Set<Point> points = pF.randomPoints(random, leftBottomPoint, rightTopPoint, 2, 5, false, 10, 0, 0);
 
 		for (Point p1 : points) {
 